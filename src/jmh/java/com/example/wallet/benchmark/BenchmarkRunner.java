@@ -0,0 +1,37 @@
+package com.example.wallet.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Запускает бенчмарки для каждого числа потоков из свойства jmh.threads (через запятую)
+ * и сохраняет результаты в JSON: {jmh.resultDir}/threads-N.json.
+ * Аргументы командной строки передаются JMH как есть, например "WalletServiceBenchmark -p skew=hot".
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        File resultDir = new File(System.getProperty("jmh.resultDir", "target/jmh"));
+        if (!resultDir.isDirectory() && !resultDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + resultDir);
+        }
+        for (String threads : System.getProperty("jmh.threads", "1").split(",")) {
+            int count = Integer.parseInt(threads.trim());
+            new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDir, "threads-" + count + ".json").getPath())
+                    .build())
+                    .run();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.wallet.benchmark;
+
+import com.example.wallet.repository.TransactionRepository;
+import com.example.wallet.repository.WalletBalanceUpdates;
+import com.example.wallet.repository.WalletRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Хранилище кошельков в памяти, заменяющее базу данных в бенчмарках.
+ * Реализует только методы репозиториев, которые вызывает одиночная операция WalletService
+ * и чтение баланса. Режим горячего кошелька не моделируется: все кошельки обычные.
+ * Изменение баланса выполняется под блокировкой ключа ConcurrentHashMap,
+ * поэтому конкуренция за горячие кошельки похожа на конкуренцию за строки в базе.
+ * Журнал операций не хранится: учитывается только количество записей.
+ */
+final class InMemoryWalletStore {
+
+    private final Map<UUID, Long> balances = new ConcurrentHashMap<>();
+    private final LongAdder ledgerSize = new LongAdder();
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+
+    InMemoryWalletStore() {
+        this.walletRepository = (WalletRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{WalletRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "deposit" -> deposit((UUID) args[0], (Long) args[1]);
+                    case "withdraw" -> withdraw((UUID) args[0], (Long) args[1]);
+                    case "existsById" -> balances.containsKey((UUID) args[0]);
+                    case "findTotalBalance" -> Optional.ofNullable(balances.get((UUID) args[0]));
+                    case "findSlotsForUpdate" -> balances.containsKey((UUID) args[0]) ? Optional.of(0) : Optional.empty();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryWalletRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        this.transactionRepository = (TransactionRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{TransactionRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        ledgerSize.increment();
+                        yield args[0];
+                    }
+                    case "findByIdempotencyKey" -> Optional.empty();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryTransactionRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Создает кошельки с одинаковым начальным балансом.
+     *
+     * @param count   количество кошельков
+     * @param balance начальный баланс в копейках
+     * @return идентификаторы созданных кошельков
+     */
+    UUID[] createWallets(int count, long balance) {
+        UUID[] walletIds = new UUID[count];
+        for (int i = 0; i < count; i++) {
+            walletIds[i] = UUID.randomUUID();
+            balances.put(walletIds[i], balance);
+        }
+        return walletIds;
+    }
+
+    WalletRepository walletRepository() {
+        return walletRepository;
+    }
+
+    TransactionRepository transactionRepository() {
+        return transactionRepository;
+    }
+
+    long ledgerSize() {
+        return ledgerSize.sum();
+    }
+
+    private long deposit(UUID walletId, long amount) {
+        Long balance = balances.computeIfPresent(walletId, (id, current) -> current + amount);
+        return balance != null ? balance : WalletBalanceUpdates.NOT_UPDATED;
+    }
+
+    private long withdraw(UUID walletId, long amount) {
+        long[] updated = {-1};
+        balances.computeIfPresent(walletId, (id, balance) -> {
+            if (balance < amount) {
+                return balance;
+            }
+            updated[0] = balance - amount;
+            return updated[0];
+        });
+        return updated[0] < 0 ? WalletBalanceUpdates.NOT_UPDATED : updated[0];
+    }
+}
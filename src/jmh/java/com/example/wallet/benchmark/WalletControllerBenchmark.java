@@ -0,0 +1,66 @@
+package com.example.wallet.benchmark;
+
+import com.example.wallet.controller.OperationRequest;
+import com.example.wallet.controller.WalletController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк обработки запросов и ответов WalletController без HTTP-стека:
+ * разбор тела операции в OperationRequest и построение JSON-ответа на чтение баланса.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WalletControllerBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private WalletController walletController;
+    private byte[][] payloads;
+
+    @Setup(Level.Trial)
+    public void setUp(WalletFixture fixture) {
+        walletController = new WalletController(fixture.walletService, null, null, null, null, null, null, null);
+        payloads = new byte[fixture.walletIds.length][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = String.format("""
+                    {"walletId": "%s", "operationType": "DEPOSIT", "amount": %d.%02d}""",
+                    fixture.walletIds[i], 1 + i % 1000, i % 100).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Разбор тела запроса на операцию, включая перевод суммы в копейки.
+     */
+    @Benchmark
+    public OperationRequest parseOperation(WalletFixture.Cursor cursor) throws IOException {
+        return objectMapper.readValue(payloads[cursor.next()], OperationRequest.class);
+    }
+
+    /**
+     * Ответ на чтение баланса: вызов контроллера и сериализация тела в JSON.
+     */
+    @Benchmark
+    public byte[] balanceResponse(WalletFixture fixture, WalletFixture.Cursor cursor) throws IOException {
+        return objectMapper.writeValueAsBytes(
+                walletController.getBalance(fixture.walletIds[cursor.next()]).getBody());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.wallet.benchmark;
+
+import com.example.wallet.config.WalletCacheProperties;
+import com.example.wallet.config.WalletHotProperties;
+import com.example.wallet.config.WalletReplicaProperties;
+import com.example.wallet.config.WalletStreamProperties;
+import com.example.wallet.service.BalanceEventDispatcher;
+import com.example.wallet.service.HotWalletService;
+import com.example.wallet.service.ReadRouting;
+import com.example.wallet.service.WalletBalanceCache;
+import com.example.wallet.service.WalletMetrics;
+import com.example.wallet.service.WalletService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Общее для всех потоков окружение бенчмарка: WalletService поверх хранилища в памяти
+ * и набор кошельков. Параметр skew задает распределение ключей кошельков:
+ * uniform — равномерное, hot — 90% операций приходится на несколько горячих кошельков.
+ */
+@State(Scope.Benchmark)
+public class WalletFixture {
+
+    static final int WALLETS = 10_000;
+    static final int HOT_WALLETS = 8;
+    static final long INITIAL_BALANCE = 100_000_000_00L;
+
+    @Param({"uniform", "hot"})
+    public String skew;
+
+    InMemoryWalletStore store;
+    WalletService walletService;
+    UUID[] walletIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new InMemoryWalletStore();
+        walletIds = store.createWallets(WALLETS, INITIAL_BALANCE);
+        WalletMetrics metrics = new WalletMetrics(new SimpleMeterRegistry());
+        ReadRouting readRouting = new ReadRouting(new WalletReplicaProperties(), null, metrics);
+        walletService = new WalletService(store.walletRepository(), store.transactionRepository(),
+                new WalletBalanceCache(new WalletCacheProperties(), new SimpleMeterRegistry()),
+                readRouting,
+                new BalanceEventDispatcher(new WalletStreamProperties(), store.walletRepository(), readRouting, metrics),
+                new HotWalletService(store.walletRepository(), new WalletHotProperties()),
+                metrics);
+    }
+
+    /**
+     * Поток ключей кошельков одного потока бенчмарка.
+     * Последовательность индексов вычисляется заранее, чтобы выбор ключа не влиял на измерение.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private static final int SEQUENCE_LENGTH = 1 << 14;
+
+        private int[] sequence;
+        private int position;
+
+        @Setup(Level.Trial)
+        public void setUp(WalletFixture fixture) {
+            SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+            sequence = new int[SEQUENCE_LENGTH];
+            for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+                boolean hot = "hot".equals(fixture.skew) && random.nextInt(10) < 9;
+                sequence[i] = random.nextInt(hot ? HOT_WALLETS : WALLETS);
+            }
+        }
+
+        /**
+         * Возвращает номер следующего ключа в последовательности.
+         */
+        int next() {
+            position = (position + 1) & (SEQUENCE_LENGTH - 1);
+            return sequence[position];
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.wallet.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк WalletService поверх хранилища в памяти: одиночные операции
+ * и чтение баланса через кэш. Стоимость базы данных сюда не входит — измеряются
+ * накладные расходы сервиса, кэша и конкуренции за горячие кошельки.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalletServiceBenchmark {
+
+    /**
+     * Операция изменения баланса: пополнения и снятия чередуются, чтобы баланс не уходил в ноль.
+     */
+    @Benchmark
+    public long performOperation(WalletFixture fixture, WalletFixture.Cursor cursor) {
+        int index = cursor.next();
+        String type = (index & 1) == 0 ? "DEPOSIT" : "WITHDRAW";
+        return fixture.walletService.performOperation(fixture.walletIds[index], type, 100L);
+    }
+
+    /**
+     * Чтение баланса; после прогрева все кошельки находятся в кэше.
+     */
+    @Benchmark
+    public long getBalance(WalletFixture fixture, WalletFixture.Cursor cursor) {
+        return fixture.walletService.getBalance(fixture.walletIds[cursor.next()]);
+    }
+}
@@ -1,10 +1,31 @@
 package com.example.wallet.config;
 
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.core.env.Environment;
 
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Конфигурация асинхронного выполнения операций над кошельками.
+ * При spring.threads.virtual.enabled=true полосы исполнителя работают
+ * на виртуальных потоках, иначе — на платформенных.
+ * Принятые операции записываются в локальный журнал (wallet.journal),
+ * изменения балансов рассылаются подписчикам потока балансов (wallet.stream).
+ */
 @Configuration
-@EnableAsync
+@EnableConfigurationProperties({WalletExecutorProperties.class, WalletBulkProperties.class,
+        OperationTrackingProperties.class, WalletJournalProperties.class,
+        WalletAdmissionProperties.class, WalletStreamProperties.class})
 public class AsyncConfig {
 
+    @Bean
+    public ThreadFactory walletLaneThreadFactory(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return Thread.ofVirtual().name("wallet-lane-", 0).factory();
+        }
+        return Thread.ofPlatform().name("wallet-lane-", 0).factory();
+    }
 }
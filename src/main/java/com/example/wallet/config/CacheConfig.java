@@ -0,0 +1,13 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация кэша балансов кошельков.
+ */
+@Configuration
+@EnableConfigurationProperties(WalletCacheProperties.class)
+public class CacheConfig {
+
+}
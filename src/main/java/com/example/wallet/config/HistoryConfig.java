@@ -0,0 +1,14 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация истории операций кошелька, снимков балансов по журналу и сверки с журналом.
+ */
+@Configuration
+@EnableConfigurationProperties({WalletHistoryProperties.class, WalletSnapshotProperties.class,
+        WalletReconcileProperties.class})
+public class HistoryConfig {
+
+}
@@ -0,0 +1,16 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Конфигурация режима горячего кошелька.
+ * Включает планировщик, которым периодически обновляется локальный список горячих кошельков.
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(WalletHotProperties.class)
+public class HotWalletConfig {
+
+}
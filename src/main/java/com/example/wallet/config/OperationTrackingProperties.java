@@ -0,0 +1,62 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки хранения статусов принятых асинхронных операций.
+ */
+@ConfigurationProperties(prefix = "wallet.tracking")
+public class OperationTrackingProperties {
+
+    /**
+     * Максимальное количество отслеживаемых операций.
+     */
+    private long maximumSize = 100000;
+
+    /**
+     * Сколько хранится статус завершенной операции, мс.
+     */
+    private long completedTtlMs = 300000;
+
+    /**
+     * Сколько хранится операция, которая еще не завершилась, мс.
+     */
+    private long pendingTtlMs = 600000;
+
+    /**
+     * Максимальное время ожидания завершения операции в запросе статуса, мс.
+     */
+    private long maxWaitMs = 30000;
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getCompletedTtlMs() {
+        return completedTtlMs;
+    }
+
+    public void setCompletedTtlMs(long completedTtlMs) {
+        this.completedTtlMs = completedTtlMs;
+    }
+
+    public long getPendingTtlMs() {
+        return pendingTtlMs;
+    }
+
+    public void setPendingTtlMs(long pendingTtlMs) {
+        this.pendingTtlMs = pendingTtlMs;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+}
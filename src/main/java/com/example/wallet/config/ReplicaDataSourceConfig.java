@@ -0,0 +1,55 @@
+package com.example.wallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+/**
+ * Конфигурация чтения с реплики (wallet.replica.enabled=true).
+ * Вместо пула, создаваемого Spring Boot, создаются два пула: основной по spring.datasource
+ * и пул реплики по wallet.replica.datasource со своим размером. Основным DataSource приложения
+ * становится {@link ReplicaRoutingDataSource}: JPA, JdbcTemplate и Liquibase работают через него
+ * и получают соединения основной базы, пока поток не выбрал реплику.
+ */
+@Configuration
+@EnableConfigurationProperties(WalletReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    /**
+     * Имя пула реплики; по нему метрики пула реплики отличаются от метрик основного пула.
+     */
+    public static final String REPLICA_POOL_NAME = "wallet-replica";
+
+    @Bean
+    @ConditionalOnProperty(prefix = "wallet.replica", name = "enabled", havingValue = "true")
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "wallet.replica", name = "enabled", havingValue = "true")
+    @ConfigurationProperties(prefix = "wallet.replica.datasource")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName(REPLICA_POOL_NAME);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "wallet.replica", name = "enabled", havingValue = "true")
+    public ReplicaRoutingDataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                               @Qualifier("replicaDataSource") DataSource replica) {
+        return new ReplicaRoutingDataSource(primary, replica);
+    }
+}
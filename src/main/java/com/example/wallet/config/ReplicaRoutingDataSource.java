@@ -0,0 +1,49 @@
+package com.example.wallet.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * DataSource, выдающий соединения основной базы или реплики.
+ * Соединение с репликой выдается только потоку, явно выбравшему реплику
+ * через {@link #routeToReplica(boolean)}; остальные запросы, в том числе все записи,
+ * миграции и фоновые задачи, получают соединения основной базы.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Boolean> REPLICA = new ThreadLocal<>();
+
+    private enum Target {
+        PRIMARY, REPLICA
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Выбирает источник соединений для текущего потока.
+     * Соединение, уже полученное потоком (например, соединение открытой транзакции), не меняется.
+     *
+     * @param replica true — реплика, false — основная база
+     * @return прежний выбор, который вызывающий код восстанавливает по окончании чтения
+     */
+    public static boolean routeToReplica(boolean replica) {
+        boolean previous = REPLICA.get() != null;
+        if (replica) {
+            REPLICA.set(Boolean.TRUE);
+        } else {
+            REPLICA.remove();
+        }
+        return previous;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return REPLICA.get() != null ? Target.REPLICA : Target.PRIMARY;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.wallet.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Конфигурация режима виртуальных потоков (spring.threads.virtual.enabled=true).
+ * Обработка запросов Tomcat переводится на виртуальные потоки самим Spring Boot;
+ * здесь пул соединений оборачивается семафором по размеру пула.
+ * Свободные разрешения и очередь ожидающих потоков публикуются как метрики
+ * wallet.datasource.permits.available и wallet.datasource.permits.waiting с тегом pool — именем пула;
+ * при чтении с реплики у основного пула и пула реплики свои семафоры.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadsConfig {
+
+    @Bean
+    public static BeanPostProcessor throttledDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    return new ThrottledDataSource(hikari, hikari.getMaximumPoolSize(), hikari.getConnectionTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder throttledDataSourceMetrics(List<DataSource> dataSources) {
+        return registry -> {
+            for (DataSource dataSource : dataSources) {
+                if (dataSource instanceof ThrottledDataSource throttled) {
+                    String pool = throttled.getPoolName();
+                    Gauge.builder("wallet.datasource.permits.available", throttled,
+                                    ThrottledDataSource::getAvailablePermits)
+                            .description("Free database permits of the virtual thread throttle")
+                            .tag("pool", pool)
+                            .register(registry);
+                    Gauge.builder("wallet.datasource.permits.waiting", throttled,
+                                    ThrottledDataSource::getQueueLength)
+                            .description("Threads waiting for a database permit")
+                            .tag("pool", pool)
+                            .register(registry);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки допуска асинхронных операций: адаптивного ограничения числа принятых,
+ * но еще не выполненных операций.
+ */
+@ConfigurationProperties(prefix = "wallet.admission")
+public class WalletAdmissionProperties {
+
+    /**
+     * Ограничивать ли число операций в работе. При false операции ограничиваются только очередями полос.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Ограничение при запуске.
+     */
+    private int initialLimit = 256;
+
+    /**
+     * Нижняя граница ограничения.
+     */
+    private int minLimit = 16;
+
+    /**
+     * Верхняя граница ограничения.
+     */
+    private int maxLimit = 4096;
+
+    /**
+     * Период пересчета ограничения, мс.
+     */
+    private long windowMs = 1000;
+
+    /**
+     * Во сколько раз задержка выполнения операций в базе может превысить наименьшую наблюдавшуюся,
+     * прежде чем ограничение начнет уменьшаться.
+     */
+    private double latencyTolerance = 2.0;
+
+    /**
+     * Доля нового значения при сглаживании ограничения, от 0 до 1.
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * Наибольшее значение заголовка Retry-After, с.
+     */
+    private long maxRetryAfterSeconds = 30;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    public void setWindowMs(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public long getMaxRetryAfterSeconds() {
+        return maxRetryAfterSeconds;
+    }
+
+    public void setMaxRetryAfterSeconds(long maxRetryAfterSeconds) {
+        this.maxRetryAfterSeconds = maxRetryAfterSeconds;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки пакетной загрузки операций.
+ */
+@ConfigurationProperties(prefix = "wallet.bulk")
+public class WalletBulkProperties {
+
+    /**
+     * Количество операций, применяемых одной транзакцией.
+     */
+    private int chunkSize = 500;
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки локального кэша балансов кошельков.
+ */
+@ConfigurationProperties(prefix = "wallet.cache")
+public class WalletCacheProperties {
+
+    /**
+     * Включен ли кэш. При выключенном кэше каждый запрос баланса идет в базу данных.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Максимальное количество кошельков в кэше.
+     */
+    private long maximumSize = 100000;
+
+    /**
+     * Время жизни записи после последнего обновления, мс.
+     */
+    private long expireAfterWriteMs = 60000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getExpireAfterWriteMs() {
+        return expireAfterWriteMs;
+    }
+
+    public void setExpireAfterWriteMs(long expireAfterWriteMs) {
+        this.expireAfterWriteMs = expireAfterWriteMs;
+    }
+}
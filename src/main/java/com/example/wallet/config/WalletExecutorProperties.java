@@ -0,0 +1,77 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки исполнителя операций над кошельками.
+ * Операции распределяются по полосам (lanes) по идентификатору кошелька.
+ */
+@ConfigurationProperties(prefix = "wallet.executor")
+public class WalletExecutorProperties {
+
+    /**
+     * Количество полос. Каждая полоса обслуживается одним потоком-писателем.
+     */
+    private int lanes = 8;
+
+    /**
+     * Максимальная глубина очереди одной полосы.
+     */
+    private int queueCapacity = 1024;
+
+    /**
+     * Максимальное количество операций, фиксируемых одной транзакцией.
+     */
+    private int maxBatchSize = 256;
+
+    /**
+     * Сколько полоса ждет дополнительных операций после первой, прежде чем
+     * зафиксировать пакет, мс. При 0 в пакет попадает только уже накопленная очередь.
+     */
+    private long batchWindowMs = 2;
+
+    /**
+     * Время ожидания завершения очередей при остановке приложения, мс.
+     */
+    private long shutdownTimeoutMs = 10000;
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public void setLanes(int lanes) {
+        this.lanes = lanes;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public long getBatchWindowMs() {
+        return batchWindowMs;
+    }
+
+    public void setBatchWindowMs(long batchWindowMs) {
+        this.batchWindowMs = batchWindowMs;
+    }
+
+    public long getShutdownTimeoutMs() {
+        return shutdownTimeoutMs;
+    }
+
+    public void setShutdownTimeoutMs(long shutdownTimeoutMs) {
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки истории операций кошелька.
+ */
+@ConfigurationProperties(prefix = "wallet.history")
+public class WalletHistoryProperties {
+
+    /**
+     * Размер страницы истории, если он не указан в запросе.
+     */
+    private int defaultPageSize = 50;
+
+    /**
+     * Максимальный размер страницы истории.
+     */
+    private int maxPageSize = 500;
+
+    /**
+     * Количество строк, получаемых драйвером за одно обращение к базе при выгрузке истории.
+     */
+    private int fetchSize = 1000;
+
+    public int getDefaultPageSize() {
+        return defaultPageSize;
+    }
+
+    public void setDefaultPageSize(int defaultPageSize) {
+        this.defaultPageSize = defaultPageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки режима горячего кошелька.
+ */
+@ConfigurationProperties(prefix = "wallet.hot")
+public class WalletHotProperties {
+
+    /**
+     * Максимальное количество ячеек баланса одного кошелька.
+     */
+    private int maxSlots = 64;
+
+    /**
+     * Период обновления локального списка горячих кошельков из базы данных, мс.
+     * Изменения режима, сделанные на других экземплярах, видны не позже чем через этот период.
+     */
+    private long refreshMs = 5000;
+
+    public int getMaxSlots() {
+        return maxSlots;
+    }
+
+    public void setMaxSlots(int maxSlots) {
+        this.maxSlots = maxSlots;
+    }
+
+    public long getRefreshMs() {
+        return refreshMs;
+    }
+
+    public void setRefreshMs(long refreshMs) {
+        this.refreshMs = refreshMs;
+    }
+}
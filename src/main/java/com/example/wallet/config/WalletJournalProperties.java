@@ -0,0 +1,53 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки локального журнала принятых операций.
+ * Операция, принятая ответом 202, записывается в журнал до ответа и отмечается выполненной
+ * после фиксации в базе; невыполненные операции повторяются при следующем запуске.
+ */
+@ConfigurationProperties(prefix = "wallet.journal")
+public class WalletJournalProperties {
+
+    /**
+     * Записывать ли принятые операции в журнал.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Каталог файлов журнала. Каталог принадлежит одному экземпляру приложения
+     * и должен переживать его перезапуск.
+     */
+    private String directory = "journal";
+
+    /**
+     * Размер файла журнала, байт. Файл отображается в память целиком; файл, все операции которого
+     * выполнены, удаляется.
+     */
+    private int segmentBytes = 64 * 1024 * 1024;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(int segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки сверки балансов кошельков с журналом операций.
+ */
+@ConfigurationProperties(prefix = "wallet.reconcile")
+public class WalletReconcileProperties {
+
+    /**
+     * Запускать ли сверку по расписанию.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Расписание сверки (cron); незавершенная прошлая сверка при запуске продолжается.
+     */
+    private String cron = "0 0 3 * * *";
+
+    /**
+     * Количество диапазонов идентификаторов кошельков. Диапазон проверяется одним запросом
+     * и является единицей продолжения прерванной сверки.
+     */
+    private int ranges = 256;
+
+    /**
+     * Количество диапазонов, проверяемых параллельно.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Бюджет времени запросов сверки к базе в миллисекундах на секунду: при превышении
+     * следующие запросы откладываются, чтобы сверка занимала не больше этой доли времени базы.
+     */
+    private long dbMillisPerSecond = 500;
+
+    /**
+     * Максимальное количество расхождений в отчете.
+     */
+    private int reportLimit = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getCron() {
+        return cron;
+    }
+
+    public void setCron(String cron) {
+        this.cron = cron;
+    }
+
+    public int getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(int ranges) {
+        this.ranges = ranges;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getDbMillisPerSecond() {
+        return dbMillisPerSecond;
+    }
+
+    public void setDbMillisPerSecond(long dbMillisPerSecond) {
+        this.dbMillisPerSecond = dbMillisPerSecond;
+    }
+
+    public int getReportLimit() {
+        return reportLimit;
+    }
+
+    public void setReportLimit(int reportLimit) {
+        this.reportLimit = reportLimit;
+    }
+}
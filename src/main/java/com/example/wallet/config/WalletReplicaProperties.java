@@ -0,0 +1,96 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки чтения с реплики базы данных.
+ * Параметры пула реплики (jdbc-url, username, password, maximum-pool-size и другие свойства Hikari)
+ * задаются в wallet.replica.datasource.
+ */
+@ConfigurationProperties(prefix = "wallet.replica")
+public class WalletReplicaProperties {
+
+    /**
+     * Читать ли балансы и историю с реплики. При false все запросы идут в основную базу.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Сколько после фиксации изменения кошелька его чтения идут в основную базу, мс.
+     * Должно быть не меньше max-lag-ms + lag-check-ms, иначе после снятия закрепления
+     * реплика может еще не содержать изменения.
+     */
+    private long pinMs = 5000;
+
+    /**
+     * Наибольшее допустимое отставание реплики, мс. При большем отставании чтения идут в основную базу.
+     */
+    private long maxLagMs = 1000;
+
+    /**
+     * Период проверки отставания реплики, мс.
+     */
+    private long lagCheckMs = 1000;
+
+    /**
+     * Запрос отставания реплики в миллисекундах. По умолчанию — для потоковой репликации PostgreSQL:
+     * реплика, применившая все полученные изменения, не отстает, даже если изменений давно не было.
+     */
+    private String lagQuery = "SELECT CASE WHEN NOT pg_is_in_recovery()"
+            + " OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS bigint) END";
+
+    /**
+     * Наибольшее число одновременно закрепленных кошельков. При превышении закрепления
+     * старейших кошельков снимаются раньше срока.
+     */
+    private long maxPinnedWallets = 100000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getPinMs() {
+        return pinMs;
+    }
+
+    public void setPinMs(long pinMs) {
+        this.pinMs = pinMs;
+    }
+
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+
+    public void setMaxLagMs(long maxLagMs) {
+        this.maxLagMs = maxLagMs;
+    }
+
+    public long getLagCheckMs() {
+        return lagCheckMs;
+    }
+
+    public void setLagCheckMs(long lagCheckMs) {
+        this.lagCheckMs = lagCheckMs;
+    }
+
+    public String getLagQuery() {
+        return lagQuery;
+    }
+
+    public void setLagQuery(String lagQuery) {
+        this.lagQuery = lagQuery;
+    }
+
+    public long getMaxPinnedWallets() {
+        return maxPinnedWallets;
+    }
+
+    public void setMaxPinnedWallets(long maxPinnedWallets) {
+        this.maxPinnedWallets = maxPinnedWallets;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки фонового создания снимков балансов по журналу операций.
+ */
+@ConfigurationProperties(prefix = "wallet.snapshot")
+public class WalletSnapshotProperties {
+
+    /**
+     * Запускать ли создание снимков по расписанию.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Пауза между окончанием одного прохода по кошелькам и началом следующего, мс.
+     */
+    private long intervalMs = 600000;
+
+    /**
+     * Возраст записей журнала, после которого они попадают в снимок, мс.
+     * Время создания записи назначается до фиксации транзакции, поэтому запись с более ранним
+     * временем может стать видимой позже более новой; снимок учитывает только записи старше
+     * этого возраста, к которому все транзакции с ними заведомо завершены. Значение должно превышать
+     * самую долгую транзакцию записи журнала вместе с расхождением часов экземпляров приложения:
+     * запись, зафиксированная позже, окажется позади снимка и будет потеряна для баланса по журналу.
+     */
+    private long settleMs = 60000;
+
+    /**
+     * Количество диапазонов идентификаторов кошельков, обрабатываемых параллельно.
+     * Каждый диапазон на время прохода занимает одно соединение с базой.
+     */
+    private int partitions = 2;
+
+    /**
+     * Количество кошельков, обрабатываемых одной транзакцией.
+     */
+    private int batchSize = 200;
+
+    /**
+     * Пауза между порциями внутри диапазона, мс.
+     */
+    private long pauseMs = 50;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public void setIntervalMs(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public long getSettleMs() {
+        return settleMs;
+    }
+
+    public void setSettleMs(long settleMs) {
+        this.settleMs = settleMs;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getPauseMs() {
+        return pauseMs;
+    }
+
+    public void setPauseMs(long pauseMs) {
+        this.pauseMs = pauseMs;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.wallet.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Настройки потока изменений балансов (Server-Sent Events).
+ */
+@ConfigurationProperties(prefix = "wallet.stream")
+public class WalletStreamProperties {
+
+    /**
+     * Наибольшее число одновременных подписок на экземпляр приложения.
+     */
+    private int maxSubscribers = 10000;
+
+    /**
+     * Наибольшее число кошельков в одной подписке.
+     */
+    private int maxWalletsPerSubscription = 100;
+
+    /**
+     * Через сколько миллисекунд без событий подписчику отправляется комментарий для поддержания соединения.
+     */
+    private long heartbeatMs = 15000;
+
+    /**
+     * Сколько миллисекунд может длиться отправка подписчику, прежде чем подписка будет закрыта.
+     */
+    private long maxStallMs = 10000;
+
+    /**
+     * Время жизни подписки, мс; по истечении клиент подписывается заново.
+     */
+    private long timeoutMs = 1800000;
+
+    /**
+     * Число потоков отправки событий клиентам. Поток, пишущий зависшему клиенту, занят
+     * до закрытия соединения по таймауту записи.
+     */
+    private int senderThreads = 8;
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public void setMaxSubscribers(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    public int getMaxWalletsPerSubscription() {
+        return maxWalletsPerSubscription;
+    }
+
+    public void setMaxWalletsPerSubscription(int maxWalletsPerSubscription) {
+        this.maxWalletsPerSubscription = maxWalletsPerSubscription;
+    }
+
+    public long getHeartbeatMs() {
+        return heartbeatMs;
+    }
+
+    public void setHeartbeatMs(long heartbeatMs) {
+        this.heartbeatMs = heartbeatMs;
+    }
+
+    public long getMaxStallMs() {
+        return maxStallMs;
+    }
+
+    public void setMaxStallMs(long maxStallMs) {
+        this.maxStallMs = maxStallMs;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public int getSenderThreads() {
+        return senderThreads;
+    }
+
+    public void setSenderThreads(int senderThreads) {
+        this.senderThreads = senderThreads;
+    }
+}
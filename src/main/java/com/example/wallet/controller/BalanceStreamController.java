@@ -0,0 +1,127 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.config.WalletStreamProperties;
+import com.example.wallet.model.Money;
+import com.example.wallet.service.BalanceEventDispatcher;
+import com.example.wallet.service.BalanceListener;
+import com.example.wallet.service.BalanceSubscription;
+import com.example.wallet.service.WalletService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * REST-контроллер потока балансов: клиент подписывается на кошельки и получает их балансы
+ * событиями Server-Sent Events вместо периодических запросов баланса.
+ */
+@RestController
+@RequestMapping("/api/v1/wallets/stream")
+public class BalanceStreamController {
+
+    private final BalanceEventDispatcher dispatcher;
+    private final WalletService walletService;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+
+    public BalanceStreamController(BalanceEventDispatcher dispatcher, WalletService walletService,
+                                   ObjectMapper objectMapper, WalletStreamProperties properties) {
+        this.dispatcher = dispatcher;
+        this.walletService = walletService;
+        this.objectMapper = objectMapper;
+        this.timeoutMs = properties.getTimeoutMs();
+    }
+
+    /**
+     * Подписывается на балансы кошельков.
+     * Сначала отправляется текущий баланс каждого кошелька, затем баланс после каждой зафиксированной
+     * операции, пакета или перевода, изменившего кошелек. Каждый баланс — событие balance с полями
+     * walletId и balance. Если клиент не успевает читать, промежуточные балансы кошелька пропускаются
+     * и он получает последний; соединение клиента, не читающего дольше wallet.stream.max-stall-ms,
+     * закрывается. Простаивающее соединение поддерживается комментариями раз в wallet.stream.heartbeat-ms.
+     *
+     * @param walletIds идентификаторы кошельков, не больше wallet.stream.max-wallets-per-subscription
+     * @param response  ответ, в который пишется ошибка, если подписка не открыта
+     * @return поток событий; 400, если кошельков нет или их слишком много; 404, если кошелек не найден;
+     * 503, если достигнуто наибольшее число подписок
+     */
+    @GetMapping
+    public SseEmitter subscribe(@RequestParam("walletId") List<UUID> walletIds,
+                                HttpServletResponse response) throws IOException {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        BalanceSubscription subscription;
+        try {
+            subscription = dispatcher.subscribe(walletIds, new EmitterListener(emitter));
+        } catch (IllegalArgumentException e) {
+            return error(response, HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            return error(response, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+
+        Map<UUID, Long> balances;
+        try {
+            // Подписка открыта раньше чтения, поэтому изменение, не попавшее в прочитанный баланс, будет разослано.
+            balances = walletService.getCommittedBalances(subscription.getWalletIds());
+        } catch (RuntimeException e) {
+            dispatcher.unsubscribe(subscription);
+            throw e;
+        }
+        if (balances.size() < subscription.getWalletIds().size()) {
+            dispatcher.unsubscribe(subscription);
+            return error(response, HttpStatus.NOT_FOUND, "Wallet not found");
+        }
+        balances.forEach(subscription::offerInitial);
+
+        emitter.onCompletion(() -> dispatcher.unsubscribe(subscription));
+        emitter.onTimeout(() -> dispatcher.unsubscribe(subscription));
+        emitter.onError(e -> dispatcher.unsubscribe(subscription));
+        dispatcher.schedule(subscription);
+        return emitter;
+    }
+
+    private SseEmitter error(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", message));
+        return null;
+    }
+
+    /**
+     * Пишет события подписки в соединение клиента.
+     */
+    private static final class EmitterListener implements BalanceListener {
+
+        private final SseEmitter emitter;
+
+        EmitterListener(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onBalance(UUID walletId, long balance) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .name("balance")
+                    .data(Map.of("walletId", walletId, "balance", Money.toDecimal(balance))));
+        }
+
+        @Override
+        public void onHeartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+
+        @Override
+        public void onClose() {
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.service.HotWalletService;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Actuator-эндпоинт режима горячего кошелька.
+ * GET возвращает горячие кошельки и количество их ячеек по локальному списку экземпляра;
+ * POST /actuator/wallethot/{walletId} с телом {"slots": N} задает количество ячеек кошелька,
+ * 0 выключает режим.
+ */
+@Component
+@WebEndpoint(id = "wallethot")
+public class HotWalletEndpoint {
+
+    private final HotWalletService hotWalletService;
+
+    public HotWalletEndpoint(HotWalletService hotWalletService) {
+        this.hotWalletService = hotWalletService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotWallets() {
+        return Map.of("wallets", hotWalletService.getHotWallets());
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> setSlots(@Selector UUID walletId, int slots) {
+        try {
+            hotWalletService.setSlots(walletId, slots);
+        } catch (IllegalArgumentException e) {
+            int status = e.getMessage().equals("Wallet not found")
+                    ? WebEndpointResponse.STATUS_NOT_FOUND : WebEndpointResponse.STATUS_BAD_REQUEST;
+            return new WebEndpointResponse<>(Map.of("error", e.getMessage()), status);
+        }
+        return new WebEndpointResponse<>(Map.of("walletId", walletId, "slots", slots));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.config.OperationTrackingProperties;
+import com.example.wallet.model.Money;
+import com.example.wallet.service.OperationTracker;
+import com.example.wallet.service.TrackedOperation;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * REST-контроллер для получения статуса принятых асинхронных операций.
+ */
+@RestController
+@RequestMapping("/api/v1/wallets/operations")
+public class OperationController {
+
+    private final OperationTracker operationTracker;
+    private final long maxWaitMs;
+
+    public OperationController(OperationTracker operationTracker, OperationTrackingProperties properties) {
+        this.operationTracker = operationTracker;
+        this.maxWaitMs = properties.getMaxWaitMs();
+    }
+
+    /**
+     * Получает статус операции.
+     * Если задан waitMs и операция еще выполняется, ответ задерживается до её завершения,
+     * но не дольше waitMs (и не дольше wallet.tracking.max-wait-ms); по истечении ожидания
+     * возвращается статус PENDING.
+     *
+     * @param operationId идентификатор операции
+     * @param waitMs      максимальное время ожидания завершения операции, мс
+     * @return статус операции: PENDING, APPLIED с балансом или REJECTED с причиной отказа
+     */
+    @GetMapping("/{operationId}")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> getStatus(@PathVariable UUID operationId,
+                                                                          @RequestParam(defaultValue = "0") long waitMs) {
+        Optional<TrackedOperation> found = operationTracker.find(operationId);
+        if (found.isEmpty()) {
+            DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Operation not found")));
+            return result;
+        }
+        TrackedOperation operation = found.get();
+        long timeout = Math.min(Math.max(waitMs, 0), maxWaitMs);
+        if (timeout == 0 || operation.getResult().isDone()) {
+            DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.ok(toBody(operation)));
+            return result;
+        }
+
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>(timeout);
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(toBody(operation))));
+        operation.getResult().whenComplete((balance, failure) -> result.setResult(ResponseEntity.ok(toBody(operation))));
+        return result;
+    }
+
+    static Map<String, Object> toBody(TrackedOperation operation) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("operationId", operation.getOperationId().toString());
+        body.put("walletId", operation.getWalletId().toString());
+        body.put("operation", operation.getOperationType());
+        body.put("amount", Money.toDecimal(operation.getAmount()));
+        body.put("status", operation.getStatus().name());
+        Long balance = operation.getBalance();
+        if (balance != null) {
+            body.put("balance", Money.toDecimal(balance));
+        }
+        if (operation.getError() != null) {
+            body.put("error", operation.getError());
+        }
+        return body;
+    }
+}
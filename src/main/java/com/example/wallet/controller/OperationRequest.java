@@ -0,0 +1,53 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.model.MoneyDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.UUID;
+
+/**
+ * Тело запроса на изменение баланса кошелька.
+ * Сумма читается из исходного текста JSON-числа сразу в копейки.
+ */
+public class OperationRequest {
+
+    /**
+     * Идентификатор кошелька.
+     */
+    private UUID walletId;
+
+    /**
+     * Тип операции: DEPOSIT или WITHDRAW.
+     */
+    private String operationType;
+
+    /**
+     * Сумма операции в копейках; 0, если сумма не передана.
+     */
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long amount;
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public void setWalletId(UUID walletId) {
+        this.walletId = walletId;
+    }
+
+    public String getOperationType() {
+        return operationType;
+    }
+
+    public void setOperationType(String operationType) {
+        this.operationType = operationType;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.model.Money;
+import com.example.wallet.model.ReconciliationMismatch;
+import com.example.wallet.model.ReconciliationRun;
+import com.example.wallet.service.ReconciliationService;
+import com.example.wallet.service.TransactionHistoryService;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Actuator-эндпоинт сверки балансов кошельков с журналом операций.
+ * GET возвращает итоги последней сверки и её наибольшие расхождения;
+ * POST запускает сверку в фоне (или продолжает незавершенную); DELETE останавливает её.
+ */
+@Component
+@WebEndpoint(id = "walletreconcile")
+public class ReconciliationEndpoint {
+
+    private final ReconciliationService reconciliationService;
+
+    public ReconciliationEndpoint(ReconciliationService reconciliationService) {
+        this.reconciliationService = reconciliationService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("running", reconciliationService.isRunning());
+        reconciliationService.getLatestRun().ifPresent(run -> {
+            body.put("run", toBody(run));
+            List<Map<String, Object>> mismatches = reconciliationService.getMismatches(run.getId()).stream()
+                    .map(ReconciliationEndpoint::toBody)
+                    .toList();
+            body.put("mismatches", mismatches);
+        });
+        return body;
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> start() {
+        Optional<ReconciliationRun> run = reconciliationService.start();
+        if (run.isEmpty()) {
+            return new WebEndpointResponse<>(Map.of("error", "Reconciliation already in progress"),
+                    HttpStatus.CONFLICT.value());
+        }
+        return new WebEndpointResponse<>(toBody(run.get()), HttpStatus.ACCEPTED.value());
+    }
+
+    @DeleteOperation
+    public Map<String, Object> stop() {
+        return Map.of("stopping", reconciliationService.stop());
+    }
+
+    private static Map<String, Object> toBody(ReconciliationRun run) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", run.getId().toString());
+        body.put("startedAt", TransactionHistoryService.formatTime(run.getStartedAt()));
+        body.put("finishedAt", run.getFinishedAt() == null ? null
+                : TransactionHistoryService.formatTime(run.getFinishedAt()));
+        body.put("ranges", run.getRanges());
+        body.put("checkedRanges", run.getCheckedRanges());
+        body.put("wallets", run.getWallets());
+        body.put("mismatches", run.getMismatches());
+        body.put("dbTimeMs", run.getDbTimeMs());
+        return body;
+    }
+
+    private static Map<String, Object> toBody(ReconciliationMismatch mismatch) {
+        return Map.of(
+                "walletId", mismatch.getWalletId().toString(),
+                "walletBalance", Money.toDecimal(mismatch.getWalletBalance()),
+                "ledgerBalance", Money.toDecimal(mismatch.getLedgerBalance()),
+                "difference", Money.toDecimal(mismatch.getWalletBalance() - mismatch.getLedgerBalance())
+        );
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.model.Money;
+import com.example.wallet.model.Transaction;
+import com.example.wallet.service.TransactionHistoryService;
+import com.example.wallet.service.TransactionPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * REST-контроллер истории операций кошелька.
+ * Время в параметрах и ответах — ISO-8601 без часового пояса, как оно хранится в журнале.
+ */
+@RestController
+@RequestMapping("/api/v1/wallets/{walletId}/transactions")
+public class TransactionHistoryController {
+
+    private final TransactionHistoryService historyService;
+    private final ObjectMapper objectMapper;
+
+    public TransactionHistoryController(TransactionHistoryService historyService, ObjectMapper objectMapper) {
+        this.historyService = historyService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Получает страницу истории операций кошелька от новых к старым.
+     * Следующая страница запрашивается с параметром cursor из поля nextCursor ответа;
+     * на последней странице nextCursor отсутствует. Операции упорядочены по времени создания
+     * записи, а не фиксации: операция, зафиксированная после выдачи страницы, но по времени создания
+     * попавшая в уже выданный диапазон, в этот обход не попадет (см. {@link TransactionHistoryService}).
+     *
+     * @param walletId идентификатор кошелька
+     * @param from     начало периода включительно
+     * @param to       конец периода не включительно
+     * @param type     тип операции: DEPOSIT, WITHDRAW, TRANSFER_IN или TRANSFER_OUT
+     * @param cursor   курсор следующей страницы
+     * @param limit    размер страницы, не больше wallet.history.max-page-size
+     * @return операции страницы; 404, если кошелек не найден; 400, если параметры некорректны
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getHistory(
+            @PathVariable UUID walletId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        TransactionPage page;
+        try {
+            page = historyService.getHistory(walletId, from, to, type, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return error(e);
+        }
+        List<Map<String, Object>> transactions = new ArrayList<>(page.getTransactions().size());
+        for (Transaction transaction : page.getTransactions()) {
+            transactions.add(toBody(transaction));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("walletId", walletId.toString());
+        body.put("transactions", transactions);
+        if (page.getNextCursor() != null) {
+            body.put("nextCursor", page.getNextCursor());
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Выгружает историю операций кошелька от старых к новым потоком NDJSON, по операции на строку.
+     *
+     * @param walletId идентификатор кошелька
+     * @param from     начало периода включительно
+     * @param to       конец периода не включительно
+     * @param type     тип операции: DEPOSIT, WITHDRAW, TRANSFER_IN или TRANSFER_OUT
+     * @param response ответ, в который пишутся операции
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void export(
+            @PathVariable UUID walletId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String type,
+            HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        try {
+            historyService.export(walletId, from, to, type, response.getOutputStream());
+        } catch (IllegalArgumentException e) {
+            ResponseEntity<Map<String, Object>> error = error(e);
+            response.setStatus(error.getStatusCode().value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), error.getBody());
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(IllegalArgumentException e) {
+        HttpStatus status = "Wallet not found".equals(e.getMessage()) ? HttpStatus.NOT_FOUND : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(Map.of("error", e.getMessage()));
+    }
+
+    static Map<String, Object> toBody(Transaction transaction) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", transaction.getId().toString());
+        body.put("type", transaction.getType());
+        body.put("amount", Money.toDecimal(transaction.getAmount()));
+        if (transaction.getBalanceAfter() != null) {
+            body.put("balanceAfter", Money.toDecimal(transaction.getBalanceAfter()));
+        }
+        if (transaction.getIdempotencyKey() != null) {
+            body.put("idempotencyKey", transaction.getIdempotencyKey());
+        }
+        if (transaction.getCounterpartyId() != null) {
+            body.put("counterpartyId", transaction.getCounterpartyId().toString());
+        }
+        body.put("createdAt", TransactionHistoryService.formatTime(transaction.getCreateAt()));
+        return body;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.model.MoneyDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
+import java.util.UUID;
+
+/**
+ * Тело запроса на перевод между кошельками.
+ * Сумма читается из исходного текста JSON-числа сразу в копейки.
+ */
+public class TransferRequest {
+
+    /**
+     * Идентификатор кошелька-отправителя.
+     */
+    private UUID fromWalletId;
+
+    /**
+     * Идентификатор кошелька-получателя.
+     */
+    private UUID toWalletId;
+
+    /**
+     * Сумма перевода в копейках; 0, если сумма не передана.
+     */
+    @JsonDeserialize(using = MoneyDeserializer.class)
+    private long amount;
+
+    public UUID getFromWalletId() {
+        return fromWalletId;
+    }
+
+    public void setFromWalletId(UUID fromWalletId) {
+        this.fromWalletId = fromWalletId;
+    }
+
+    public UUID getToWalletId() {
+        return toWalletId;
+    }
+
+    public void setToWalletId(UUID toWalletId) {
+        this.toWalletId = toWalletId;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+}
@@ -1,16 +1,33 @@
 package com.example.wallet.controller;
 
+import com.example.wallet.model.Money;
+import com.example.wallet.model.TimeOrderedUuidGenerator;
 import com.example.wallet.model.Wallet;
 import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.BalanceLookupService;
+import com.example.wallet.service.BulkOperationService;
+import com.example.wallet.service.OperationAdmission;
+import com.example.wallet.service.OperationTracker;
+import com.example.wallet.service.TrackedOperation;
+import com.example.wallet.service.TransferService;
+import com.example.wallet.service.WalletOperation;
+import com.example.wallet.service.WalletOperationExecutor;
 import com.example.wallet.service.WalletService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST-контроллер для управления кошельками.
@@ -21,11 +38,26 @@ import java.util.concurrent.CompletableFuture;
 public class WalletController {
 
     private final WalletService walletService;
+    private final WalletOperationExecutor walletOperationExecutor;
+    private final BulkOperationService bulkOperationService;
+    private final BalanceLookupService balanceLookupService;
+    private final OperationTracker operationTracker;
     private final WalletRepository walletRepository;
+    private final OperationAdmission operationAdmission;
+    private final TransferService transferService;
 
-    public WalletController(WalletService walletService, WalletRepository walletRepository) {
+    public WalletController(WalletService walletService, WalletOperationExecutor walletOperationExecutor,
+                            BulkOperationService bulkOperationService, BalanceLookupService balanceLookupService,
+                            OperationTracker operationTracker, WalletRepository walletRepository,
+                            OperationAdmission operationAdmission, TransferService transferService) {
         this.walletService = walletService;
+        this.walletOperationExecutor = walletOperationExecutor;
+        this.bulkOperationService = bulkOperationService;
+        this.balanceLookupService = balanceLookupService;
+        this.operationTracker = operationTracker;
         this.walletRepository = walletRepository;
+        this.operationAdmission = operationAdmission;
+        this.transferService = transferService;
     }
 
     /**
@@ -37,8 +69,8 @@ public class WalletController {
     @GetMapping("/{walletId}")
     public ResponseEntity<Map<String, Object>> getBalance(@PathVariable UUID walletId) {
         try {
-            double balance = walletService.getBalance(walletId);
-            return ResponseEntity.ok(Map.of("walletId", walletId, "balance", balance));
+            long balance = walletService.getBalance(walletId);
+            return ResponseEntity.ok(Map.of("walletId", walletId, "balance", Money.toDecimal(balance)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
         }
@@ -46,23 +78,195 @@ public class WalletController {
 
     /**
      * Выполняет операцию изменения баланса (пополнение или снятие).
+     * Операция выполняется асинхронно; её статус доступен по идентификатору
+     * operationId на эндпоинте /api/v1/wallets/operations/{operationId}.
+     * Ответ 202 отправляется после записи операции в локальный журнал принятых операций на диске,
+     * поэтому принятая операция выполняется и после аварийного перезапуска приложения.
+     * Повторный запрос с тем же заголовком Idempotency-Key не применяет операцию снова
+     * и возвращает идентификатор первой операции, пока её статус хранится;
+     * после этого повтор распознается по журналу операций и получает исходный баланс.
+     * Число операций в работе ограничено адаптивно по задержке базы; операция сверх ограничения
+     * отклоняется с кодом 429 и заголовком Retry-After.
      *
-     * @param request тело запроса с информацией об операции
-     * @return статус выполнения операции
+     * @param request        тело запроса с информацией об операции
+     * @param idempotencyKey необязательный ключ идемпотентности, не длиннее 64 символов
+     * @return идентификатор принятой операции; 400, если не указан кошелек, тип или сумма операции;
+     * 429, если достигнуто ограничение числа операций в работе;
+     * 503, если очередь полосы кошелька заполнена или журнал принятых операций недоступен;
+     * 422, если ключ уже использован для операции с другими параметрами
      */
     @PostMapping
-    public ResponseEntity<Map<String, Object>> performOperation(@RequestBody Map<String, Object> request) {
-        UUID walletId = UUID.fromString((String) request.get("walletId"));
-        String operationType = (String) request.get("operationType");
-        double amount = Double.parseDouble(request.get("amount").toString());
+    public ResponseEntity<Map<String, Object>> performOperation(
+            @RequestBody OperationRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        UUID walletId = request.getWalletId();
+        String operationType = request.getOperationType();
+        long amount = request.getAmount();
+        if (walletId == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid walletId"));
+        }
+        if (operationType == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid operation type"));
+        }
+        if (amount <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid amount"));
+        }
+
+        if (idempotencyKey != null) {
+            if (!WalletOperation.isValidIdempotencyKey(idempotencyKey)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid Idempotency-Key"));
+            }
+            Optional<TrackedOperation> previous = operationTracker.findByIdempotencyKey(idempotencyKey);
+            if (previous.isPresent()) {
+                TrackedOperation operation = previous.get();
+                if (!operation.getWalletId().equals(walletId)
+                        || !operation.getOperationType().equalsIgnoreCase(operationType)
+                        || operation.getAmount() != amount) {
+                    return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                            .body(Map.of("error", "Idempotency key reused with different parameters"));
+                }
+                return accepted(operation.getOperationId(), walletId, operation.getOperationType(), amount);
+            }
+        }
 
-        walletService.performOperationAsync(walletId, operationType, amount);
+        if (!operationAdmission.tryAcquire()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(operationAdmission.getRetryAfterSeconds()))
+                    .body(Map.of("error", "Too many operations in progress"));
+        }
+        UUID operationId = TimeOrderedUuidGenerator.next();
+        CompletableFuture<Long> result;
+        try {
+            result = walletOperationExecutor.accept(operationId, walletId, operationType, amount, idempotencyKey);
+        } catch (RejectedExecutionException e) {
+            operationAdmission.release();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            operationAdmission.release();
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        result.whenComplete((balance, error) -> operationAdmission.release());
+        operationTracker.track(operationId, walletId, operationType, amount, idempotencyKey, result);
+        return accepted(operationId, walletId, operationType, amount);
+    }
 
+    private static ResponseEntity<Map<String, Object>> accepted(UUID operationId, UUID walletId,
+                                                                String operationType, long amount) {
         // Возвращаем успешный ответ с данными
-        return ResponseEntity.accepted().body(Map.of(
-                "walletId", walletId.toString(),
-                "operation", operationType,
-                "amount", amount
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/wallets/operations/" + operationId))
+                .body(Map.of(
+                        "operationId", operationId.toString(),
+                        "walletId", walletId.toString(),
+                        "operation", operationType,
+                        "amount", Money.toDecimal(amount)
+                ));
+    }
+
+    /**
+     * Выполняет пакет операций, переданный JSON-массивом или потоком NDJSON.
+     * Тело запроса читается по мере поступления, результаты по каждой операции
+     * возвращаются потоком NDJSON в порядке операций.
+     *
+     * @param request  запрос с операциями в теле
+     * @param response ответ, в который пишутся результаты
+     */
+    @PostMapping(value = "/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void performBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        bulkOperationService.process(request.getInputStream(), response.getOutputStream());
+    }
+
+    /**
+     * Переводит средства между кошельками.
+     * Перевод выполняется синхронно: списание, зачисление и записи журнала обоих кошельков
+     * фиксируются одной транзакцией до ответа. Повторный запрос с тем же заголовком Idempotency-Key
+     * не выполняет перевод снова и получает баланс отправителя после первого перевода.
+     *
+     * @param request        тело запроса с кошельками и суммой перевода
+     * @param idempotencyKey необязательный ключ идемпотентности, не длиннее 64 символов
+     * @return баланс отправителя после перевода; 400, если кошельки не указаны или совпадают, сумма некорректна
+     * или баланс получателя переполнится; 404, если кошелек не найден; 409, если недостаточно средств;
+     * 422, если ключ уже использован для операции с другими параметрами
+     */
+    @PostMapping("/transfers")
+    public ResponseEntity<Map<String, Object>> transfer(
+            @RequestBody TransferRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        UUID fromWalletId = request.getFromWalletId();
+        UUID toWalletId = request.getToWalletId();
+        long amount = request.getAmount();
+        if (fromWalletId == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid fromWalletId"));
+        }
+        if (toWalletId == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid toWalletId"));
+        }
+        if (fromWalletId.equals(toWalletId)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid transfer"));
+        }
+        if (amount <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid amount"));
+        }
+        if (idempotencyKey != null && !WalletOperation.isValidIdempotencyKey(idempotencyKey)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid Idempotency-Key"));
+        }
+
+        long balance;
+        try {
+            balance = transferService.transfer(fromWalletId, toWalletId, amount, idempotencyKey);
+        } catch (IllegalArgumentException e) {
+            HttpStatus status = switch (String.valueOf(e.getMessage())) {
+                case "Wallet not found" -> HttpStatus.NOT_FOUND;
+                case "Not enough balance" -> HttpStatus.CONFLICT;
+                case "Idempotency key reused with different parameters" -> HttpStatus.UNPROCESSABLE_ENTITY;
+                default -> HttpStatus.BAD_REQUEST;
+            };
+            return ResponseEntity.status(status).body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(Map.of(
+                "fromWalletId", fromWalletId.toString(),
+                "toWalletId", toWalletId.toString(),
+                "amount", Money.toDecimal(amount),
+                "balance", Money.toDecimal(balance)
         ));
     }
+
+    /**
+     * Выполняет пакет переводов, переданный JSON-массивом или потоком NDJSON.
+     * Переводы применяются порциями, по одной транзакции на порцию; кошельки порции
+     * блокируются один раз. Результаты по каждому переводу возвращаются потоком NDJSON
+     * в порядке переводов.
+     *
+     * @param request  запрос с переводами в теле
+     * @param response ответ, в который пишутся результаты
+     */
+    @PostMapping(value = "/transfers/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void performTransfers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        transferService.process(request.getInputStream(), response.getOutputStream());
+    }
+
+    /**
+     * Получает балансы множества кошельков.
+     * Идентификаторы передаются JSON-массивом строк или по одному на строку (NDJSON),
+     * результаты возвращаются потоком NDJSON в порядке запроса.
+     *
+     * @param request  запрос с идентификаторами кошельков в теле
+     * @param response ответ, в который пишутся балансы
+     */
+    @PostMapping(value = "/balances",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void getBalances(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        balanceLookupService.lookup(request.getInputStream(), response.getOutputStream());
+    }
 }
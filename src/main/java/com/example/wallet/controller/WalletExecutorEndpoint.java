@@ -0,0 +1,32 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.service.WalletOperationExecutor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator-эндпоинт с состоянием исполнителя операций:
+ * количество полос, емкость очереди и текущая глубина каждой полосы.
+ */
+@Component
+@Endpoint(id = "walletexecutor")
+public class WalletExecutorEndpoint {
+
+    private final WalletOperationExecutor walletOperationExecutor;
+
+    public WalletExecutorEndpoint(WalletOperationExecutor walletOperationExecutor) {
+        this.walletOperationExecutor = walletOperationExecutor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> executor() {
+        return Map.of(
+                "lanes", walletOperationExecutor.getLaneCount(),
+                "queueCapacity", walletOperationExecutor.getQueueCapacity(),
+                "laneDepths", walletOperationExecutor.getLaneDepths()
+        );
+    }
+}
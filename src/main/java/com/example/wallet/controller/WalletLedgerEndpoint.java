@@ -0,0 +1,92 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.model.Money;
+import com.example.wallet.model.WalletSnapshot;
+import com.example.wallet.service.LedgerBalance;
+import com.example.wallet.service.SnapshotRun;
+import com.example.wallet.service.TransactionHistoryService;
+import com.example.wallet.service.WalletLedgerService;
+import com.example.wallet.service.WalletSnapshotJob;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Actuator-эндпоинт балансов по журналу операций.
+ * GET возвращает итоги последнего прохода создания снимков;
+ * GET /actuator/walletledger/{walletId} восстанавливает баланс кошелька по журналу от последнего снимка
+ * и сравнивает его с балансом кошелька; POST запускает проход создания снимков и ждет его завершения.
+ */
+@Component
+@WebEndpoint(id = "walletledger")
+public class WalletLedgerEndpoint {
+
+    private final WalletLedgerService ledgerService;
+    private final WalletSnapshotJob snapshotJob;
+
+    public WalletLedgerEndpoint(WalletLedgerService ledgerService, WalletSnapshotJob snapshotJob) {
+        this.ledgerService = ledgerService;
+        this.snapshotJob = snapshotJob;
+    }
+
+    @ReadOperation
+    public Map<String, Object> lastRun() {
+        SnapshotRun run = snapshotJob.getLastRun();
+        return run == null ? Map.of() : Map.of("lastRun", toBody(run));
+    }
+
+    @ReadOperation
+    public WebEndpointResponse<Map<String, Object>> rebuild(@Selector UUID walletId) {
+        LedgerBalance balance;
+        try {
+            balance = ledgerService.rebuild(walletId);
+        } catch (IllegalArgumentException e) {
+            return new WebEndpointResponse<>(Map.of("error", e.getMessage()), WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("walletId", walletId.toString());
+        body.put("walletBalance", Money.toDecimal(balance.getWalletBalance()));
+        body.put("ledgerBalance", Money.toDecimal(balance.getLedgerBalance()));
+        body.put("difference", Money.toDecimal(balance.getWalletBalance() - balance.getLedgerBalance()));
+        body.put("replayedTransactions", balance.getReplayedTransactions());
+        WalletSnapshot snapshot = balance.getSnapshot();
+        if (snapshot != null) {
+            body.put("snapshot", Map.of(
+                    "balance", Money.toDecimal(snapshot.getBalance()),
+                    "transactions", snapshot.getTransactions(),
+                    "lastTransactionId", snapshot.getLastTransactionId().toString(),
+                    "lastCreatedAt", TransactionHistoryService.formatTime(snapshot.getLastCreatedAt())
+            ));
+        }
+        return new WebEndpointResponse<>(body);
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> snapshot() {
+        Optional<SnapshotRun> run = snapshotJob.run();
+        if (run.isEmpty()) {
+            return new WebEndpointResponse<>(Map.of("error", "Snapshot run already in progress"),
+                    HttpStatus.CONFLICT.value());
+        }
+        return new WebEndpointResponse<>(toBody(run.get()));
+    }
+
+    private static Map<String, Object> toBody(SnapshotRun run) {
+        return Map.of(
+                "before", TransactionHistoryService.formatTime(run.getBefore()),
+                "scanned", run.getScanned(),
+                "snapshotted", run.getSnapshotted(),
+                "failedBatches", run.getFailedBatches(),
+                "durationMs", run.getDurationMs()
+        );
+    }
+}
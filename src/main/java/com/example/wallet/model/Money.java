@@ -0,0 +1,143 @@
+package com.example.wallet.model;
+
+/**
+ * Денежные суммы в минорных единицах (копейках).
+ * Суммы и балансы хранятся как long, арифметика выполняется в целых числах;
+ * десятичный текст используется только при разборе запроса и в ответах.
+ * Верхняя граница соответствует столбцам numeric(15, 2).
+ */
+public final class Money {
+
+    /**
+     * Наибольшая сумма, которую можно сохранить в столбце numeric(15, 2), в копейках.
+     */
+    public static final long MAX_CENTS = 999_999_999_999_999L;
+
+    private static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * Разбирает положительную десятичную сумму, например "100", "100.5" или "100.50".
+     * Допускается не более двух значащих знаков после точки; экспонента и знак не допускаются.
+     *
+     * @param value текстовое представление суммы
+     * @return сумма в копейках
+     * @throws IllegalArgumentException если сумма некорректна, не положительна или больше {@link #MAX_CENTS}
+     */
+    public static long parseAmount(String value) {
+        if (value == null || value.isEmpty()) {
+            throw invalidAmount();
+        }
+        long cents = 0;
+        int fractionDigits = -1;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (fractionDigits >= 0 || i == 0) {
+                    throw invalidAmount();
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw invalidAmount();
+            }
+            if (fractionDigits >= 0 && ++fractionDigits > SCALE) {
+                // Нули за пределами копеек допустимы: "1.500" равно "1.50".
+                if (c != '0') {
+                    throw invalidAmount();
+                }
+                continue;
+            }
+            cents = cents * 10 + (c - '0');
+            if (cents > MAX_CENTS) {
+                throw invalidAmount();
+            }
+        }
+        for (int i = Math.max(fractionDigits, 0); i < SCALE; i++) {
+            cents *= 10;
+        }
+        if (cents <= 0 || cents > MAX_CENTS) {
+            throw invalidAmount();
+        }
+        return cents;
+    }
+
+    /**
+     * Складывает баланс и сумму с проверкой переполнения.
+     *
+     * @throws IllegalArgumentException если результат больше {@link #MAX_CENTS}
+     */
+    public static long add(long balance, long amount) {
+        long result = Math.addExact(balance, amount);
+        if (result > MAX_CENTS) {
+            throw new IllegalArgumentException("Balance overflow");
+        }
+        return result;
+    }
+
+    /**
+     * Форматирует сумму как десятичное число с двумя знаками после точки, например "1000.10".
+     */
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder(20);
+        if (cents < 0) {
+            text.append('-');
+        }
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        text.append(abs / 100).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+
+    /**
+     * Представляет сумму числом для JSON-ответа.
+     * Jackson выводит такое число текстом {@link #format(long)}: без экспоненты и без погрешности.
+     */
+    public static Number toDecimal(long cents) {
+        return new Decimal(cents);
+    }
+
+    private static final class Decimal extends Number {
+
+        private final long cents;
+
+        Decimal(long cents) {
+            this.cents = cents;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) (cents / 100);
+        }
+
+        @Override
+        public long longValue() {
+            return cents / 100;
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) doubleValue();
+        }
+
+        @Override
+        public double doubleValue() {
+            return cents / 100.0;
+        }
+
+        @Override
+        public String toString() {
+            return format(cents);
+        }
+    }
+
+    private static IllegalArgumentException invalidAmount() {
+        return new IllegalArgumentException("Invalid amount");
+    }
+}
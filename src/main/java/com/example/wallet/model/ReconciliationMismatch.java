@@ -0,0 +1,37 @@
+package com.example.wallet.model;
+
+import java.util.UUID;
+
+/**
+ * Кошелек, баланс которого не совпал с журналом операций при сверке
+ * (таблица reconciliation_mismatch).
+ */
+public class ReconciliationMismatch {
+
+    private final UUID walletId;
+    private final long walletBalance;
+    private final long ledgerBalance;
+
+    /**
+     * @param walletId      идентификатор кошелька
+     * @param walletBalance баланс кошелька в копейках, включая ячейки горячего кошелька
+     * @param ledgerBalance сумма пополнений минус сумма снятий по журналу в копейках
+     */
+    public ReconciliationMismatch(UUID walletId, long walletBalance, long ledgerBalance) {
+        this.walletId = walletId;
+        this.walletBalance = walletBalance;
+        this.ledgerBalance = ledgerBalance;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public long getWalletBalance() {
+        return walletBalance;
+    }
+
+    public long getLedgerBalance() {
+        return ledgerBalance;
+    }
+}
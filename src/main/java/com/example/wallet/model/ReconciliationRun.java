@@ -0,0 +1,79 @@
+package com.example.wallet.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Запуск сверки балансов кошельков с журналом операций (таблица reconciliation_run)
+ * вместе с итогами уже проверенных диапазонов.
+ */
+public class ReconciliationRun {
+
+    private final UUID id;
+    private final int ranges;
+    private final LocalDateTime startedAt;
+    private final LocalDateTime finishedAt;
+    private final int checkedRanges;
+    private final long wallets;
+    private final long mismatches;
+    private final long dbTimeMs;
+
+    public ReconciliationRun(UUID id, int ranges, LocalDateTime startedAt, LocalDateTime finishedAt,
+                             int checkedRanges, long wallets, long mismatches, long dbTimeMs) {
+        this.id = id;
+        this.ranges = ranges;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.checkedRanges = checkedRanges;
+        this.wallets = wallets;
+        this.mismatches = mismatches;
+        this.dbTimeMs = dbTimeMs;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    /**
+     * Количество диапазонов идентификаторов кошельков, на которые разделена сверка.
+     */
+    public int getRanges() {
+        return ranges;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Время завершения сверки или null, если проверены не все диапазоны.
+     */
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public int getCheckedRanges() {
+        return checkedRanges;
+    }
+
+    /**
+     * Количество проверенных кошельков.
+     */
+    public long getWallets() {
+        return wallets;
+    }
+
+    /**
+     * Количество кошельков с расхождением.
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Суммарное время запросов сверки к базе, мс.
+     */
+    public long getDbTimeMs() {
+        return dbTimeMs;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.wallet.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnTransformer;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -13,11 +14,25 @@ import java.util.UUID;
 @Table(name = "transaction")
 public class Transaction {
 
+    public Transaction(UUID walletId, String type, long amount, long balanceAfter, String idempotencyKey) {
+        this.walletId = walletId;
+        this.type = type;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public Transaction(UUID walletId, String type, long amount, long balanceAfter, String idempotencyKey,
+                       UUID counterpartyId) {
+        this(walletId, type, amount, balanceAfter, idempotencyKey);
+        this.counterpartyId = counterpartyId;
+    }
+
     /**
-     * Уникальный идентификатор транзакции.
+     * Уникальный идентификатор транзакции, упорядоченный по времени создания.
      */
     @Id
-    @GeneratedValue
+    @TimeOrderedUuid
     private UUID id;
 
     /**
@@ -27,16 +42,49 @@ public class Transaction {
     private UUID walletId;
 
     /**
-     * Тип операции: DEPOSIT или WITHDRAW.
+     * Тип операции: DEPOSIT, WITHDRAW или часть перевода — TRANSFER_OUT (списание) и TRANSFER_IN (зачисление).
      */
     @Column(nullable = false)
     private String type;
 
     /**
-     * Сумма транзакции.
+     * Сумма транзакции в копейках.
      */
     @Column(nullable = false)
-    private double amount;
+    @ColumnTransformer(read = "round(amount * 100)", write = "? * 0.01")
+    private long amount;
+
+    /**
+     * Баланс кошелька после применения операции в копейках.
+     * Возвращается повторным запросам с тем же ключом идемпотентности.
+     * Для операции горячего кошелька, выполненной по одной, равен null: её баланс считается по ячейкам
+     * без блокировки, и повтор такой операции получает текущий баланс кошелька. Пакеты операций и переводов
+     * блокируют ячейки и записывают точный баланс. Сверка и снимки балансов опираются на суммы операций
+     * и не должны использовать это поле.
+     */
+    @Column(name = "balance_after")
+    @ColumnTransformer(read = "round(balance_after * 100)", write = "? * 0.01")
+    private Long balanceAfter;
+
+    /**
+     * Ключ идемпотентности, переданный клиентом, или null.
+     * Уникален среди всех записей журнала.
+     */
+    @Column(name = "idempotency_key", unique = true, length = 64, updatable = false)
+    private String idempotencyKey;
+
+    /**
+     * Кошелек на другой стороне перевода или null, если операция не является переводом.
+     */
+    @Column(name = "counterparty_id", updatable = false)
+    private UUID counterpartyId;
+
+    /**
+     * Идентификатор операции, принятой через журнал принятых операций, или null.
+     * Не индексируется: по нему ищутся только операции, повторяемые из журнала после аварийной остановки.
+     */
+    @Column(name = "operation_id", updatable = false)
+    private UUID operationId;
 
     /**
      * Время создания транзакции.
@@ -44,6 +92,10 @@ public class Transaction {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createAt = LocalDateTime.now();
 
+    public Transaction() {
+
+    }
+
     public UUID getId() {
         return id;
     }
@@ -68,14 +120,46 @@ public class Transaction {
         this.type = type;
     }
 
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
+    public Long getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    public void setBalanceAfter(Long balanceAfter) {
+        this.balanceAfter = balanceAfter;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public UUID getCounterpartyId() {
+        return counterpartyId;
+    }
+
+    public void setCounterpartyId(UUID counterpartyId) {
+        this.counterpartyId = counterpartyId;
+    }
+
+    public UUID getOperationId() {
+        return operationId;
+    }
+
+    public void setOperationId(UUID operationId) {
+        this.operationId = operationId;
+    }
+
     public LocalDateTime getCreateAt() {
         return createAt;
     }
@@ -1,18 +1,19 @@
 package com.example.wallet.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnTransformer;
 
 import java.util.UUID;
 
 /**
  * Сущность, представляющая кошелек.
- * Хранит информацию о текущем балансе.
+ * Хранит информацию о текущем балансе и режиме горячего кошелька.
  */
 @Entity
 @Table(name = "wallet")
 public class Wallet {
 
-    public Wallet(UUID uuid, double balance) {
+    public Wallet(UUID uuid, long balance) {
         this.id = uuid;
         this.balance = balance;
     }
@@ -25,10 +26,19 @@ public class Wallet {
     private UUID id;
 
     /**
-     * Текущий баланс кошелька.
+     * Текущий баланс кошелька в копейках.
+     * Столбец numeric(15, 2) переводится в копейки и обратно в SQL, без BigDecimal и double.
      */
     @Column(nullable = false)
-    private double balance;
+    @ColumnTransformer(read = "round(balance * 100)", write = "? * 0.01")
+    private long balance;
+
+    /**
+     * Количество ячеек баланса в режиме горячего кошелька; 0 — обычный кошелек.
+     * Полный баланс горячего кошелька — сумма баланса строки и балансов его ячеек в wallet_slot.
+     */
+    @Column(nullable = false)
+    private int slots;
 
     public Wallet() {
 
@@ -42,11 +52,19 @@ public class Wallet {
         this.id = id;
     }
 
-    public double getBalance() {
+    public long getBalance() {
         return balance;
     }
 
-    public void setBalance(double balance) {
+    public void setBalance(long balance) {
         this.balance = balance;
     }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public void setSlots(int slots) {
+        this.slots = slots;
+    }
 }
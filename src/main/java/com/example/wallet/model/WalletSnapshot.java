@@ -0,0 +1,56 @@
+package com.example.wallet.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Снимок баланса кошелька по журналу операций (таблица wallet_snapshot).
+ * Баланс — сумма пополнений минус сумма снятий всех записей журнала кошелька
+ * до записи lastTransactionId включительно в порядке (created_at, id).
+ * Чтобы получить баланс по журналу на текущий момент, к снимку добавляются
+ * только записи после этой.
+ */
+public class WalletSnapshot {
+
+    private final UUID walletId;
+    private final long balance;
+    private final long transactions;
+    private final UUID lastTransactionId;
+    private final LocalDateTime lastCreatedAt;
+
+    /**
+     * @param walletId          идентификатор кошелька
+     * @param balance           баланс по журналу в копейках
+     * @param transactions      количество учтенных записей журнала
+     * @param lastTransactionId последняя учтенная запись журнала
+     * @param lastCreatedAt     время создания последней учтенной записи
+     */
+    public WalletSnapshot(UUID walletId, long balance, long transactions, UUID lastTransactionId,
+                          LocalDateTime lastCreatedAt) {
+        this.walletId = walletId;
+        this.balance = balance;
+        this.transactions = transactions;
+        this.lastTransactionId = lastTransactionId;
+        this.lastCreatedAt = lastCreatedAt;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    public UUID getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    public LocalDateTime getLastCreatedAt() {
+        return lastCreatedAt;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.wallet.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Изменение баланса кошелька по участку журнала операций.
+ */
+public class LedgerDelta {
+
+    private final UUID walletId;
+    private final long amount;
+    private final long transactions;
+    private final UUID lastTransactionId;
+    private final LocalDateTime lastCreatedAt;
+
+    /**
+     * @param walletId     идентификатор кошелька
+     * @param amount       сумма пополнений минус сумма снятий в копейках
+     * @param transactions количество записей журнала
+     */
+    public LedgerDelta(UUID walletId, long amount, long transactions) {
+        this(walletId, amount, transactions, null, null);
+    }
+
+    /**
+     * @param walletId          идентификатор кошелька
+     * @param amount            сумма пополнений минус сумма снятий в копейках
+     * @param transactions      количество записей журнала
+     * @param lastTransactionId последняя запись участка в порядке (created_at, id)
+     * @param lastCreatedAt     время создания последней записи участка
+     */
+    public LedgerDelta(UUID walletId, long amount, long transactions, UUID lastTransactionId,
+                       LocalDateTime lastCreatedAt) {
+        this.walletId = walletId;
+        this.amount = amount;
+        this.transactions = transactions;
+        this.lastTransactionId = lastTransactionId;
+        this.lastCreatedAt = lastCreatedAt;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Последняя запись участка или null, если она не выбиралась.
+     */
+    public UUID getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    public LocalDateTime getLastCreatedAt() {
+        return lastCreatedAt;
+    }
+}
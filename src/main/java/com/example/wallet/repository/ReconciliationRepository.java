@@ -0,0 +1,173 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.model.ReconciliationMismatch;
+import com.example.wallet.model.ReconciliationRun;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Сверка балансов кошельков с журналом операций и сохранение её хода.
+ * Диапазон идентификаторов кошельков проверяется одним запросом: балансы строк и ячеек
+ * и суммы журнала агрегируются по диапазону целиком, а не запросом на кошелек.
+ * Каждый проверенный диапазон сохраняется вместе с его расхождениями одной транзакцией,
+ * поэтому прерванная сверка продолжается с непроверенных диапазонов без повторов.
+ */
+@Repository
+public class ReconciliationRepository {
+
+    private static final String SELECT_RUN = "SELECT r.id, r.ranges, r.started_at, r.finished_at, "
+            + "COUNT(g.range_index) AS checked_ranges, COALESCE(SUM(g.wallets), 0) AS wallets, "
+            + "COALESCE(SUM(g.mismatches), 0) AS mismatches, COALESCE(SUM(g.db_time_ms), 0) AS db_time_ms "
+            + "FROM reconciliation_run r LEFT JOIN reconciliation_range g ON g.run_id = r.id";
+    private static final String LATEST_RUN = " GROUP BY r.id, r.ranges, r.started_at, r.finished_at "
+            + "ORDER BY r.started_at DESC LIMIT 1";
+
+    private static final RowMapper<ReconciliationRun> RUN_MAPPER = (rs, rowNum) -> new ReconciliationRun(
+            rs.getObject("id", UUID.class), rs.getInt("ranges"),
+            rs.getObject("started_at", LocalDateTime.class), rs.getObject("finished_at", LocalDateTime.class),
+            rs.getInt("checked_ranges"), rs.getLong("wallets"), rs.getLong("mismatches"), rs.getLong("db_time_ms"));
+
+    private static final RowMapper<ReconciliationMismatch> MISMATCH_MAPPER = (rs, rowNum) ->
+            new ReconciliationMismatch(rs.getObject("wallet_id", UUID.class), rs.getLong("wallet_balance"),
+                    rs.getLong("ledger_balance"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public ReconciliationRepository(DataSource dataSource) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    /**
+     * Создает новую сверку.
+     *
+     * @param ranges количество диапазонов идентификаторов кошельков
+     */
+    public ReconciliationRun createRun(int ranges) {
+        UUID id = UUID.randomUUID();
+        LocalDateTime startedAt = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO reconciliation_run (id, ranges, started_at) VALUES (:id, :ranges, :startedAt)",
+                new MapSqlParameterSource("id", id).addValue("ranges", ranges).addValue("startedAt", startedAt));
+        return new ReconciliationRun(id, ranges, startedAt, null, 0, 0, 0, 0);
+    }
+
+    /**
+     * Находит последнюю сверку.
+     */
+    public Optional<ReconciliationRun> findLatestRun() {
+        return jdbcTemplate.query(SELECT_RUN + LATEST_RUN, RUN_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Находит последнюю сверку, если она не завершена.
+     */
+    public Optional<ReconciliationRun> findUnfinishedRun() {
+        return findLatestRun().filter(run -> run.getFinishedAt() == null);
+    }
+
+    /**
+     * Номера уже проверенных диапазонов сверки.
+     */
+    public Set<Integer> findCheckedRanges(UUID runId) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT range_index FROM reconciliation_range WHERE run_id = :runId",
+                new MapSqlParameterSource("runId", runId), Integer.class));
+    }
+
+    /**
+     * Сверяет балансы кошельков диапазона с суммами журнала одним запросом.
+     * Баланс кошелька и журнал читаются одним оператором, то есть из одного снимка данных базы.
+     *
+     * @param lower      нижняя граница диапазона включительно
+     * @param upper      верхняя граница диапазона не включительно или null для конца
+     * @param mismatches список, в который добавляются расхождения
+     * @return количество проверенных кошельков
+     */
+    public long checkRange(UUID lower, UUID upper, List<ReconciliationMismatch> mismatches) {
+        MapSqlParameterSource params = new MapSqlParameterSource("lower", lower).addValue("upper", upper);
+        String sql = "SELECT w.id AS wallet_id, "
+                + "CAST((w.balance + COALESCE(sl.balance, 0)) * 100 AS bigint) AS wallet_balance, "
+                + "COALESCE(t.amount, 0) AS ledger_balance FROM wallet w "
+                + "LEFT JOIN (SELECT wallet_id, SUM(balance) AS balance FROM wallet_slot WHERE "
+                + range("wallet_id", upper) + " GROUP BY wallet_id) sl ON sl.wallet_id = w.id "
+                + "LEFT JOIN (SELECT wallet_id, "
+                + "CAST(SUM(" + TransactionRepository.SIGNED_AMOUNT + ") * 100 AS bigint) AS amount "
+                + "FROM transaction WHERE " + range("wallet_id", upper) + " GROUP BY wallet_id) t "
+                + "ON t.wallet_id = w.id WHERE " + range("w.id", upper);
+        long[] wallets = {0};
+        jdbcTemplate.query(sql, params, rs -> {
+            wallets[0]++;
+            long walletBalance = rs.getLong("wallet_balance");
+            long ledgerBalance = rs.getLong("ledger_balance");
+            if (walletBalance != ledgerBalance) {
+                mismatches.add(new ReconciliationMismatch(rs.getObject("wallet_id", UUID.class), walletBalance,
+                        ledgerBalance));
+            }
+        });
+        return wallets[0];
+    }
+
+    private static String range(String column, UUID upper) {
+        return upper == null ? column + " >= :lower" : column + " >= :lower AND " + column + " < :upper";
+    }
+
+    /**
+     * Сохраняет итоги проверенного диапазона и его расхождения одной транзакцией.
+     */
+    @Transactional
+    public void saveRange(UUID runId, int rangeIndex, long wallets, List<ReconciliationMismatch> mismatches,
+                          long dbTimeMs) {
+        if (!mismatches.isEmpty()) {
+            SqlParameterSource[] batch = new SqlParameterSource[mismatches.size()];
+            for (int i = 0; i < batch.length; i++) {
+                ReconciliationMismatch mismatch = mismatches.get(i);
+                batch[i] = new MapSqlParameterSource("runId", runId)
+                        .addValue("walletId", mismatch.getWalletId())
+                        .addValue("walletBalance", mismatch.getWalletBalance())
+                        .addValue("ledgerBalance", mismatch.getLedgerBalance());
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO reconciliation_mismatch (run_id, wallet_id, wallet_balance, "
+                    + "ledger_balance) VALUES (:runId, :walletId, :walletBalance * 0.01, :ledgerBalance * 0.01)", batch);
+        }
+        jdbcTemplate.update("INSERT INTO reconciliation_range (run_id, range_index, wallets, mismatches, db_time_ms, "
+                        + "checked_at) VALUES (:runId, :rangeIndex, :wallets, :mismatches, :dbTimeMs, :checkedAt)",
+                new MapSqlParameterSource("runId", runId)
+                        .addValue("rangeIndex", rangeIndex)
+                        .addValue("wallets", wallets)
+                        .addValue("mismatches", mismatches.size())
+                        .addValue("dbTimeMs", dbTimeMs)
+                        .addValue("checkedAt", LocalDateTime.now()));
+    }
+
+    /**
+     * Отмечает сверку завершенной.
+     */
+    public void finishRun(UUID runId) {
+        jdbcTemplate.update("UPDATE reconciliation_run SET finished_at = :finishedAt WHERE id = :runId",
+                new MapSqlParameterSource("runId", runId).addValue("finishedAt", LocalDateTime.now()));
+    }
+
+    /**
+     * Находит расхождения сверки, начиная с наибольших.
+     *
+     * @param limit максимальное количество расхождений
+     */
+    public List<ReconciliationMismatch> findMismatches(UUID runId, int limit) {
+        return jdbcTemplate.query("SELECT wallet_id, CAST(wallet_balance * 100 AS bigint) AS wallet_balance, "
+                        + "CAST(ledger_balance * 100 AS bigint) AS ledger_balance FROM reconciliation_mismatch "
+                        + "WHERE run_id = :runId ORDER BY ABS(wallet_balance - ledger_balance) DESC, wallet_id "
+                        + "LIMIT :limit",
+                new MapSqlParameterSource("runId", runId).addValue("limit", limit), MISMATCH_MAPPER);
+    }
+}
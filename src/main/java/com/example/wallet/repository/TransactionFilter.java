@@ -0,0 +1,45 @@
+package com.example.wallet.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Условия выборки истории операций кошелька.
+ * Границы периода и тип операции необязательны.
+ */
+public class TransactionFilter {
+
+    private final UUID walletId;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final String type;
+
+    /**
+     * @param walletId идентификатор кошелька
+     * @param from     начало периода включительно или null
+     * @param to       конец периода не включительно или null
+     * @param type     тип операции (DEPOSIT, WITHDRAW, TRANSFER_IN или TRANSFER_OUT) или null для всех типов
+     */
+    public TransactionFilter(UUID walletId, LocalDateTime from, LocalDateTime to, String type) {
+        this.walletId = walletId;
+        this.from = from;
+        this.to = to;
+        this.type = type;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public String getType() {
+        return type;
+    }
+}
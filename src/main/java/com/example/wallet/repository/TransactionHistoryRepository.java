@@ -0,0 +1,118 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.config.WalletHistoryProperties;
+import com.example.wallet.model.Transaction;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Чтение истории операций кошелька напрямую через JDBC.
+ * Страницы выбираются по ключу (created_at, id) без OFFSET: каждая следующая страница
+ * начинается сразу за последней строкой предыдущей и читает из индекса
+ * (wallet_id, created_at, id) только свои строки, независимо от её номера.
+ * Выгрузка читает строки однонаправленным курсором порциями по wallet.history.fetch-size,
+ * не загружая результат в память целиком.
+ */
+@Repository
+public class TransactionHistoryRepository {
+
+    private static final String SELECT = "SELECT id, wallet_id, type, CAST(amount * 100 AS bigint) AS amount, "
+            + "CAST(balance_after * 100 AS bigint) AS balance_after, idempotency_key, counterparty_id, "
+            + "created_at FROM transaction WHERE wallet_id = :walletId";
+
+    private static final RowMapper<Transaction> ROW_MAPPER = (rs, rowNum) -> {
+        Transaction transaction = new Transaction();
+        transaction.setId(rs.getObject("id", UUID.class));
+        transaction.setWalletId(rs.getObject("wallet_id", UUID.class));
+        transaction.setType(rs.getString("type"));
+        transaction.setAmount(rs.getLong("amount"));
+        long balanceAfter = rs.getLong("balance_after");
+        transaction.setBalanceAfter(rs.wasNull() ? null : balanceAfter);
+        transaction.setIdempotencyKey(rs.getString("idempotency_key"));
+        transaction.setCounterpartyId(rs.getObject("counterparty_id", UUID.class));
+        transaction.setCreateAt(rs.getObject("created_at", LocalDateTime.class));
+        return transaction;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate cursorTemplate;
+
+    public TransactionHistoryRepository(DataSource dataSource, WalletHistoryProperties properties) {
+        if (properties.getFetchSize() < 1) {
+            throw new IllegalArgumentException("wallet.history.fetch-size must be positive");
+        }
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(properties.getFetchSize());
+        this.cursorTemplate = new NamedParameterJdbcTemplate(cursor);
+    }
+
+    /**
+     * Находит страницу истории от новых операций к старым.
+     *
+     * @param filter          условия выборки
+     * @param beforeCreatedAt время создания последней строки предыдущей страницы или null для первой страницы
+     * @param beforeId        идентификатор последней строки предыдущей страницы или null для первой страницы
+     * @param limit           максимальное количество строк
+     * @return операции в порядке убывания (created_at, id)
+     */
+    public List<Transaction> findPage(TransactionFilter filter, LocalDateTime beforeCreatedAt, UUID beforeId,
+                                      int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = where(filter, params);
+        if (beforeCreatedAt != null) {
+            sql.append(" AND (created_at, id) < (:beforeCreatedAt, :beforeId)");
+            params.addValue("beforeCreatedAt", beforeCreatedAt).addValue("beforeId", beforeId);
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT :limit");
+        params.addValue("limit", limit);
+        return jdbcTemplate.query(sql.toString(), params, ROW_MAPPER);
+    }
+
+    /**
+     * Передает операции кошелька в порядке возрастания (created_at, id), читая их курсором.
+     * В PostgreSQL чтение порциями работает только внутри транзакции: вне её драйвер
+     * получает весь результат сразу.
+     *
+     * @param filter условия выборки
+     * @param action обработчик каждой операции
+     */
+    public void forEach(TransactionFilter filter, Consumer<Transaction> action) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = where(filter, params).append(" ORDER BY created_at, id");
+        cursorTemplate.query(sql.toString(), params, rs -> {
+            action.accept(ROW_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    /**
+     * Строит условие выборки; необязательные условия добавляются только если заданы,
+     * чтобы план запроса не зависел от проверок параметров на null.
+     */
+    private static StringBuilder where(TransactionFilter filter, MapSqlParameterSource params) {
+        StringBuilder sql = new StringBuilder(SELECT);
+        params.addValue("walletId", filter.getWalletId());
+        if (filter.getFrom() != null) {
+            sql.append(" AND created_at >= :from");
+            params.addValue("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            sql.append(" AND created_at < :to");
+            params.addValue("to", filter.getTo());
+        }
+        if (filter.getType() != null) {
+            sql.append(" AND type = :type");
+            params.addValue("type", filter.getType());
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.model.Transaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Репозиторий для работы с сущностью Transaction (журнал операций).
+ */
+public interface TransactionRepository extends JpaRepository<Transaction, UUID> {
+
+    /**
+     * Сумма записи журнала со знаком изменения баланса: зачисления положительны, списания отрицательны.
+     */
+    String SIGNED_AMOUNT = "CASE WHEN type IN ('DEPOSIT', 'TRANSFER_IN') THEN amount ELSE -amount END";
+
+    /**
+     * Находит запись журнала по ключу идемпотентности.
+     */
+    Optional<Transaction> findByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Находит записи журнала по набору ключей идемпотентности одним запросом.
+     */
+    List<Transaction> findByIdempotencyKeyIn(Collection<String> idempotencyKeys);
+
+    /**
+     * Находит записи журнала операций, принятых через журнал принятых операций, среди записей
+     * кошельков, созданных не раньше заданного момента. Поиск идет по индексу кошелька и времени создания.
+     */
+    List<Transaction> findByWalletIdInAndCreateAtGreaterThanEqualAndOperationIdIn(
+            Collection<UUID> walletIds, LocalDateTime since, Collection<UUID> operationIds);
+}
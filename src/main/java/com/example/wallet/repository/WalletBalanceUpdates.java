@@ -0,0 +1,86 @@
+package com.example.wallet.repository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Атомарные изменения баланса кошелька одним запросом без предварительного чтения.
+ * Возвращаемый баланс — полный баланс кошелька: баланс строки wallet плюс балансы
+ * ячеек горячего кошелька в wallet_slot. Если изменение не выполнено, возвращается {@link #NOT_UPDATED}:
+ * баланс передается примитивом, без обертки на каждую операцию.
+ */
+public interface WalletBalanceUpdates {
+
+    /**
+     * Результат изменения, которое не выполнено: кошелька или ячейки нет, средств недостаточно
+     * или баланс переполнится. Настоящий баланс не бывает отрицательным.
+     */
+    long NOT_UPDATED = Long.MIN_VALUE;
+
+    /**
+     * Атомарно увеличивает баланс кошелька одним запросом, если новый баланс
+     * помещается в столбец numeric(15, 2).
+     *
+     * @param walletId идентификатор кошелька
+     * @param amount   сумма пополнения в копейках
+     * @return новый баланс в копейках или {@link #NOT_UPDATED}, если кошелек не найден или баланс переполнится
+     */
+    long deposit(UUID walletId, long amount);
+
+    /**
+     * Атомарно уменьшает баланс кошелька одним запросом, если средств достаточно.
+     *
+     * @param walletId идентификатор кошелька
+     * @param amount   сумма снятия в копейках
+     * @return новый баланс в копейках или {@link #NOT_UPDATED}, если кошелек не найден или средств недостаточно
+     */
+    long withdraw(UUID walletId, long amount);
+
+    /**
+     * Атомарно увеличивает баланс ячейки горячего кошелька.
+     * Блокируется только строка ячейки, поэтому пополнения разных ячеек не ждут друг друга.
+     * По той же причине возвращаемый баланс — оценка: если ячейки не заблокированы вызывающей стороной
+     * (см. {@link #lockSlotBalances}), строка кошелька и другие ячейки читаются без блокировки
+     * и не включают изменения, еще не зафиксированные параллельными транзакциями.
+     *
+     * @param walletId идентификатор кошелька
+     * @param slot     номер ячейки
+     * @param amount   сумма пополнения в копейках
+     * @return новый полный баланс кошелька в копейках или {@link #NOT_UPDATED},
+     * если ячейки нет или её баланс переполнится
+     */
+    long depositToSlot(UUID walletId, int slot, long amount);
+
+    /**
+     * Атомарно уменьшает баланс ячейки горячего кошелька, если в ячейке достаточно средств.
+     *
+     * @param walletId идентификатор кошелька
+     * @param slot     номер ячейки
+     * @param amount   сумма снятия в копейках
+     * @return новый полный баланс кошелька в копейках или {@link #NOT_UPDATED},
+     * если ячейки нет или в ней недостаточно средств
+     */
+    long withdrawFromSlot(UUID walletId, int slot, long amount);
+
+    /**
+     * Блокирует ячейки кошелька с номером не меньше fromSlot в порядке номеров, обнуляет их
+     * и возвращает снятую сумму. Вызывающая сторона в той же транзакции зачисляет сумму
+     * на баланс строки кошелька, которую она должна заблокировать раньше ячеек.
+     *
+     * @param walletId идентификатор кошелька
+     * @param fromSlot номер первой сливаемой ячейки
+     * @return сумма балансов слитых ячеек в копейках
+     */
+    long drainSlots(UUID walletId, int fromSlot);
+
+    /**
+     * Блокирует ячейки кошельков одним запросом в порядке (wallet_id, slot) и возвращает суммы их балансов.
+     * Вызывающая сторона должна заблокировать строки этих кошельков раньше ячеек. Пока ячейки заблокированы,
+     * пополнения ячеек ждут, поэтому посчитанный по ним полный баланс кошелька точен до конца транзакции.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @return суммы балансов ячеек в копейках по идентификаторам кошельков; кошельков без ячеек в ней нет
+     */
+    Map<UUID, Long> lockSlotBalances(Collection<UUID> walletIds);
+}
@@ -0,0 +1,152 @@
+package com.example.wallet.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Реализация атомарных изменений баланса.
+ * Новый баланс возвращается тем же запросом: в PostgreSQL через UPDATE ... RETURNING,
+ * в H2 (режим совместимости с PostgreSQL, используется в интеграционных тестах)
+ * через SELECT ... FROM FINAL TABLE (UPDATE ...).
+ * Балансы остальных строк кошелька (строки wallet и ячеек) в возвращаемом полном балансе
+ * берутся подзапросами без блокировки, поэтому изменение одной строки не ждет остальные.
+ */
+class WalletBalanceUpdatesImpl implements WalletBalanceUpdates {
+
+    private static final String DEPOSIT = "UPDATE wallet SET balance = balance + :amount * 0.01 "
+            + "WHERE id = :walletId AND balance + :amount * 0.01 <= 9999999999999.99";
+    private static final String WITHDRAW = "UPDATE wallet SET balance = balance - :amount * 0.01 "
+            + "WHERE id = :walletId AND balance >= :amount * 0.01";
+    private static final String NEW_BALANCE = "CAST((balance + (SELECT COALESCE(SUM(s.balance), 0) "
+            + "FROM wallet_slot s WHERE s.wallet_id = :walletId)) * 100 AS bigint)";
+    private static final String SLOT_DEPOSIT = "UPDATE wallet_slot SET balance = balance + :amount * 0.01 "
+            + "WHERE wallet_id = :walletId AND slot = :slot AND balance + :amount * 0.01 <= 9999999999999.99";
+    private static final String SLOT_WITHDRAW = "UPDATE wallet_slot SET balance = balance - :amount * 0.01 "
+            + "WHERE wallet_id = :walletId AND slot = :slot AND balance >= :amount * 0.01";
+    private static final String NEW_SLOT_BALANCE = "CAST((balance "
+            + "+ (SELECT w.balance FROM wallet w WHERE w.id = :walletId) "
+            + "+ (SELECT COALESCE(SUM(o.balance), 0) FROM wallet_slot o "
+            + "WHERE o.wallet_id = :walletId AND o.slot <> :slot)) * 100 AS bigint)";
+    private static final String LOCK_SLOTS = "SELECT CAST(balance * 100 AS bigint) FROM wallet_slot "
+            + "WHERE wallet_id = :walletId AND slot >= :fromSlot ORDER BY slot FOR UPDATE";
+    private static final String CLEAR_SLOTS = "UPDATE wallet_slot SET balance = 0 "
+            + "WHERE wallet_id = :walletId AND slot >= :fromSlot AND balance <> 0";
+    private static final String LOCK_SLOT_BALANCES = "SELECT wallet_id, CAST(balance * 100 AS bigint) "
+            + "FROM wallet_slot WHERE wallet_id IN (:walletIds) ORDER BY wallet_id, slot FOR UPDATE";
+
+    private final EntityManager entityManager;
+    private final String depositSql;
+    private final String withdrawSql;
+    private final String slotDepositSql;
+    private final String slotWithdrawSql;
+
+    WalletBalanceUpdatesImpl(EntityManager entityManager, EntityManagerFactory entityManagerFactory) {
+        this.entityManager = entityManager;
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.depositSql = returning(DEPOSIT, NEW_BALANCE, dialect);
+        this.withdrawSql = returning(WITHDRAW, NEW_BALANCE, dialect);
+        this.slotDepositSql = returning(SLOT_DEPOSIT, NEW_SLOT_BALANCE, dialect);
+        this.slotWithdrawSql = returning(SLOT_WITHDRAW, NEW_SLOT_BALANCE, dialect);
+    }
+
+    private static String returning(String update, String result, Dialect dialect) {
+        if (dialect instanceof PostgreSQLDialect) {
+            return update + " RETURNING " + result;
+        }
+        if (dialect instanceof H2Dialect) {
+            return "SELECT " + result + " FROM FINAL TABLE (" + update + ")";
+        }
+        throw new IllegalStateException("Unsupported database dialect: " + dialect.getClass().getName());
+    }
+
+    @Override
+    @Transactional
+    public long deposit(UUID walletId, long amount) {
+        return execute(depositSql, walletId, amount);
+    }
+
+    @Override
+    @Transactional
+    public long withdraw(UUID walletId, long amount) {
+        return execute(withdrawSql, walletId, amount);
+    }
+
+    @Override
+    @Transactional
+    public long depositToSlot(UUID walletId, int slot, long amount) {
+        return execute(slotDepositSql, walletId, slot, amount);
+    }
+
+    @Override
+    @Transactional
+    public long withdrawFromSlot(UUID walletId, int slot, long amount) {
+        return execute(slotWithdrawSql, walletId, slot, amount);
+    }
+
+    @Override
+    @Transactional
+    public long drainSlots(UUID walletId, int fromSlot) {
+        List<?> balances = entityManager.createNativeQuery(LOCK_SLOTS)
+                .setParameter("walletId", walletId)
+                .setParameter("fromSlot", fromSlot)
+                .getResultList();
+        long drained = 0;
+        for (Object balance : balances) {
+            drained += ((Number) balance).longValue();
+        }
+        if (drained != 0) {
+            entityManager.createNativeQuery(CLEAR_SLOTS)
+                    .setParameter("walletId", walletId)
+                    .setParameter("fromSlot", fromSlot)
+                    .executeUpdate();
+        }
+        return drained;
+    }
+
+    @Override
+    @Transactional
+    public Map<UUID, Long> lockSlotBalances(Collection<UUID> walletIds) {
+        Map<UUID, Long> balances = new HashMap<>();
+        if (walletIds.isEmpty()) {
+            return balances;
+        }
+        List<?> rows = entityManager.createNativeQuery(LOCK_SLOT_BALANCES)
+                .setParameter("walletIds", walletIds)
+                .getResultList();
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            balances.merge((UUID) columns[0], ((Number) columns[1]).longValue(), Long::sum);
+        }
+        return balances;
+    }
+
+    private long execute(String sql, UUID walletId, long amount) {
+        return result(entityManager.createNativeQuery(sql)
+                .setParameter("walletId", walletId)
+                .setParameter("amount", amount)
+                .getResultList());
+    }
+
+    private long execute(String sql, UUID walletId, int slot, long amount) {
+        return result(entityManager.createNativeQuery(sql)
+                .setParameter("walletId", walletId)
+                .setParameter("slot", slot)
+                .setParameter("amount", amount)
+                .getResultList());
+    }
+
+    private static long result(List<?> rows) {
+        return rows.isEmpty() ? NOT_UPDATED : ((Number) rows.get(0)).longValue();
+    }
+}
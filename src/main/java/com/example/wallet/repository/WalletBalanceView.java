@@ -0,0 +1,13 @@
+package com.example.wallet.repository;
+
+import java.util.UUID;
+
+/**
+ * Проекция кошелька, содержащая только идентификатор и баланс в копейках.
+ */
+public interface WalletBalanceView {
+
+    UUID getId();
+
+    long getBalance();
+}
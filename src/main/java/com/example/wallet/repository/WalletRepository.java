@@ -1,13 +1,87 @@
 package com.example.wallet.repository;
 
 import com.example.wallet.model.Wallet;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Репозиторий для работы с сущностью Wallet.
- * Предоставляет базовые методы CRUD.
+ * Предоставляет базовые методы CRUD и атомарные операции изменения баланса.
  */
-public interface WalletRepository extends JpaRepository<Wallet, UUID> {
+public interface WalletRepository extends JpaRepository<Wallet, UUID>, WalletBalanceUpdates {
+
+    /**
+     * Полный баланс кошелька w в копейках: баланс строки плюс балансы ячеек горячего кошелька.
+     */
+    String TOTAL_BALANCE = "CAST((w.balance + COALESCE((SELECT SUM(s.balance) FROM wallet_slot s "
+            + "WHERE s.wallet_id = w.id), 0)) * 100 AS bigint)";
+
+    /**
+     * Загружает кошельки с блокировкой строк на запись.
+     * Строки блокируются в порядке идентификаторов, чтобы параллельные пакеты
+     * не блокировали друг друга взаимно.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @return найденные кошельки
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.id IN :walletIds ORDER BY w.id")
+    List<Wallet> findAllByIdForUpdate(@Param("walletIds") Collection<UUID> walletIds);
+
+    /**
+     * Загружает полные балансы кошельков одним запросом, выбирая только идентификатор и баланс в копейках.
+     * Баланс горячего кошелька включает балансы его ячеек.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @return балансы найденных кошельков
+     */
+    @Query(value = "SELECT w.id AS id, " + TOTAL_BALANCE + " AS balance FROM wallet w WHERE w.id IN :walletIds",
+            nativeQuery = true)
+    List<WalletBalanceView> findBalances(@Param("walletIds") Collection<UUID> walletIds);
+
+    /**
+     * Загружает полный баланс кошелька одним запросом, включая балансы ячеек горячего кошелька.
+     *
+     * @param walletId идентификатор кошелька
+     * @return баланс в копейках или пустой Optional, если кошелек не найден
+     */
+    @Query(value = "SELECT " + TOTAL_BALANCE + " FROM wallet w WHERE w.id = :walletId", nativeQuery = true)
+    Optional<Long> findTotalBalance(@Param("walletId") UUID walletId);
+
+    /**
+     * Блокирует строку кошелька на запись и возвращает количество его ячеек.
+     *
+     * @param walletId идентификатор кошелька
+     * @return количество ячеек или пустой Optional, если кошелек не найден
+     */
+    @Query(value = "SELECT slots FROM wallet WHERE id = :walletId FOR UPDATE", nativeQuery = true)
+    Optional<Integer> findSlotsForUpdate(@Param("walletId") UUID walletId);
+
+    /**
+     * Возвращает горячие кошельки и количество их ячеек.
+     */
+    @Query("SELECT w.id AS id, w.slots AS slots FROM Wallet w WHERE w.slots > 0")
+    List<WalletSlotsView> findHotWallets();
+
+    @Modifying
+    @Query(value = "UPDATE wallet SET slots = :slots WHERE id = :walletId", nativeQuery = true)
+    int updateSlots(@Param("walletId") UUID walletId, @Param("slots") int slots);
+
+    @Modifying
+    @Query(value = "INSERT INTO wallet_slot (wallet_id, slot, balance) VALUES (:walletId, :slot, 0)",
+            nativeQuery = true)
+    int insertSlot(@Param("walletId") UUID walletId, @Param("slot") int slot);
+
+    @Modifying
+    @Query(value = "DELETE FROM wallet_slot WHERE wallet_id = :walletId AND slot >= :fromSlot", nativeQuery = true)
+    int deleteSlots(@Param("walletId") UUID walletId, @Param("fromSlot") int fromSlot);
 }
@@ -0,0 +1,13 @@
+package com.example.wallet.repository;
+
+import java.util.UUID;
+
+/**
+ * Проекция горячего кошелька: идентификатор и количество ячеек баланса.
+ */
+public interface WalletSlotsView {
+
+    UUID getId();
+
+    int getSlots();
+}
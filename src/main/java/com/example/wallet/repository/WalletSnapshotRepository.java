@@ -0,0 +1,188 @@
+package com.example.wallet.repository;
+
+import com.example.wallet.model.WalletSnapshot;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Снимки балансов кошельков по журналу операций и чтение журнала после снимка.
+ * Записи журнала после снимка выбираются по ключу (created_at, id) из индекса
+ * (wallet_id, created_at, id), поэтому стоимость чтения зависит только от числа
+ * записей после снимка, а не от длины всей истории кошелька.
+ */
+@Repository
+public class WalletSnapshotRepository {
+
+    private static final String SUMS = "CAST(SUM(" + TransactionRepository.SIGNED_AMOUNT + ") * 100 AS bigint) "
+            + "AS amount, COUNT(*) AS transactions";
+    private static final String SUM_AFTER_SNAPSHOT = "SELECT wallet_id, " + SUMS
+            + " FROM transaction WHERE wallet_id = :walletId";
+    private static final String SUM_WITH_LAST = "SELECT d.wallet_id, d.amount, d.transactions, d.last_created_at, "
+            + "(SELECT l.id FROM transaction l WHERE l.wallet_id = d.wallet_id AND l.created_at = d.last_created_at "
+            + "ORDER BY l.id DESC LIMIT 1) AS last_transaction_id "
+            + "FROM (SELECT wallet_id, " + SUMS + ", MAX(created_at) AS last_created_at "
+            + "FROM transaction WHERE wallet_id = :walletId";
+    private static final String SELECT_SNAPSHOT = "SELECT wallet_id, CAST(balance * 100 AS bigint) AS balance, "
+            + "transactions, last_transaction_id, last_created_at FROM wallet_snapshot";
+
+    private static final RowMapper<WalletSnapshot> ROW_MAPPER = (rs, rowNum) -> new WalletSnapshot(
+            rs.getObject("wallet_id", UUID.class), rs.getLong("balance"), rs.getLong("transactions"),
+            rs.getObject("last_transaction_id", UUID.class), rs.getObject("last_created_at", LocalDateTime.class));
+
+    private static final RowMapper<LedgerDelta> DELTA_MAPPER = (rs, rowNum) -> new LedgerDelta(
+            rs.getObject("wallet_id", UUID.class), rs.getLong("amount"), rs.getLong("transactions"));
+
+    private static final RowMapper<LedgerDelta> DELTA_WITH_LAST_MAPPER = (rs, rowNum) -> new LedgerDelta(
+            rs.getObject("wallet_id", UUID.class), rs.getLong("amount"), rs.getLong("transactions"),
+            rs.getObject("last_transaction_id", UUID.class), rs.getObject("last_created_at", LocalDateTime.class));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public WalletSnapshotRepository(DataSource dataSource) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    /**
+     * Находит снимок кошелька.
+     */
+    public Optional<WalletSnapshot> findByWalletId(UUID walletId) {
+        return jdbcTemplate.query(SELECT_SNAPSHOT + " WHERE wallet_id = :walletId",
+                new MapSqlParameterSource("walletId", walletId), ROW_MAPPER).stream().findFirst();
+    }
+
+    /**
+     * Находит снимки набора кошельков одним запросом.
+     *
+     * @return снимки по идентификаторам кошельков; кошельков без снимка в результате нет
+     */
+    public Map<UUID, WalletSnapshot> findByWalletIds(Collection<UUID> walletIds) {
+        Map<UUID, WalletSnapshot> snapshots = new HashMap<>();
+        for (WalletSnapshot snapshot : jdbcTemplate.query(SELECT_SNAPSHOT + " WHERE wallet_id IN (:walletIds)",
+                new MapSqlParameterSource("walletIds", walletIds), ROW_MAPPER)) {
+            snapshots.put(snapshot.getWalletId(), snapshot);
+        }
+        return snapshots;
+    }
+
+    /**
+     * Суммирует записи журнала набора кошельков после их снимков и до момента before одним запросом
+     * и тем же запросом находит последнюю из просуммированных записей каждого кошелька.
+     * Сумма и последняя запись читаются из одного снимка данных базы, поэтому запись, зафиксированная
+     * между ними, не может попасть в одну и не попасть в другую.
+     * Для каждого кошелька условие на ключ снимка передается параметрами, чтобы запрос
+     * читал из индекса только записи после снимка.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @param snapshots текущие снимки кошельков; кошелек без снимка суммируется с начала журнала
+     * @param before    граница по времени создания записи, не включительно
+     * @return изменения балансов с последней записью только тех кошельков, у которых есть такие записи
+     */
+    public List<LedgerDelta> findDeltas(Collection<UUID> walletIds, Map<UUID, WalletSnapshot> snapshots,
+                                        LocalDateTime before) {
+        MapSqlParameterSource params = new MapSqlParameterSource("before", before);
+        StringBuilder sql = new StringBuilder();
+        int i = 0;
+        for (UUID walletId : walletIds) {
+            if (i > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append(SUM_WITH_LAST).append(i).append(" AND created_at < :before");
+            params.addValue("walletId" + i, walletId);
+            WalletSnapshot snapshot = snapshots.get(walletId);
+            if (snapshot != null) {
+                sql.append(" AND (created_at, id) > (:lastCreatedAt").append(i)
+                        .append(", :lastTransactionId").append(i).append(')');
+                params.addValue("lastCreatedAt" + i, snapshot.getLastCreatedAt())
+                        .addValue("lastTransactionId" + i, snapshot.getLastTransactionId());
+            }
+            sql.append(" GROUP BY wallet_id) d");
+            i++;
+        }
+        return jdbcTemplate.query(sql.toString(), params, DELTA_WITH_LAST_MAPPER);
+    }
+
+    /**
+     * Суммирует все записи журнала кошелька после снимка, а если снимка нет — весь журнал.
+     *
+     * @param walletId идентификатор кошелька
+     * @param snapshot снимок кошелька или null
+     */
+    public LedgerDelta replay(UUID walletId, WalletSnapshot snapshot) {
+        MapSqlParameterSource params = new MapSqlParameterSource("walletId0", walletId);
+        StringBuilder sql = new StringBuilder(SUM_AFTER_SNAPSHOT).append(0);
+        if (snapshot != null) {
+            sql.append(" AND (created_at, id) > (:lastCreatedAt, :lastTransactionId)");
+            params.addValue("lastCreatedAt", snapshot.getLastCreatedAt())
+                    .addValue("lastTransactionId", snapshot.getLastTransactionId());
+        }
+        sql.append(" GROUP BY wallet_id");
+        return jdbcTemplate.query(sql.toString(), params, DELTA_MAPPER).stream().findFirst()
+                .orElse(new LedgerDelta(walletId, 0, 0));
+    }
+
+    /**
+     * Находит очередную порцию идентификаторов кошельков диапазона в порядке возрастания.
+     *
+     * @param lower нижняя граница диапазона включительно
+     * @param upper верхняя граница диапазона не включительно или null для конца
+     * @param after последний идентификатор предыдущей порции или null для первой порции
+     * @param limit размер порции
+     */
+    public List<UUID> findWalletIds(UUID lower, UUID upper, UUID after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("lower", lower).addValue("limit", limit);
+        StringBuilder sql = new StringBuilder("SELECT id FROM wallet WHERE id >= :lower");
+        if (upper != null) {
+            sql.append(" AND id < :upper");
+            params.addValue("upper", upper);
+        }
+        if (after != null) {
+            sql.append(" AND id > :after");
+            params.addValue("after", after);
+        }
+        sql.append(" ORDER BY id LIMIT :limit");
+        return jdbcTemplate.queryForList(sql.toString(), params, UUID.class);
+    }
+
+    /**
+     * Создает снимок кошелька, у которого его еще нет.
+     */
+    public void insert(WalletSnapshot snapshot) {
+        jdbcTemplate.update("INSERT INTO wallet_snapshot (wallet_id, balance, transactions, last_transaction_id, "
+                + "last_created_at, updated_at) VALUES (:walletId, :balance * 0.01, :transactions, "
+                + ":lastTransactionId, :lastCreatedAt, :updatedAt)", params(snapshot));
+    }
+
+    /**
+     * Сдвигает снимок кошелька вперед. Снимок не меняется, если он уже учитывает
+     * последнюю запись нового снимка, например если его обновил другой экземпляр приложения.
+     *
+     * @return true, если снимок обновлен
+     */
+    public boolean update(WalletSnapshot snapshot) {
+        return jdbcTemplate.update("UPDATE wallet_snapshot SET balance = :balance * 0.01, "
+                + "transactions = :transactions, last_transaction_id = :lastTransactionId, "
+                + "last_created_at = :lastCreatedAt, updated_at = :updatedAt WHERE wallet_id = :walletId "
+                + "AND (last_created_at, last_transaction_id) < (:lastCreatedAt, :lastTransactionId)",
+                params(snapshot)) > 0;
+    }
+
+    private static MapSqlParameterSource params(WalletSnapshot snapshot) {
+        return new MapSqlParameterSource("walletId", snapshot.getWalletId())
+                .addValue("balance", snapshot.getBalance())
+                .addValue("transactions", snapshot.getTransactions())
+                .addValue("lastTransactionId", snapshot.getLastTransactionId())
+                .addValue("lastCreatedAt", snapshot.getLastCreatedAt())
+                .addValue("updatedAt", LocalDateTime.now());
+    }
+}
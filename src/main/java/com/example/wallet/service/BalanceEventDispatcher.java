@@ -0,0 +1,327 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletStreamProperties;
+import com.example.wallet.repository.WalletRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Рассылка изменений балансов подписчикам потока балансов.
+ * <p>
+ * После фиксации транзакции, изменившей кошелек с подписчиками, изменение кладется в канал кошелька:
+ * канал хранит одно последнее изменение, поэтому путь записи не ждет ни рассылки, ни подписчиков.
+ * Изменения кошельков без подписчиков не обрабатываются, баланс, не изменившийся с прошлой рассылки,
+ * не рассылается. Поток рассылки запускается при первой подписке. Единственный поток рассылки забирает
+ * изменения каналов и кладет баланс в буфер каждой подписки на кошелек; отправку клиенту выполняют
+ * wallet.stream.sender-threads потоков отправки, не больше одной отправки на подписку одновременно.
+ * Пока отправка медленному клиенту идет, его новые балансы заменяют неотправленные в буфере.
+ * Подписка, отправка которой длится дольше wallet.stream.max-stall-ms, закрывается.
+ * <p>
+ * Изменения упорядочены номером, выданным в транзакции записи, пока строка кошелька заблокирована,
+ * поэтому подписчик не получит баланс старше уже отправленного. Баланс горячего кошелька, пополняемого
+ * через ячейки без блокировки строки, после фиксации перечитывается из базы.
+ * Подписчики получают изменения, зафиксированные этим экземпляром приложения.
+ */
+@Component
+public class BalanceEventDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceEventDispatcher.class);
+    private static final long RELOAD = Long.MIN_VALUE;
+    private static final long MAX_POLL_MS = 1000;
+
+    /**
+     * Изменение кошелька: номер и баланс после изменения.
+     */
+    private static final class Change {
+
+        final long sequence;
+        final long balance;
+
+        Change(long sequence, long balance) {
+            this.sequence = sequence;
+            this.balance = balance;
+        }
+    }
+
+    /**
+     * Подписки на кошелек и его последнее неразосланное изменение.
+     */
+    private static final class Channel {
+
+        final UUID walletId;
+        final Set<BalanceSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+        final AtomicReference<Change> pending = new AtomicReference<>();
+        long dispatched;
+        long lastBalance = Long.MIN_VALUE;
+
+        Channel(UUID walletId) {
+            this.walletId = walletId;
+        }
+    }
+
+    private final WalletRepository walletRepository;
+    private final ReadRouting readRouting;
+    private final WalletMetrics metrics;
+    private final int maxSubscribers;
+    private final int maxWalletsPerSubscription;
+    private final long heartbeatMs;
+    private final long maxStallMs;
+    private final Map<UUID, Channel> channels = new ConcurrentHashMap<>();
+    private final Set<BalanceSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<Channel> changed = new LinkedBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService senders;
+
+    private Thread dispatcher;
+    private volatile boolean closed;
+
+    public BalanceEventDispatcher(WalletStreamProperties properties, WalletRepository walletRepository,
+                                  ReadRouting readRouting, WalletMetrics metrics) {
+        if (properties.getMaxSubscribers() < 1 || properties.getMaxWalletsPerSubscription() < 1) {
+            throw new IllegalArgumentException(
+                    "wallet.stream.max-subscribers and wallet.stream.max-wallets-per-subscription must be positive");
+        }
+        if (properties.getHeartbeatMs() < 1 || properties.getMaxStallMs() < 1 || properties.getSenderThreads() < 1) {
+            throw new IllegalArgumentException(
+                    "wallet.stream.heartbeat-ms, max-stall-ms and sender-threads must be positive");
+        }
+        this.walletRepository = walletRepository;
+        this.readRouting = readRouting;
+        this.metrics = metrics;
+        this.maxSubscribers = properties.getMaxSubscribers();
+        this.maxWalletsPerSubscription = properties.getMaxWalletsPerSubscription();
+        this.heartbeatMs = properties.getHeartbeatMs();
+        this.maxStallMs = properties.getMaxStallMs();
+        this.senders = Executors.newFixedThreadPool(properties.getSenderThreads(),
+                Thread.ofPlatform().name("wallet-stream-send-", 0).daemon().factory());
+        metrics.registerStream(subscriptions);
+    }
+
+    /**
+     * Подписывает получателя на изменения балансов кошельков.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @param listener  получатель событий
+     * @return подписка; начальные балансы кладутся в неё вызывающим кодом через
+     * {@link BalanceSubscription#offerInitial} после подписки
+     * @throws IllegalArgumentException если кошельков нет или больше wallet.stream.max-wallets-per-subscription
+     * @throws IllegalStateException    если достигнуто наибольшее число подписок
+     */
+    public BalanceSubscription subscribe(Collection<UUID> walletIds, BalanceListener listener) {
+        Set<UUID> ids = Set.copyOf(walletIds);
+        if (ids.isEmpty() || ids.size() > maxWalletsPerSubscription) {
+            throw new IllegalArgumentException("Invalid walletId count");
+        }
+        BalanceSubscription subscription = new BalanceSubscription(ids, listener, System.currentTimeMillis());
+        synchronized (subscriptions) {
+            if (closed || subscriptions.size() >= maxSubscribers) {
+                throw new IllegalStateException("Too many subscribers");
+            }
+            if (dispatcher == null) {
+                dispatcher = Thread.ofPlatform().name("wallet-stream-dispatch").daemon().start(this::dispatchLoop);
+            }
+            subscriptions.add(subscription);
+        }
+        for (UUID walletId : ids) {
+            channels.compute(walletId, (id, channel) -> {
+                Channel target = channel != null ? channel : new Channel(id);
+                target.subscriptions.add(subscription);
+                return target;
+            });
+        }
+        return subscription;
+    }
+
+    /**
+     * Отменяет подписку, например после закрытия соединения клиентом.
+     */
+    public void unsubscribe(BalanceSubscription subscription) {
+        subscription.close(false);
+        remove(subscription);
+    }
+
+    /**
+     * Планирует отправку буфера подписки, например после записи начальных балансов.
+     */
+    public void schedule(BalanceSubscription subscription) {
+        if (subscription.schedule()) {
+            senders.execute(() -> {
+                if (!subscription.flush(System.currentTimeMillis())) {
+                    remove(subscription);
+                }
+            });
+        }
+    }
+
+    /**
+     * Рассылает баланс кошелька после фиксации текущей транзакции. Вызывается, пока строка
+     * кошелька заблокирована транзакцией: номер изменения выдается сразу, а подписчики кошелька
+     * ищутся после фиксации, поэтому изменение получит и подписка, открытая во время транзакции.
+     * Вне транзакции рассылает сразу.
+     *
+     * @param walletId идентификатор кошелька
+     * @param balance  баланс после изменения в копейках
+     */
+    public void publishAfterCommit(UUID walletId, long balance) {
+        afterCommit(walletId, new Change(sequence.incrementAndGet(), balance));
+    }
+
+    /**
+     * Рассылает баланс кошелька, перечитанный из базы после фиксации текущей транзакции.
+     * Используется, когда баланс, известный транзакции, может не учитывать параллельные изменения.
+     *
+     * @param walletId идентификатор кошелька
+     */
+    public void reloadAfterCommit(UUID walletId) {
+        afterCommit(walletId, new Change(sequence.incrementAndGet(), RELOAD));
+    }
+
+    private void afterCommit(UUID walletId, Change change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(walletId, change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(walletId, change);
+            }
+        });
+    }
+
+    private void enqueue(UUID walletId, Change change) {
+        Channel channel = channels.get(walletId);
+        if (channel == null) {
+            return;
+        }
+        Change previous = channel.pending.getAndAccumulate(change,
+                (current, next) -> current == null || next.sequence > current.sequence ? next : current);
+        if (previous == null) {
+            changed.offer(channel);
+        }
+    }
+
+    private void dispatchLoop() {
+        long nextCheck = System.currentTimeMillis();
+        while (!closed) {
+            try {
+                Channel channel = changed.poll(MAX_POLL_MS, TimeUnit.MILLISECONDS);
+                while (channel != null) {
+                    dispatch(channel);
+                    channel = changed.poll();
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextCheck) {
+                    checkSubscriptions(now);
+                    nextCheck = now + Math.min(MAX_POLL_MS, Math.min(heartbeatMs, maxStallMs));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Balance stream dispatch failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Раскладывает последнее изменение кошелька по буферам его подписок.
+     */
+    private void dispatch(Channel channel) {
+        Change change = channel.pending.getAndSet(null);
+        if (change == null || change.sequence <= channel.dispatched || channel.subscriptions.isEmpty()) {
+            return;
+        }
+        channel.dispatched = change.sequence;
+        long balance = change.balance;
+        if (balance == RELOAD) {
+            Optional<Long> loaded = readRouting.read(channel.walletId,
+                    () -> walletRepository.findTotalBalance(channel.walletId));
+            if (loaded.isEmpty()) {
+                return;
+            }
+            balance = loaded.get();
+        }
+        if (balance == channel.lastBalance) {
+            return;
+        }
+        channel.lastBalance = balance;
+        for (BalanceSubscription subscription : channel.subscriptions) {
+            if (!subscription.offer(channel.walletId, balance)) {
+                metrics.recordStreamCoalesced();
+            }
+            schedule(subscription);
+        }
+    }
+
+    /**
+     * Закрывает зависшие подписки и планирует отправку комментария простаивающим.
+     */
+    private void checkSubscriptions(long now) {
+        for (BalanceSubscription subscription : subscriptions) {
+            long started = subscription.getSendStartedAt();
+            if (started != 0 && now - started > maxStallMs) {
+                log.debug("Closing balance subscription stalled for {} ms", now - started);
+                metrics.recordStreamDropped();
+                remove(subscription);
+                // Закрытие соединения ждет зависшей записи, поэтому выполняется не в потоке рассылки.
+                senders.execute(() -> subscription.close(true));
+            } else if (started == 0 && now - subscription.getLastSentAt() >= heartbeatMs) {
+                subscription.offerHeartbeat();
+                schedule(subscription);
+            }
+        }
+    }
+
+    private void remove(BalanceSubscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        for (UUID walletId : subscription.getWalletIds()) {
+            channels.computeIfPresent(walletId, (id, channel) -> {
+                channel.subscriptions.remove(subscription);
+                return channel.subscriptions.isEmpty() ? null : channel;
+            });
+        }
+    }
+
+    /**
+     * Останавливает рассылку и закрывает подписки.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        Thread thread;
+        synchronized (subscriptions) {
+            closed = true;
+            thread = dispatcher;
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+        }
+        for (BalanceSubscription subscription : subscriptions) {
+            remove(subscription);
+            senders.execute(() -> subscription.close(true));
+        }
+        senders.shutdown();
+        senders.awaitTermination(maxStallMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.wallet.service;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Получатель событий подписки на балансы. Методы вызываются потоком отправки подписки,
+ * не более одного вызова одновременно, и могут блокироваться на записи клиенту.
+ */
+public interface BalanceListener {
+
+    /**
+     * Отправляет баланс кошелька.
+     *
+     * @param walletId идентификатор кошелька
+     * @param balance  баланс в копейках
+     */
+    void onBalance(UUID walletId, long balance) throws IOException;
+
+    /**
+     * Отправляет пустое событие для поддержания соединения.
+     */
+    void onHeartbeat() throws IOException;
+
+    /**
+     * Закрывает соединение подписки, закрытой сервером.
+     */
+    void onClose();
+}
@@ -0,0 +1,132 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletBulkProperties;
+import com.example.wallet.model.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Сервис запроса балансов множества кошельков.
+ * Читает идентификаторы потоком, разрешает их порциями одним запросом на порцию
+ * и сразу пишет результат по каждому кошельку строкой NDJSON.
+ */
+@Service
+public class BalanceLookupService {
+
+    private final WalletService walletService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public BalanceLookupService(WalletService walletService, ObjectMapper objectMapper,
+                                WalletBulkProperties properties) {
+        if (properties.getChunkSize() < 1) {
+            throw new IllegalArgumentException("wallet.bulk.chunk-size must be positive");
+        }
+        this.walletService = walletService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = properties.getChunkSize();
+    }
+
+    /**
+     * Обрабатывает поток идентификаторов кошельков.
+     * На каждый идентификатор в выходной поток пишется строка с балансом
+     * либо с причиной ошибки ("Wallet not found", "Invalid walletId"), в порядке запроса.
+     *
+     * @param in  JSON-массив идентификаторов или идентификаторы в формате NDJSON
+     * @param out поток для результатов в формате NDJSON
+     * @return количество прочитанных идентификаторов
+     */
+    public long lookup(InputStream in, OutputStream out) throws IOException {
+        List<String> requested = new ArrayList<>(chunkSize);
+        List<UUID> walletIds = new ArrayList<>(chunkSize);
+        long count = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            try {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+                while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                    parser.skipChildren();
+                    requested.add(token == JsonToken.VALUE_STRING ? parser.getText() : null);
+                    if (requested.size() == chunkSize) {
+                        flush(requested, walletIds, generator);
+                        count += requested.size();
+                        requested.clear();
+                    }
+                    token = parser.nextToken();
+                }
+                flush(requested, walletIds, generator);
+                count += requested.size();
+            } catch (JsonProcessingException e) {
+                flush(requested, walletIds, generator);
+                count += requested.size();
+                generator.writeStartObject();
+                generator.writeStringField("error", "Malformed JSON: " + e.getOriginalMessage());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+        return count;
+    }
+
+    private void flush(List<String> requested, List<UUID> walletIds, JsonGenerator generator) throws IOException {
+        walletIds.clear();
+        for (String value : requested) {
+            walletIds.add(parse(value));
+        }
+        List<UUID> valid = new ArrayList<>(walletIds.size());
+        for (UUID walletId : walletIds) {
+            if (walletId != null) {
+                valid.add(walletId);
+            }
+        }
+        Map<UUID, Long> balances = valid.isEmpty() ? Map.of() : walletService.getBalances(valid);
+
+        for (int i = 0; i < requested.size(); i++) {
+            UUID walletId = walletIds.get(i);
+            generator.writeStartObject();
+            generator.writeStringField("walletId", requested.get(i));
+            if (walletId == null) {
+                generator.writeStringField("error", "Invalid walletId");
+            } else {
+                Long balance = balances.get(walletId);
+                if (balance == null) {
+                    generator.writeStringField("error", "Wallet not found");
+                } else {
+                    generator.writeFieldName("balance");
+                    generator.writeNumber(Money.format(balance));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
+    private static UUID parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.wallet.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Подписка клиента на изменения балансов нескольких кошельков.
+ * Буфер подписки хранит не больше одного неотправленного баланса на кошелек: новый баланс
+ * заменяет неотправленный, поэтому медленный клиент получает последние балансы,
+ * а размер буфера ограничен числом кошельков подписки.
+ */
+public class BalanceSubscription {
+
+    private final Set<UUID> walletIds;
+    private final BalanceListener listener;
+    private final Map<UUID, Long> pending = new LinkedHashMap<>();
+    private final Set<UUID> updated = new HashSet<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private boolean heartbeat;
+    private volatile long sendStartedAt;
+    private volatile long lastSentAt;
+    private volatile boolean closed;
+
+    BalanceSubscription(Set<UUID> walletIds, BalanceListener listener, long now) {
+        this.walletIds = Set.copyOf(walletIds);
+        this.listener = listener;
+        this.lastSentAt = now;
+    }
+
+    public Set<UUID> getWalletIds() {
+        return walletIds;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Кладет баланс в буфер подписки.
+     *
+     * @return false, если в буфере был неотправленный баланс кошелька и он заменен
+     */
+    synchronized boolean offer(UUID walletId, long balance) {
+        updated.add(walletId);
+        return pending.put(walletId, balance) == null;
+    }
+
+    /**
+     * Кладет начальный баланс, прочитанный при подписке, если после подписки
+     * баланс кошелька еще не менялся: иначе событие изменения новее прочитанного баланса.
+     */
+    public synchronized void offerInitial(UUID walletId, long balance) {
+        if (!updated.contains(walletId)) {
+            pending.put(walletId, balance);
+        }
+    }
+
+    synchronized void offerHeartbeat() {
+        heartbeat = true;
+    }
+
+    /**
+     * Помечает подписку запланированной к отправке.
+     *
+     * @return false, если отправка уже запланирована или выполняется
+     */
+    boolean schedule() {
+        return !closed && scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Отправляет клиенту содержимое буфера, пока оно не кончится.
+     * Ошибка записи закрывает подписку.
+     *
+     * @return false, если подписка закрыта
+     */
+    boolean flush(long now) {
+        sendStartedAt = now;
+        try {
+            while (!closed) {
+                List<Map.Entry<UUID, Long>> balances;
+                boolean sendHeartbeat;
+                synchronized (this) {
+                    if (pending.isEmpty() && !heartbeat) {
+                        scheduled.set(false);
+                        return true;
+                    }
+                    balances = new ArrayList<>(pending.entrySet());
+                    sendHeartbeat = heartbeat && balances.isEmpty();
+                    pending.clear();
+                    heartbeat = false;
+                }
+                for (Map.Entry<UUID, Long> balance : balances) {
+                    listener.onBalance(balance.getKey(), balance.getValue());
+                }
+                if (sendHeartbeat) {
+                    listener.onHeartbeat();
+                }
+                lastSentAt = System.currentTimeMillis();
+            }
+        } catch (IOException | RuntimeException e) {
+            closed = true;
+        } finally {
+            sendStartedAt = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Время начала текущей отправки или 0, если отправка не выполняется.
+     */
+    long getSendStartedAt() {
+        return sendStartedAt;
+    }
+
+    long getLastSentAt() {
+        return lastSentAt;
+    }
+
+    /**
+     * Закрывает подписку; соединение закрывается, если его закрыл сервер.
+     *
+     * @param notify true, если подписку закрывает сервер и клиенту нужно закрыть соединение
+     */
+    void close(boolean notify) {
+        closed = true;
+        if (notify) {
+            listener.onClose();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletBulkProperties;
+import com.example.wallet.model.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Сервис пакетной загрузки операций.
+ * Читает JSON-массив или поток NDJSON операций инкрементально, применяет операции
+ * порциями по одной транзакции на порцию и сразу пишет результат каждой операции
+ * строкой NDJSON (см. {@link NdjsonChunkProcessor}).
+ */
+@Service
+public class BulkOperationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkOperationService.class);
+
+    private final WalletService walletService;
+    private final WalletMetrics metrics;
+    private final NdjsonChunkProcessor<WalletOperation> processor;
+
+    public BulkOperationService(WalletService walletService, WalletMetrics metrics, ObjectMapper objectMapper,
+                                WalletBulkProperties properties) {
+        if (properties.getChunkSize() < 1) {
+            throw new IllegalArgumentException("wallet.bulk.chunk-size must be positive");
+        }
+        this.walletService = walletService;
+        this.metrics = metrics;
+        this.processor = new NdjsonChunkProcessor<>(objectMapper, properties.getChunkSize(), this::readOperation,
+                this::apply, WalletOperation::getFailure, WalletOperation::getResultingBalance,
+                BulkOperationService::writeWallet);
+    }
+
+    /**
+     * Обрабатывает поток операций.
+     * Каждая операция — объект с полями walletId, operationType, amount
+     * и необязательным idempotencyKey.
+     * На каждую операцию в выходной поток пишется строка с её номером, статусом
+     * APPLIED и новым балансом либо статусом REJECTED и причиной отказа.
+     * При синтаксической ошибке во входных данных пишется строка со статусом ERROR
+     * и обработка прекращается; уже примененные операции не откатываются.
+     *
+     * @param in  JSON-массив операций или операции в формате NDJSON
+     * @param out поток для результатов в формате NDJSON
+     * @return количество прочитанных операций
+     */
+    public long process(InputStream in, OutputStream out) throws IOException {
+        return processor.process(in, out);
+    }
+
+    /**
+     * Читает одну операцию, начиная с текущего токена.
+     * Некорректная операция возвращается уже отклоненной.
+     */
+    private WalletOperation readOperation(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return rejected(null, "Invalid operation");
+        }
+        String walletId = null;
+        String operationType = null;
+        String amount = null;
+        String idempotencyKey = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "walletId" -> walletId = parser.getValueAsString();
+                case "operationType" -> operationType = parser.getValueAsString();
+                case "amount" -> amount = value.isNumeric() || value == JsonToken.VALUE_STRING
+                        ? parser.getText() : null;
+                case "idempotencyKey" -> idempotencyKey = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+
+        UUID id;
+        try {
+            id = UUID.fromString(walletId);
+        } catch (RuntimeException e) {
+            return rejected(null, "Invalid walletId");
+        }
+        if (operationType == null) {
+            return rejected(id, "Invalid operation type");
+        }
+        long cents;
+        try {
+            cents = Money.parseAmount(amount);
+        } catch (IllegalArgumentException e) {
+            return rejected(id, "Invalid amount");
+        }
+        if (idempotencyKey != null && !WalletOperation.isValidIdempotencyKey(idempotencyKey)) {
+            return rejected(id, "Invalid idempotencyKey");
+        }
+        return new WalletOperation(id, operationType, cents, idempotencyKey);
+    }
+
+    private static WalletOperation rejected(UUID walletId, String reason) {
+        WalletOperation operation = new WalletOperation(walletId, null, 0);
+        operation.rejected(new IllegalArgumentException(reason));
+        return operation;
+    }
+
+    /**
+     * Применяет корректные операции порции одной транзакцией.
+     * Если транзакция порции не удалась, операции применяются по одной.
+     */
+    private void apply(List<WalletOperation> valid) {
+        try {
+            walletService.applyBatch(valid);
+        } catch (RuntimeException e) {
+            log.warn("Bulk chunk of {} operations failed, applying one by one: {}", valid.size(), e.getMessage());
+            for (WalletOperation operation : valid) {
+                try {
+                    operation.applied(walletService.performOperation(operation.getWalletId(),
+                            operation.getOperationType(), operation.getAmount(), operation.getIdempotencyKey()));
+                } catch (RuntimeException failure) {
+                    operation.rejected(failure);
+                }
+            }
+        }
+        for (WalletOperation operation : valid) {
+            metrics.recordOutcome(operation.getOperationType(), operation.getFailure());
+        }
+    }
+
+    private static void writeWallet(WalletOperation operation, JsonGenerator generator) throws IOException {
+        if (operation.getWalletId() != null) {
+            generator.writeStringField("walletId", operation.getWalletId().toString());
+        }
+    }
+}
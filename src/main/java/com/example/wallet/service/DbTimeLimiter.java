@@ -0,0 +1,76 @@
+package com.example.wallet.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ограничитель фоновой нагрузки по времени работы базы.
+ * Каждый выполненный запрос расходует бюджет пропорционально своей длительности:
+ * при бюджете B мс на секунду запрос длительностью d откладывает следующий запрос
+ * на d / B секунд. Так фоновая задача в среднем занимает не больше B / 1000 времени базы
+ * независимо от того, насколько дорогими оказались её запросы.
+ * <p>
+ * Длительность запроса известна только после его выполнения, поэтому при разрешении запроса
+ * бюджет резервируется по оценке — стоимости последнего учтенного запроса, — а при учете
+ * резерв заменяется фактической стоимостью. Так параллельные потоки, одновременно ждущие
+ * разрешения, получают его по очереди, а не все сразу.
+ */
+public class DbTimeLimiter {
+
+    private final long dbMillisPerSecond;
+    private long nextFree;
+    private long estimatedCost;
+
+    /**
+     * @param dbMillisPerSecond бюджет времени базы в миллисекундах на секунду
+     */
+    public DbTimeLimiter(long dbMillisPerSecond) {
+        if (dbMillisPerSecond < 1) {
+            throw new IllegalArgumentException("DB time budget must be positive");
+        }
+        this.dbMillisPerSecond = dbMillisPerSecond;
+        this.nextFree = System.nanoTime();
+    }
+
+    /**
+     * Резервирует бюджет по оценке стоимости запроса и ждет, пока резерв позволит его выполнить.
+     * Результат передается в {@link #record} после выполнения запроса.
+     *
+     * @return зарезервированная стоимость, нс
+     * @throws InterruptedException если поток прерван во время ожидания; резерв при этом возвращается
+     */
+    public long acquire() throws InterruptedException {
+        long start;
+        long reserved;
+        synchronized (this) {
+            start = Math.max(nextFree, System.nanoTime());
+            reserved = estimatedCost;
+            nextFree = start + reserved;
+        }
+        long wait;
+        while ((wait = start - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this, wait);
+        }
+        if (Thread.interrupted()) {
+            release(reserved);
+            throw new InterruptedException();
+        }
+        return reserved;
+    }
+
+    /**
+     * Учитывает выполненный запрос: заменяет резерв фактической стоимостью.
+     *
+     * @param reserved стоимость, зарезервированная {@link #acquire}, нс
+     * @param dbNanos  длительность запроса, нс
+     */
+    public synchronized void record(long reserved, long dbNanos) {
+        long cost = dbNanos * TimeUnit.SECONDS.toMillis(1) / dbMillisPerSecond;
+        estimatedCost = cost;
+        nextFree += cost - reserved;
+    }
+
+    private synchronized void release(long reserved) {
+        nextFree -= reserved;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletHotProperties;
+import com.example.wallet.repository.WalletBalanceUpdates;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.repository.WalletSlotsView;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Режим горячего кошелька.
+ * Баланс горячего кошелька разделен на строку wallet и N ячеек в wallet_slot; полный баланс —
+ * их сумма. Пополнения идут в случайную ячейку и блокируют только её строку, поэтому
+ * параллельные пополнения одного кошелька не ждут друг друга на одной строке.
+ * <p>
+ * Сервис хранит локальный список горячих кошельков, по которому выбирается путь операции.
+ * Список — только подсказка: деньги никогда не зависят от того, какой путь выбран,
+ * поэтому устаревший список на время обновления влияет лишь на производительность.
+ * Кошелек переводится в режим и обратно без остановки: при уменьшении числа ячеек
+ * балансы удаляемых ячеек переносятся на строку кошелька в той же транзакции.
+ */
+@Service
+public class HotWalletService {
+
+    private final WalletRepository walletRepository;
+    private final int maxSlots;
+
+    private volatile Map<UUID, Integer> hotWallets = Map.of();
+
+    public HotWalletService(WalletRepository walletRepository, WalletHotProperties properties) {
+        if (properties.getMaxSlots() < 1) {
+            throw new IllegalArgumentException("wallet.hot.max-slots must be positive");
+        }
+        this.walletRepository = walletRepository;
+        this.maxSlots = properties.getMaxSlots();
+    }
+
+    /**
+     * Количество ячеек кошелька по локальному списку.
+     *
+     * @return количество ячеек; 0, если кошелек не горячий
+     */
+    public int slotsOf(UUID walletId) {
+        return hotWallets.getOrDefault(walletId, 0);
+    }
+
+    /**
+     * Выбирает ячейку для операции над горячим кошельком.
+     */
+    int pickSlot(int slots) {
+        return ThreadLocalRandom.current().nextInt(slots);
+    }
+
+    /**
+     * Горячие кошельки по локальному списку и количество их ячеек.
+     */
+    public Map<UUID, Integer> getHotWallets() {
+        return hotWallets;
+    }
+
+    /**
+     * Перечитывает список горячих кошельков из базы данных.
+     */
+    @Scheduled(fixedDelayString = "${wallet.hot.refresh-ms:5000}")
+    public void refresh() {
+        Map<UUID, Integer> loaded = new HashMap<>();
+        for (WalletSlotsView wallet : walletRepository.findHotWallets()) {
+            loaded.put(wallet.getId(), wallet.getSlots());
+        }
+        hotWallets = Map.copyOf(loaded);
+    }
+
+    /**
+     * Задает количество ячеек кошелька. 0 выключает режим горячего кошелька.
+     * Строка кошелька блокируется на время изменения; при уменьшении числа ячеек
+     * балансы удаляемых ячеек переносятся на строку кошелька.
+     *
+     * @param walletId идентификатор кошелька
+     * @param slots    новое количество ячеек, от 0 до wallet.hot.max-slots
+     * @throws IllegalArgumentException если количество ячеек вне допустимого диапазона, кошелек не найден
+     *                                  или перенос переполнит баланс строки
+     */
+    @Transactional
+    public void setSlots(UUID walletId, int slots) {
+        if (slots < 0 || slots > maxSlots) {
+            throw new IllegalArgumentException("Invalid slot count");
+        }
+        int current = walletRepository.findSlotsForUpdate(walletId)
+                .orElseThrow(() -> new IllegalArgumentException("Wallet not found"));
+        if (slots == current) {
+            return;
+        }
+        if (slots < current) {
+            long drained = walletRepository.drainSlots(walletId, slots);
+            if (drained > 0 && walletRepository.deposit(walletId, drained) == WalletBalanceUpdates.NOT_UPDATED) {
+                throw new IllegalArgumentException("Balance overflow");
+            }
+            walletRepository.deleteSlots(walletId, slots);
+        }
+        for (int slot = current; slot < slots; slot++) {
+            walletRepository.insertSlot(walletId, slot);
+        }
+        walletRepository.updateSlots(walletId, slots);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                Map<UUID, Integer> updated = new HashMap<>(hotWallets);
+                if (slots == 0) {
+                    updated.remove(walletId);
+                } else {
+                    updated.put(walletId, slots);
+                }
+                hotWallets = Map.copyOf(updated);
+            }
+        });
+    }
+}
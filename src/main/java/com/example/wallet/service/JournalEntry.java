@@ -0,0 +1,60 @@
+package com.example.wallet.service;
+
+import java.util.UUID;
+
+/**
+ * Принятая операция, прочитанная из журнала при запуске: она была принята ответом 202,
+ * но отметка о её выполнении в журнал не попала.
+ */
+public class JournalEntry {
+
+    private final long sequence;
+    private final UUID operationId;
+    private final UUID walletId;
+    private final String operationType;
+    private final long amount;
+    private final String idempotencyKey;
+
+    public JournalEntry(long sequence, UUID operationId, UUID walletId, String operationType, long amount,
+                        String idempotencyKey) {
+        this.sequence = sequence;
+        this.operationId = operationId;
+        this.walletId = walletId;
+        this.operationType = operationType;
+        this.amount = amount;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Номер записи в журнале.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public UUID getOperationId() {
+        return operationId;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public String getOperationType() {
+        return operationType;
+    }
+
+    /**
+     * Сумма операции в копейках.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Ключ идемпотентности, с которым операция записывается в журнал операций базы.
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+}
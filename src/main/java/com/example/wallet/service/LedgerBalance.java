@@ -0,0 +1,60 @@
+package com.example.wallet.service;
+
+import com.example.wallet.model.WalletSnapshot;
+
+import java.util.UUID;
+
+/**
+ * Баланс кошелька, восстановленный по журналу операций, рядом с текущим балансом кошелька.
+ */
+public class LedgerBalance {
+
+    private final UUID walletId;
+    private final long walletBalance;
+    private final long ledgerBalance;
+    private final long replayedTransactions;
+    private final WalletSnapshot snapshot;
+
+    public LedgerBalance(UUID walletId, long walletBalance, long ledgerBalance, long replayedTransactions,
+                         WalletSnapshot snapshot) {
+        this.walletId = walletId;
+        this.walletBalance = walletBalance;
+        this.ledgerBalance = ledgerBalance;
+        this.replayedTransactions = replayedTransactions;
+        this.snapshot = snapshot;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    /**
+     * Текущий баланс кошелька в копейках.
+     */
+    public long getWalletBalance() {
+        return walletBalance;
+    }
+
+    /**
+     * Баланс по журналу в копейках: баланс снимка плюс записи журнала после него.
+     * Отличается от баланса кошелька на сумму, зачисленную на кошелек мимо журнала
+     * (например, начальный баланс).
+     */
+    public long getLedgerBalance() {
+        return ledgerBalance;
+    }
+
+    /**
+     * Количество записей журнала, прочитанных после снимка.
+     */
+    public long getReplayedTransactions() {
+        return replayedTransactions;
+    }
+
+    /**
+     * Снимок, от которого восстановлен баланс, или null, если журнал прочитан с начала.
+     */
+    public WalletSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
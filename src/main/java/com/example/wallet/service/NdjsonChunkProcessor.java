@@ -0,0 +1,159 @@
+package com.example.wallet.service;
+
+import com.example.wallet.model.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Потоковая обработка пакетной загрузки, общая для операций и переводов.
+ * Читает JSON-массив или поток NDJSON элементов инкрементально, применяет элементы
+ * порциями и сразу пишет результат каждого элемента строкой NDJSON. В памяти одновременно
+ * находится не более одной порции, независимо от размера загрузки.
+ * Разбор элемента, применение порции и поля, идентифицирующие элемент в результате,
+ * задает сервис конкретной загрузки.
+ *
+ * @param <T> элемент загрузки, в который записывается исход его применения
+ */
+final class NdjsonChunkProcessor<T> {
+
+    /**
+     * Читает один элемент, начиная с текущего токена.
+     * Некорректный элемент возвращается уже отклоненным.
+     */
+    @FunctionalInterface
+    interface ItemReader<T> {
+
+        T read(JsonParser parser, JsonToken token) throws IOException;
+    }
+
+    /**
+     * Пишет в строку результата поля, идентифицирующие элемент.
+     */
+    @FunctionalInterface
+    interface ItemFields<T> {
+
+        void write(T item, JsonGenerator generator) throws IOException;
+    }
+
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final ItemReader<T> reader;
+    private final Consumer<List<T>> applier;
+    private final Function<T, RuntimeException> failure;
+    private final ToLongFunction<T> balance;
+    private final ItemFields<T> fields;
+
+    /**
+     * @param objectMapper источник парсера и генератора JSON
+     * @param chunkSize    размер порции
+     * @param reader       разбор одного элемента
+     * @param applier      применение корректных элементов порции; записывает исход в каждый элемент
+     * @param failure      причина отказа элемента или null, если он применен
+     * @param balance      баланс после применения элемента в копейках
+     * @param fields       поля строки результата, идентифицирующие элемент
+     */
+    NdjsonChunkProcessor(ObjectMapper objectMapper, int chunkSize, ItemReader<T> reader, Consumer<List<T>> applier,
+                         Function<T, RuntimeException> failure, ToLongFunction<T> balance, ItemFields<T> fields) {
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.reader = reader;
+        this.applier = applier;
+        this.failure = failure;
+        this.balance = balance;
+        this.fields = fields;
+    }
+
+    /**
+     * Обрабатывает поток элементов.
+     * На каждый элемент в выходной поток пишется строка с его номером, статусом
+     * APPLIED и балансом либо статусом REJECTED и причиной отказа.
+     * При синтаксической ошибке во входных данных пишется строка со статусом ERROR
+     * и обработка прекращается; уже примененные элементы не откатываются.
+     *
+     * @param in  JSON-массив элементов или элементы в формате NDJSON
+     * @param out поток для результатов в формате NDJSON
+     * @return количество прочитанных элементов
+     */
+    long process(InputStream in, OutputStream out) throws IOException {
+        List<T> chunk = new ArrayList<>(chunkSize);
+        long index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            try {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+                while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                    chunk.add(reader.read(parser, token));
+                    if (chunk.size() == chunkSize) {
+                        flush(chunk, index, generator);
+                        index += chunk.size();
+                        chunk.clear();
+                    }
+                    token = parser.nextToken();
+                }
+                flush(chunk, index, generator);
+                index += chunk.size();
+            } catch (JsonProcessingException e) {
+                flush(chunk, index, generator);
+                index += chunk.size();
+                generator.writeStartObject();
+                generator.writeNumberField("index", index);
+                generator.writeStringField("status", "ERROR");
+                generator.writeStringField("error", "Malformed JSON: " + e.getOriginalMessage());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Применяет корректные элементы порции и пишет результаты всех её элементов.
+     */
+    private void flush(List<T> chunk, long firstIndex, JsonGenerator generator) throws IOException {
+        List<T> valid = new ArrayList<>(chunk.size());
+        for (T item : chunk) {
+            if (failure.apply(item) == null) {
+                valid.add(item);
+            }
+        }
+        if (!valid.isEmpty()) {
+            applier.accept(valid);
+        }
+
+        long index = firstIndex;
+        for (T item : chunk) {
+            generator.writeStartObject();
+            generator.writeNumberField("index", index++);
+            fields.write(item, generator);
+            RuntimeException rejected = failure.apply(item);
+            if (rejected == null) {
+                generator.writeStringField("status", "APPLIED");
+                generator.writeFieldName("balance");
+                generator.writeNumber(Money.format(balance.applyAsLong(item)));
+            } else {
+                generator.writeStringField("status", "REJECTED");
+                generator.writeStringField("error", rejected.getMessage());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+}
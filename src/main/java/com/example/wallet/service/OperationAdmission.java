@@ -0,0 +1,169 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletAdmissionProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Допуск асинхронных операций: адаптивное ограничение числа принятых, но еще не выполненных операций.
+ * <p>
+ * Раз в wallet.admission.window-ms ограничение пересчитывается по задержке выполнения пакетов полосами
+ * в базе. Наименьшая наблюдавшаяся задержка считается задержкой ненагруженной базы; пока текущая
+ * задержка не превышает её в latency-tolerance раз, ограничение растет на корень из себя, а дальше
+ * уменьшается пропорционально превышению. Если потоки ждут соединения с базой, пул насыщен,
+ * и ограничение уменьшается независимо от задержки. Ограничение не растет, пока используется
+ * меньше половины его. Новое значение сглаживается с коэффициентом smoothing.
+ * <p>
+ * Операция сверх ограничения отклоняется сразу: клиенту сообщается, через сколько секунд
+ * выполнятся операции, уже находящиеся в работе, при текущей пропускной способности.
+ */
+@Component
+public class OperationAdmission {
+
+    /**
+     * Доля, на которую задержка ненагруженной базы за один пересчет приближается к текущей задержке,
+     * если та больше: так оценка догоняет базу, ставшую медленнее навсегда.
+     */
+    private static final double BASELINE_DRIFT = 0.01;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SATURATED_DECREASE = 0.9;
+
+    private final WalletAdmissionProperties properties;
+    private final WalletMetrics metrics;
+    private final long windowNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final AtomicLong nextUpdate;
+
+    private volatile int limit;
+    private volatile double throughput;
+
+    private double baselineNanos = Double.NaN;
+    private long lastBatches;
+    private double lastExecuteNanos;
+    private long lastCompleted;
+    private long lastUpdateAt;
+
+    public OperationAdmission(WalletAdmissionProperties properties, WalletMetrics metrics) {
+        if (properties.getMinLimit() < 1 || properties.getMaxLimit() < properties.getMinLimit()) {
+            throw new IllegalArgumentException("wallet.admission limits must satisfy 1 <= min-limit <= max-limit");
+        }
+        if (properties.getLatencyTolerance() < 1) {
+            throw new IllegalArgumentException("wallet.admission.latency-tolerance must be at least 1");
+        }
+        if (properties.getSmoothing() <= 0 || properties.getSmoothing() > 1) {
+            throw new IllegalArgumentException("wallet.admission.smoothing must be in (0, 1]");
+        }
+        this.properties = properties;
+        this.metrics = metrics;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs());
+        this.limit = clamp(properties.getInitialLimit());
+        this.lastUpdateAt = System.nanoTime();
+        this.nextUpdate = new AtomicLong(lastUpdateAt + windowNanos);
+        this.lastBatches = metrics.getExecutedBatches();
+        this.lastExecuteNanos = metrics.getExecuteNanos();
+        metrics.registerAdmission(this);
+    }
+
+    /**
+     * Занимает место для новой операции.
+     *
+     * @return false, если число операций в работе достигло ограничения
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        long next = nextUpdate.get();
+        if (now - next >= 0 && nextUpdate.compareAndSet(next, now + windowNanos)) {
+            update(now);
+        }
+        if (!properties.isEnabled()) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                metrics.recordRejectedByLimit();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает место операции после её выполнения или отказа в приеме.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        completed.increment();
+    }
+
+    /**
+     * Через сколько секунд клиенту стоит повторить отклоненную операцию: время выполнения операций,
+     * уже находящихся в работе, при пропускной способности последнего периода.
+     */
+    public long getRetryAfterSeconds() {
+        double rate = throughput;
+        long seconds = rate > 0 ? (long) Math.ceil(inFlight.get() / rate) : 1;
+        return Math.max(1, Math.min(seconds, properties.getMaxRetryAfterSeconds()));
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Пересчитывает ограничение по измерениям, накопленным с прошлого пересчета.
+     */
+    synchronized void update(long now) {
+        long batches = metrics.getExecutedBatches();
+        double executeNanos = metrics.getExecuteNanos();
+        long done = completed.sum();
+        if (now > lastUpdateAt) {
+            throughput = (done - lastCompleted) * 1e9 / (now - lastUpdateAt);
+        }
+        long windowBatches = batches - lastBatches;
+        double windowExecuteNanos = executeNanos - lastExecuteNanos;
+        lastBatches = batches;
+        lastExecuteNanos = executeNanos;
+        lastCompleted = done;
+        lastUpdateAt = now;
+        if (windowBatches == 0) {
+            return;
+        }
+        double latency = windowExecuteNanos / windowBatches;
+        if (Double.isNaN(baselineNanos) || latency < baselineNanos) {
+            baselineNanos = latency;
+        } else {
+            baselineNanos += (latency - baselineNanos) * BASELINE_DRIFT;
+        }
+        int current = limit;
+        double gradient = Math.max(MIN_GRADIENT,
+                Math.min(1.0, properties.getLatencyTolerance() * baselineNanos / latency));
+        double target = current * gradient + Math.sqrt(current);
+        if (metrics.getConnectionWaiters() > 0) {
+            target = Math.min(target, current * SATURATED_DECREASE);
+        }
+        if (inFlight.get() < current / 2) {
+            target = Math.min(target, current);
+        }
+        double smoothing = properties.getSmoothing();
+        double next = current * (1 - smoothing) + target * smoothing;
+        // Уменьшение округляется вниз, иначе при малом ограничении сглаженный шаг теряется при округлении.
+        limit = clamp((int) (target < current ? Math.floor(next) : Math.round(next)));
+    }
+
+    private int clamp(int value) {
+        return Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), value));
+    }
+}
@@ -0,0 +1,525 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletJournalProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Локальный журнал принятых, но еще не выполненных операций.
+ * <p>
+ * Журнал — последовательность файлов фиксированного размера, отображенных в память. Запись о принятой
+ * операции копируется в отображение под коротким замком, после чего принимающий поток ждет сброса
+ * на диск. Сброс выполняет один поток: за один вызов force он сбрасывает все записи, накопившиеся
+ * с прошлого сброса, поэтому при нагрузке одно fsync подтверждает сразу много операций.
+ * После фиксации операции в базе в журнал дописывается отметка о выполнении без ожидания сброса.
+ * <p>
+ * При запуске файлы читаются заново, и операции без отметки о выполнении возвращаются
+ * для повторного выполнения (см. {@link #drainRecovered()}). Запись защищена контрольной суммой,
+ * чтение файла останавливается на первой поврежденной записи. Новые записи всегда пишутся в новый файл;
+ * файл удаляется, когда выполнены все операции в нем и во всех более ранних файлах.
+ */
+@Component
+public class OperationJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(OperationJournal.class);
+
+    private static final String SUFFIX = ".journal";
+    private static final byte ACCEPTED = 1;
+    private static final byte RESOLVED = 2;
+    /**
+     * Длина тела записи и его контрольная сумма.
+     */
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_TYPE_BYTES = 255;
+    private static final int MIN_SEGMENT_BYTES = 4096;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final WalletMetrics metrics;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dirty = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<Long, Segment> unresolved = new HashMap<>();
+
+    private List<JournalEntry> recovered = List.of();
+    private FileChannel lockChannel;
+    private FileLock fileLock;
+    private Thread flusher;
+    private Segment active;
+    private long nextSequence = 1;
+    private long written;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    public OperationJournal(WalletJournalProperties properties, WalletMetrics metrics) {
+        if (properties.getSegmentBytes() < MIN_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("wallet.journal.segment-bytes must be at least " + MIN_SEGMENT_BYTES);
+        }
+        this.enabled = properties.isEnabled();
+        this.directory = Path.of(properties.getDirectory()).toAbsolutePath();
+        this.segmentBytes = properties.getSegmentBytes();
+        this.metrics = metrics;
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("journal.lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            fileLock = lockChannel.tryLock();
+            if (fileLock == null) {
+                throw new IllegalStateException("Journal directory " + directory + " is used by another process");
+            }
+            long lastNumber = recover();
+            active = createSegment(lastNumber + 1);
+            segments.addLast(active);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open operation journal in " + directory, e);
+        }
+        if (!recovered.isEmpty()) {
+            log.warn("Operation journal contains {} accepted operations that were not applied", recovered.size());
+        }
+        flusher = Thread.ofPlatform().name("wallet-journal-flush").daemon().start(this::flushLoop);
+    }
+
+    /**
+     * Записывает принятую операцию и ждет сброса записи на диск.
+     *
+     * @param operationId    идентификатор операции, под которым клиент запрашивает её статус
+     * @param walletId       идентификатор кошелька
+     * @param operationType  тип операции
+     * @param amount         сумма операции в копейках
+     * @param idempotencyKey ключ идемпотентности, с которым операция записывается в журнал базы, или null
+     * @return номер записи; 0, если журнал выключен
+     * @throws IllegalArgumentException если тип операции слишком длинный
+     * @throws UncheckedIOException     если журнал не удалось записать на диск
+     */
+    public long accept(UUID operationId, UUID walletId, String operationType, long amount, String idempotencyKey) {
+        if (!enabled) {
+            return 0;
+        }
+        byte[] type = operationType.getBytes(StandardCharsets.UTF_8);
+        if (type.length > MAX_TYPE_BYTES) {
+            throw new IllegalArgumentException("Invalid operation type");
+        }
+        byte[] key = idempotencyKey == null ? new byte[0] : idempotencyKey.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + 8 + 32 + 8 + 2 + type.length + 2 + key.length);
+        body.put(ACCEPTED).putLong(0)
+                .putLong(operationId.getMostSignificantBits()).putLong(operationId.getLeastSignificantBits())
+                .putLong(walletId.getMostSignificantBits()).putLong(walletId.getLeastSignificantBits())
+                .putLong(amount)
+                .putShort((short) type.length).put(type)
+                .putShort((short) (idempotencyKey == null ? -1 : key.length)).put(key);
+        long sequence;
+        long record;
+        lock.lock();
+        try {
+            sequence = nextSequence++;
+            body.putLong(1, sequence);
+            record = write(body.array());
+            active.pending++;
+            unresolved.put(sequence, active);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(record);
+        return sequence;
+    }
+
+    /**
+     * Отмечает операцию выполненной (примененной или отклоненной). Не ждет сброса на диск:
+     * если отметка не успеет попасть на диск, операция повторится при запуске
+     * и будет распознана по ключу идемпотентности или идентификатору операции.
+     *
+     * @param sequence номер записи, полученный от {@link #accept}
+     */
+    public void resolve(long sequence) {
+        resolve(sequence, false);
+    }
+
+    /**
+     * Отмечает операцию отмененной и ждет сброса отметки на диск.
+     * Используется, когда записанную операцию не удалось поставить в очередь и клиенту возвращается отказ.
+     *
+     * @param sequence номер записи, полученный от {@link #accept}
+     */
+    public void cancel(long sequence) {
+        resolve(sequence, true);
+    }
+
+    private void resolve(long sequence, boolean sync) {
+        if (!enabled || sequence == 0) {
+            return;
+        }
+        long record = 0;
+        lock.lock();
+        try {
+            Segment segment = unresolved.remove(sequence);
+            if (segment == null) {
+                return;
+            }
+            if (failure == null && !closed) {
+                record = write(ByteBuffer.allocate(9).put(RESOLVED).putLong(sequence).array());
+            }
+            segment.pending--;
+            deleteResolvedSegments();
+        } finally {
+            lock.unlock();
+        }
+        if (sync && record > 0) {
+            awaitDurable(record);
+        }
+    }
+
+    /**
+     * Возвращает операции, принятые до последнего запуска и не отмеченные выполненными, в порядке приема.
+     * Повторный вызов возвращает пустой список.
+     */
+    public List<JournalEntry> drainRecovered() {
+        lock.lock();
+        try {
+            List<JournalEntry> entries = recovered;
+            recovered = List.of();
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество принятых операций, еще не отмеченных выполненными.
+     */
+    public int getUnresolvedCount() {
+        lock.lock();
+        try {
+            return unresolved.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Копирует запись в текущий файл, при необходимости начиная новый.
+     *
+     * @return порядковый номер записи, по которому ждется её сброс на диск
+     */
+    private long write(byte[] body) {
+        if (failure != null) {
+            throw new UncheckedIOException("Operation journal is unavailable", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Operation journal is closed");
+        }
+        int size = HEADER_BYTES + body.length;
+        if (active.position + size > segmentBytes) {
+            roll();
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        int position = active.position;
+        active.buffer.put(position + HEADER_BYTES, body);
+        active.buffer.putInt(position + 4, (int) crc.getValue());
+        active.buffer.putInt(position, body.length);
+        active.position = position + size;
+        written++;
+        dirty.signal();
+        return written;
+    }
+
+    /**
+     * Сбрасывает остаток текущего файла на диск и начинает новый файл.
+     */
+    private void roll() {
+        Segment previous = active;
+        try {
+            previous.buffer.force(previous.forced, previous.position - previous.forced);
+            previous.forced = previous.position;
+            active = createSegment(previous.number + 1);
+        } catch (IOException e) {
+            throw fail(e);
+        } catch (UncheckedIOException e) {
+            throw fail(e.getCause());
+        }
+        segments.addLast(active);
+        closeQuietly(previous.channel);
+        deleteResolvedSegments();
+    }
+
+    /**
+     * Переводит журнал в состояние отказа: ожидающие и новые записи получают исключение.
+     */
+    private UncheckedIOException fail(IOException e) {
+        failure = e;
+        flushed.signalAll();
+        return new UncheckedIOException("Operation journal is unavailable", e);
+    }
+
+    private void awaitDurable(long record) {
+        lock.lock();
+        try {
+            while (durable < record) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Operation journal is unavailable", failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Поток сброса: пока есть несброшенные записи, сбрасывает одним вызовом все, что накопилось.
+     */
+    private void flushLoop() {
+        while (true) {
+            Segment segment;
+            int from;
+            int to;
+            long target;
+            long previous;
+            lock.lock();
+            try {
+                while (durable == written && !closed) {
+                    dirty.awaitUninterruptibly();
+                }
+                if (durable == written) {
+                    return;
+                }
+                target = written;
+                previous = durable;
+                segment = active;
+                from = segment.forced;
+                to = segment.position;
+                segment.forced = to;
+            } finally {
+                lock.unlock();
+            }
+            long started = System.nanoTime();
+            try {
+                if (to > from) {
+                    segment.buffer.force(from, to - from);
+                }
+            } catch (UncheckedIOException e) {
+                log.error("Operation journal flush failed, new operations will be rejected", e);
+                lock.lock();
+                try {
+                    fail(e.getCause());
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            metrics.recordJournalFlush(started, target - previous);
+            lock.lock();
+            try {
+                durable = Math.max(durable, target);
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Удаляет файлы с начала журнала, пока все операции в них выполнены.
+     */
+    private void deleteResolvedSegments() {
+        while (segments.peekFirst() != active && segments.peekFirst().pending == 0) {
+            Segment segment = segments.removeFirst();
+            closeQuietly(segment.channel);
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                log.warn("Cannot delete journal file {}: {}", segment.file, e.getMessage());
+            }
+        }
+    }
+
+    private Segment createSegment(long number) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", number, SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        // Размер файла и запись каталога должны пережить сбой вместе с первыми записями.
+        channel.force(true);
+        syncDirectory();
+        return new Segment(number, file, channel, buffer);
+    }
+
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Не все платформы позволяют открыть каталог; тогда запись каталога сбрасывает файловая система.
+        }
+    }
+
+    /**
+     * Читает файлы журнала, оставшиеся от прошлого запуска.
+     *
+     * @return номер последнего файла или 0, если файлов нет
+     */
+    private long recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        TreeMap<Long, JournalEntry> pending = new TreeMap<>();
+        long lastNumber = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long number = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            lastNumber = Math.max(lastNumber, number);
+            Segment segment = new Segment(number, file, null, null);
+            segments.addLast(segment);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), segment, pending);
+            }
+        }
+        recovered = new ArrayList<>(pending.values());
+        while (!segments.isEmpty() && segments.peekFirst().pending == 0) {
+            Files.deleteIfExists(segments.removeFirst().file);
+        }
+        return lastNumber;
+    }
+
+    private void read(ByteBuffer buffer, Segment segment, Map<Long, JournalEntry> pending) {
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.limit() - position - HEADER_BYTES) {
+                return;
+            }
+            ByteBuffer body = buffer.slice(position + HEADER_BYTES, length);
+            CRC32C crc = new CRC32C();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                log.warn("Journal file {} is damaged at offset {}, the rest of it is ignored", segment.file, position);
+                return;
+            }
+            byte kind = body.get();
+            long sequence = body.getLong();
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            if (kind == ACCEPTED) {
+                UUID operationId = new UUID(body.getLong(), body.getLong());
+                UUID walletId = new UUID(body.getLong(), body.getLong());
+                long amount = body.getLong();
+                String type = readString(body, body.getShort());
+                String key = readString(body, body.getShort());
+                pending.put(sequence, new JournalEntry(sequence, operationId, walletId, type, amount, key));
+                unresolved.put(sequence, segment);
+                segment.pending++;
+            } else if (kind == RESOLVED && pending.remove(sequence) != null) {
+                unresolved.remove(sequence).pending--;
+            }
+            position += HEADER_BYTES + length;
+        }
+    }
+
+    private static String readString(ByteBuffer body, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close journal file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Сбрасывает оставшиеся записи и закрывает журнал. Если невыполненных операций не осталось,
+     * файлы журнала удаляются.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            closed = true;
+            dirty.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                closeQuietly(segment.channel);
+            }
+            if (unresolved.isEmpty() && failure == null) {
+                for (Segment segment : segments) {
+                    Files.deleteIfExists(segment.file);
+                }
+            }
+            fileLock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close operation journal: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Файл журнала. У файлов прошлого запуска нет отображения: они только читаются при запуске.
+     */
+    private static final class Segment {
+
+        private final long number;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int forced;
+        private int pending;
+
+        Segment(long number, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.wallet.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Повтор операций, принятых до аварийной остановки и не отмеченных в журнале выполненными.
+ * <p>
+ * Повтор запускается после создания всех компонентов, но раньше веб-сервера, поэтому операции
+ * из журнала встают в очереди полос раньше новых операций тех же кошельков и выполняются
+ * в порядке приема. Операция, которая успела зафиксироваться до остановки, распознается
+ * по ключу идемпотентности или идентификатору операции в журнале базы и не применяется второй раз.
+ * Статус повторенной операции доступен по её прежнему идентификатору.
+ */
+@Component
+public class OperationJournalReplayer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OperationJournalReplayer.class);
+
+    private final OperationJournal journal;
+    private final WalletOperationExecutor executor;
+    private final OperationTracker tracker;
+
+    private volatile boolean running;
+
+    public OperationJournalReplayer(OperationJournal journal, WalletOperationExecutor executor,
+                                    OperationTracker tracker) {
+        this.journal = journal;
+        this.executor = executor;
+        this.tracker = tracker;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        List<JournalEntry> entries = journal.drainRecovered();
+        if (entries.isEmpty()) {
+            return;
+        }
+        log.info("Replaying {} accepted operations from the operation journal", entries.size());
+        try {
+            for (JournalEntry entry : entries) {
+                CompletableFuture<Long> result = executor.replay(entry);
+                tracker.track(entry.getOperationId(), entry.getWalletId(), entry.getOperationType(),
+                        entry.getAmount(), entry.getIdempotencyKey(), result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Operation journal replay interrupted, the rest is replayed on the next start");
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Фаза ниже фазы веб-сервера: повтор ставится в очереди до приема новых запросов.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
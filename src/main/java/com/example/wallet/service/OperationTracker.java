@@ -0,0 +1,122 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.OperationTrackingProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченное хранилище статусов принятых асинхронных операций.
+ * Незавершенная операция хранится до pending-ttl-ms, после завершения срок хранения
+ * отсчитывается заново и составляет completed-ttl-ms.
+ * <p>
+ * Операции, принятые с ключом идемпотентности, дополнительно индексируются по ключу
+ * с тем же сроком хранения: это быстрый слой отсева повторов перед постановкой в очередь.
+ * Отклоненная операция из индекса удаляется, и повтор с тем же ключом выполняется заново.
+ */
+@Component
+public class OperationTracker {
+
+    private final Cache<UUID, TrackedOperation> operations;
+    private final Cache<String, TrackedOperation> operationsByKey;
+
+    public OperationTracker(OperationTrackingProperties properties) {
+        long pendingTtlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getPendingTtlMs());
+        long completedTtlNanos = TimeUnit.MILLISECONDS.toNanos(properties.getCompletedTtlMs());
+        this.operations = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new StatusExpiry<UUID>(pendingTtlNanos, completedTtlNanos))
+                .build();
+        this.operationsByKey = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new StatusExpiry<String>(pendingTtlNanos, completedTtlNanos))
+                .build();
+    }
+
+    /**
+     * Регистрирует принятую операцию под заданным идентификатором: идентификатор назначается
+     * до записи операции в журнал принятых операций и сохраняется при её повторе после перезапуска.
+     *
+     * @param operationId    идентификатор операции
+     * @param walletId       идентификатор кошелька
+     * @param operationType  тип операции
+     * @param amount         сумма операции в копейках
+     * @param idempotencyKey ключ идемпотентности или null
+     * @param result         результат выполнения операции
+     */
+    public void track(UUID operationId, UUID walletId, String operationType, long amount, String idempotencyKey,
+                      CompletableFuture<Long> result) {
+        TrackedOperation operation = new TrackedOperation(operationId, walletId, operationType, amount, result);
+        operations.put(operationId, operation);
+        if (idempotencyKey != null) {
+            operationsByKey.asMap().putIfAbsent(idempotencyKey, operation);
+        }
+        // Перезапись после завершения переводит запись на срок хранения завершенных операций.
+        result.whenComplete((balance, failure) -> {
+            operations.asMap().replace(operationId, operation);
+            if (idempotencyKey != null) {
+                if (failure != null) {
+                    operationsByKey.asMap().remove(idempotencyKey, operation);
+                } else {
+                    operationsByKey.asMap().replace(idempotencyKey, operation, operation);
+                }
+            }
+        });
+    }
+
+    /**
+     * Находит операцию по идентификатору.
+     *
+     * @param operationId идентификатор операции
+     * @return операция или пустой Optional, если она не найдена или срок её хранения истек
+     */
+    public Optional<TrackedOperation> find(UUID operationId) {
+        return Optional.ofNullable(operations.getIfPresent(operationId));
+    }
+
+    /**
+     * Находит неотклоненную операцию, принятую с указанным ключом идемпотентности.
+     *
+     * @param idempotencyKey ключ идемпотентности
+     * @return операция или пустой Optional, если ключ не встречался, операция отклонена
+     * или срок её хранения истек
+     */
+    public Optional<TrackedOperation> findByIdempotencyKey(String idempotencyKey) {
+        return Optional.ofNullable(operationsByKey.getIfPresent(idempotencyKey));
+    }
+
+    /**
+     * Срок хранения записи: pending-ttl-ms до завершения операции, completed-ttl-ms после.
+     */
+    private static final class StatusExpiry<K> implements Expiry<K, TrackedOperation> {
+
+        private final long pendingTtlNanos;
+        private final long completedTtlNanos;
+
+        StatusExpiry(long pendingTtlNanos, long completedTtlNanos) {
+            this.pendingTtlNanos = pendingTtlNanos;
+            this.completedTtlNanos = completedTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(K key, TrackedOperation value, long currentTime) {
+            return value.getResult().isDone() ? completedTtlNanos : pendingTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(K key, TrackedOperation value, long currentTime, long currentDuration) {
+            return value.getResult().isDone() ? completedTtlNanos : currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(K key, TrackedOperation value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.ReplicaRoutingDataSource;
+import com.example.wallet.config.WalletReplicaProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Выбор базы для чтения балансов и истории: реплика или основная база.
+ * <p>
+ * Чтение идет на реплику, если она включена, её отставание, измеренное последней проверкой,
+ * не больше wallet.replica.max-lag-ms и ни один из читаемых кошельков не закреплен.
+ * Кошелек закрепляется за основной базой на wallet.replica.pin-ms после фиксации каждого его изменения
+ * этим экземпляром приложения: клиент, только что изменивший кошелек, видит свое изменение.
+ * Изменения, сделанные другими экземплярами, видны с задержкой не больше допустимого отставания.
+ * Чтение внутри открытой транзакции всегда идет в основную базу.
+ */
+@Component
+public class ReadRouting {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadRouting.class);
+    private static final long UNKNOWN_LAG = -1;
+
+    /**
+     * Чтение, выполняемое на выбранной базе.
+     */
+    @FunctionalInterface
+    public interface Read<T, E extends Exception> {
+        T get() throws E;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WalletMetrics metrics;
+    private final boolean enabled;
+    private final long maxLagMs;
+    private final String lagQuery;
+    private final Cache<UUID, Boolean> pinned;
+
+    private volatile long lagMs = UNKNOWN_LAG;
+
+    public ReadRouting(WalletReplicaProperties properties, JdbcTemplate jdbcTemplate, WalletMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.metrics = metrics;
+        this.enabled = properties.isEnabled();
+        this.maxLagMs = properties.getMaxLagMs();
+        this.lagQuery = properties.getLagQuery();
+        if (enabled) {
+            if (properties.getMaxLagMs() < 0 || properties.getLagCheckMs() < 1) {
+                throw new IllegalArgumentException(
+                        "wallet.replica.max-lag-ms must not be negative and wallet.replica.lag-check-ms must be positive");
+            }
+            if (properties.getPinMs() < properties.getMaxLagMs() + properties.getLagCheckMs()) {
+                throw new IllegalArgumentException(
+                        "wallet.replica.pin-ms must be at least wallet.replica.max-lag-ms + wallet.replica.lag-check-ms");
+            }
+            this.pinned = Caffeine.newBuilder()
+                    .maximumSize(properties.getMaxPinnedWallets())
+                    .expireAfterWrite(Duration.ofMillis(properties.getPinMs()))
+                    .build();
+            metrics.registerReplica(this);
+        } else {
+            this.pinned = null;
+        }
+    }
+
+    /**
+     * Выполняет чтение данных кошелька на реплике или в основной базе.
+     *
+     * @param walletId идентификатор кошелька
+     * @param read     чтение
+     * @return результат чтения
+     */
+    public <T, E extends Exception> T read(UUID walletId, Read<T, E> read) throws E {
+        return read(Set.of(walletId), read);
+    }
+
+    /**
+     * Выполняет чтение данных нескольких кошельков на реплике или в основной базе.
+     * Если закреплен хотя бы один из кошельков, чтение целиком идет в основную базу.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @param read      чтение
+     * @return результат чтения
+     */
+    public <T, E extends Exception> T read(Collection<UUID> walletIds, Read<T, E> read) throws E {
+        if (!enabled) {
+            return read.get();
+        }
+        boolean replica = isReplicaAvailable() && !TransactionSynchronizationManager.isActualTransactionActive()
+                && !anyPinned(walletIds);
+        metrics.recordRead(replica);
+        if (!replica) {
+            return read.get();
+        }
+        boolean previous = ReplicaRoutingDataSource.routeToReplica(true);
+        try {
+            return read.get();
+        } catch (DataAccessResourceFailureException e) {
+            // Реплика недоступна: до следующей успешной проверки чтения идут в основную базу.
+            lagMs = UNKNOWN_LAG;
+            throw e;
+        } finally {
+            ReplicaRoutingDataSource.routeToReplica(previous);
+        }
+    }
+
+    /**
+     * Закрепляет кошелек за основной базой после фиксации текущей транзакции.
+     * Вне транзакции закрепляет сразу.
+     *
+     * @param walletId идентификатор измененного кошелька
+     */
+    public void pinAfterCommit(UUID walletId) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pinned.put(walletId, Boolean.TRUE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pinned.put(walletId, Boolean.TRUE);
+            }
+        });
+    }
+
+    /**
+     * Измеряет отставание реплики. Если запрос не удался, чтения идут в основную базу
+     * до следующей успешной проверки.
+     */
+    @Scheduled(fixedDelayString = "${wallet.replica.lag-check-ms:1000}")
+    public void checkLag() {
+        if (!enabled) {
+            return;
+        }
+        boolean previous = ReplicaRoutingDataSource.routeToReplica(true);
+        try {
+            Long lag = jdbcTemplate.queryForObject(lagQuery, Long.class);
+            lagMs = lag == null ? UNKNOWN_LAG : Math.max(0, lag);
+        } catch (RuntimeException e) {
+            if (lagMs != UNKNOWN_LAG) {
+                log.warn("Replica lag check failed, reading from primary: {}", e.getMessage());
+            }
+            lagMs = UNKNOWN_LAG;
+        } finally {
+            ReplicaRoutingDataSource.routeToReplica(previous);
+        }
+    }
+
+    /**
+     * @return true, если реплика включена и её отставание по последней проверке допустимо
+     */
+    public boolean isReplicaAvailable() {
+        long lag = lagMs;
+        return enabled && lag != UNKNOWN_LAG && lag <= maxLagMs;
+    }
+
+    /**
+     * Отставание реплики по последней проверке, мс, или -1, если оно неизвестно.
+     */
+    public long getLagMs() {
+        return lagMs;
+    }
+
+    /**
+     * Количество закрепленных кошельков.
+     */
+    public long getPinnedWallets() {
+        return pinned == null ? 0 : pinned.estimatedSize();
+    }
+
+    private boolean anyPinned(Collection<UUID> walletIds) {
+        for (UUID walletId : walletIds) {
+            if (pinned.getIfPresent(walletId) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletReconcileProperties;
+import com.example.wallet.model.ReconciliationMismatch;
+import com.example.wallet.model.ReconciliationRun;
+import com.example.wallet.repository.ReconciliationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Сверка балансов кошельков с журналом операций.
+ * <p>
+ * Пространство идентификаторов кошельков делится на wallet.reconcile.ranges равных диапазонов.
+ * Задача fork-join делит отрезок номеров диапазонов пополам, пока не останется один диапазон,
+ * который проверяется одним агрегирующим запросом. Итоги диапазона и его расхождения
+ * сохраняются вместе, поэтому прерванная (остановкой, ошибкой или перезапуском) сверка
+ * при следующем запуске продолжается с непроверенных диапазонов. Сверка читает журнал целиком,
+ * а не снимки балансов, чтобы проверка не зависела от их правильности. Запросы всех потоков
+ * разделяют общий бюджет времени базы wallet.reconcile.db-millis-per-second (см. {@link DbTimeLimiter}).
+ * <p>
+ * Балансы, существовавшие до появления журнала, учтены в нем начальными записями с ключом
+ * идемпотентности opening-balance-&lt;id кошелька&gt; (миграция db.changelog-010-opening-balances.yaml),
+ * поэтому такие кошельки не считаются расхождениями.
+ */
+@Service
+public class ReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+
+    private final ReconciliationRepository reconciliationRepository;
+    private final WalletReconcileProperties properties;
+    private final DbTimeLimiter limiter;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile boolean stopped;
+
+    public ReconciliationService(ReconciliationRepository reconciliationRepository,
+                                 WalletReconcileProperties properties) {
+        if (properties.getRanges() < 1) {
+            throw new IllegalArgumentException("wallet.reconcile.ranges must be positive");
+        }
+        if (properties.getParallelism() < 1) {
+            throw new IllegalArgumentException("wallet.reconcile.parallelism must be positive");
+        }
+        this.reconciliationRepository = reconciliationRepository;
+        this.properties = properties;
+        this.limiter = new DbTimeLimiter(properties.getDbMillisPerSecond());
+        this.pool = new ForkJoinPool(properties.getParallelism(), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("wallet-reconcile-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Запускает сверку по расписанию, если она включена.
+     */
+    @Scheduled(cron = "${wallet.reconcile.cron:0 0 3 * * *}")
+    public void scheduledRun() {
+        if (properties.isEnabled()) {
+            start().ifPresent(run -> log.info("Reconciliation {} started, {} of {} ranges already checked",
+                    run.getId(), run.getCheckedRanges(), run.getRanges()));
+        }
+    }
+
+    /**
+     * Запускает сверку в фоне: продолжает незавершенную или начинает новую.
+     *
+     * @return запущенная сверка или пустой Optional, если сверка уже выполняется
+     */
+    public Optional<ReconciliationRun> start() {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            ReconciliationRun run = prepare();
+            pool.execute(new RunTask(run));
+            return Optional.of(run);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Выполняет сверку и ждет её завершения или остановки.
+     *
+     * @return итоги сверки или пустой Optional, если сверка уже выполняется
+     */
+    public Optional<ReconciliationRun> run() {
+        if (!running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        try {
+            pool.invoke(new RunTask(prepare()));
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return reconciliationRepository.findLatestRun();
+    }
+
+    /**
+     * Останавливает выполняемую сверку после текущих запросов; проверенные диапазоны сохраняются.
+     *
+     * @return true, если сверка выполнялась
+     */
+    public boolean stop() {
+        stopped = true;
+        return running.get();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Последняя сверка.
+     */
+    public Optional<ReconciliationRun> getLatestRun() {
+        return reconciliationRepository.findLatestRun();
+    }
+
+    /**
+     * Расхождения сверки, начиная с наибольших, не больше wallet.reconcile.report-limit.
+     */
+    public List<ReconciliationMismatch> getMismatches(UUID runId) {
+        return reconciliationRepository.findMismatches(runId, properties.getReportLimit());
+    }
+
+    private ReconciliationRun prepare() {
+        stopped = false;
+        return reconciliationRepository.findUnfinishedRun()
+                .orElseGet(() -> reconciliationRepository.createRun(properties.getRanges()));
+    }
+
+    private void checkRange(UUID runId, int ranges, int index) {
+        long step = Long.divideUnsigned(-1L, ranges) + 1;
+        UUID lower = new UUID(index * step, 0);
+        UUID upper = index + 1 < ranges ? new UUID((index + 1) * step, 0) : null;
+        long reserved;
+        try {
+            reserved = limiter.acquire();
+        } catch (InterruptedException e) {
+            stopped = true;
+            return;
+        }
+        try {
+            List<ReconciliationMismatch> mismatches = new ArrayList<>();
+            long startedAt = System.nanoTime();
+            long wallets;
+            long dbNanos;
+            try {
+                wallets = reconciliationRepository.checkRange(lower, upper, mismatches);
+            } finally {
+                dbNanos = System.nanoTime() - startedAt;
+                limiter.record(reserved, dbNanos);
+            }
+            reconciliationRepository.saveRange(runId, index, wallets, mismatches, dbNanos / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Reconciliation range {} of run {} failed: {}", index, runId, e.getMessage());
+        }
+    }
+
+    /**
+     * Корневая задача сверки: проверяет все диапазоны и отмечает сверку завершенной,
+     * если непроверенных не осталось.
+     */
+    private class RunTask extends RecursiveAction {
+
+        private final ReconciliationRun run;
+
+        RunTask(ReconciliationRun run) {
+            this.run = run;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                Set<Integer> checked = reconciliationRepository.findCheckedRanges(run.getId());
+                new RangeTask(run, checked, 0, run.getRanges()).invoke();
+                int done = reconciliationRepository.findCheckedRanges(run.getId()).size();
+                if (done == run.getRanges()) {
+                    reconciliationRepository.finishRun(run.getId());
+                    log.info("Reconciliation {} finished", run.getId());
+                } else {
+                    log.info("Reconciliation {} paused with {} of {} ranges checked", run.getId(), done,
+                            run.getRanges());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Reconciliation {} failed: {}", run.getId(), e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * Проверка диапазонов с номерами [from, to).
+     */
+    private class RangeTask extends RecursiveAction {
+
+        private final ReconciliationRun run;
+        private final Set<Integer> checked;
+        private final int from;
+        private final int to;
+
+        RangeTask(ReconciliationRun run, Set<Integer> checked, int from, int to) {
+            this.run = run;
+            this.checked = checked;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped) {
+                return;
+            }
+            if (to - from == 1) {
+                if (!checked.contains(from)) {
+                    checkRange(run.getId(), run.getRanges(), from);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(run, checked, from, middle), new RangeTask(run, checked, middle, to));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.wallet.service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Итоги прохода создания снимков балансов.
+ */
+public class SnapshotRun {
+
+    private final LocalDateTime before;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong snapshotted = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private volatile long durationMs = -1;
+
+    SnapshotRun(LocalDateTime before) {
+        this.before = before;
+    }
+
+    void batchDone(int wallets, int updated) {
+        scanned.addAndGet(wallets);
+        snapshotted.addAndGet(updated);
+    }
+
+    void batchFailed(int wallets) {
+        scanned.addAndGet(wallets);
+        failedBatches.incrementAndGet();
+    }
+
+    void finished() {
+        durationMs = System.currentTimeMillis() - startedAt;
+    }
+
+    /**
+     * Граница прохода: в снимки попадают записи журнала, созданные раньше неё.
+     */
+    public LocalDateTime getBefore() {
+        return before;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Количество просмотренных кошельков.
+     */
+    public long getScanned() {
+        return scanned.get();
+    }
+
+    /**
+     * Количество созданных или сдвинутых снимков.
+     */
+    public long getSnapshotted() {
+        return snapshotted.get();
+    }
+
+    /**
+     * Количество порций, транзакция которых не удалась; их кошельки обрабатываются следующим проходом.
+     */
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    /**
+     * Длительность прохода, мс, или -1, если проход еще идет.
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+}
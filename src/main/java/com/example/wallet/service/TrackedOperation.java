@@ -0,0 +1,90 @@
+package com.example.wallet.service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Принятая асинхронная операция, статус которой можно запросить по идентификатору.
+ */
+public class TrackedOperation {
+
+    /**
+     * Статус операции.
+     */
+    public enum Status {
+        PENDING, APPLIED, REJECTED
+    }
+
+    private final UUID operationId;
+    private final UUID walletId;
+    private final String operationType;
+    private final long amount;
+    private final CompletableFuture<Long> result;
+
+    public TrackedOperation(UUID operationId, UUID walletId, String operationType, long amount,
+                            CompletableFuture<Long> result) {
+        this.operationId = operationId;
+        this.walletId = walletId;
+        this.operationType = operationType;
+        this.amount = amount;
+        this.result = result;
+    }
+
+    public UUID getOperationId() {
+        return operationId;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public String getOperationType() {
+        return operationType;
+    }
+
+    /**
+     * Сумма операции в копейках.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Результат операции: баланс кошелька в копейках после её применения.
+     */
+    public CompletableFuture<Long> getResult() {
+        return result;
+    }
+
+    public Status getStatus() {
+        if (!result.isDone()) {
+            return Status.PENDING;
+        }
+        return result.isCompletedExceptionally() ? Status.REJECTED : Status.APPLIED;
+    }
+
+    /**
+     * Баланс кошелька в копейках после применения операции или null, если операция не применена.
+     */
+    public Long getBalance() {
+        return getStatus() == Status.APPLIED ? result.join() : null;
+    }
+
+    /**
+     * Причина отказа или null, если операция не отклонена.
+     */
+    public String getError() {
+        if (getStatus() != Status.REJECTED) {
+            return null;
+        }
+        try {
+            result.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+}
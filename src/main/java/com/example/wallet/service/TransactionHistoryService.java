@@ -0,0 +1,216 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletHistoryProperties;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.Transaction;
+import com.example.wallet.repository.TransactionFilter;
+import com.example.wallet.repository.TransactionHistoryRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Сервис истории операций кошелька.
+ * Страницы листаются курсором: непрозрачной строкой с ключом (created_at, id) последней
+ * операции страницы, поэтому стоимость запроса не растет с номером страницы, а вставка
+ * новых операций не сдвигает уже выданные страницы.
+ * <p>
+ * created_at назначается приложением при создании записи журнала, а не при фиксации транзакции.
+ * Запись пакета или долгой транзакции может стать видимой позже записей с большим ключом, поэтому
+ * курсор, уже прошедший её место, эту запись не вернет. Ключ задает порядок страниц одного обхода,
+ * но не подходит для инкрементального чтения «всё новее последней виденной операции»: такое чтение
+ * должно перекрываться с прочитанным на время самой долгой транзакции записи.
+ */
+@Service
+public class TransactionHistoryService {
+
+    private static final Set<String> TYPES = Set.of("DEPOSIT", "WITHDRAW", "TRANSFER_IN", "TRANSFER_OUT");
+    private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder CURSOR_DECODER = Base64.getUrlDecoder();
+
+    private final TransactionHistoryRepository historyRepository;
+    private final WalletRepository walletRepository;
+    private final ReadRouting readRouting;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public TransactionHistoryService(TransactionHistoryRepository historyRepository, WalletRepository walletRepository,
+                                     ReadRouting readRouting, PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper, WalletHistoryProperties properties) {
+        if (properties.getMaxPageSize() < 1 || properties.getDefaultPageSize() < 1
+                || properties.getDefaultPageSize() > properties.getMaxPageSize()) {
+            throw new IllegalArgumentException(
+                    "wallet.history.default-page-size must be between 1 and wallet.history.max-page-size");
+        }
+        this.historyRepository = historyRepository;
+        this.walletRepository = walletRepository;
+        this.readRouting = readRouting;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = properties.getDefaultPageSize();
+        this.maxPageSize = properties.getMaxPageSize();
+    }
+
+    /**
+     * Получает страницу истории кошелька от новых операций к старым.
+     * Страница читается с реплики, если кошелек не закреплен за основной базой (см. {@link ReadRouting}).
+     *
+     * @param walletId идентификатор кошелька
+     * @param from     начало периода включительно или null
+     * @param to       конец периода не включительно или null
+     * @param type     тип операции (DEPOSIT, WITHDRAW, TRANSFER_IN или TRANSFER_OUT) или null для всех типов
+     * @param cursor   курсор из предыдущей страницы или null для первой страницы
+     * @param limit    размер страницы или null для размера по умолчанию
+     * @return страница истории и курсор следующей страницы
+     * @throws IllegalArgumentException если параметры некорректны или кошелек не найден
+     */
+    public TransactionPage getHistory(UUID walletId, LocalDateTime from, LocalDateTime to, String type,
+                                      String cursor, Integer limit) {
+        TransactionFilter filter = filter(walletId, from, to, type);
+        int size = limit == null ? defaultPageSize : limit;
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Invalid limit");
+        }
+        LocalDateTime beforeCreatedAt = null;
+        UUID beforeId = null;
+        if (cursor != null) {
+            try {
+                String[] key = new String(CURSOR_DECODER.decode(cursor), StandardCharsets.US_ASCII).split(",", 2);
+                beforeCreatedAt = LocalDateTime.parse(key[0]);
+                beforeId = UUID.fromString(key[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        LocalDateTime createdAt = beforeCreatedAt;
+        UUID id = beforeId;
+        List<Transaction> transactions = readRouting.read(walletId, () -> {
+            List<Transaction> found = historyRepository.findPage(filter, createdAt, id, size + 1);
+            if (found.isEmpty() && cursor == null && !walletRepository.existsById(walletId)) {
+                throw new IllegalArgumentException("Wallet not found");
+            }
+            return found;
+        });
+        if (transactions.size() <= size) {
+            return new TransactionPage(transactions, null);
+        }
+        List<Transaction> page = transactions.subList(0, size);
+        return new TransactionPage(page, encodeCursor(page.get(size - 1)));
+    }
+
+    /**
+     * Выгружает историю кошелька в порядке от старых операций к новым строками NDJSON.
+     * Операции читаются из базы курсором и сразу пишутся в поток, поэтому потребление памяти
+     * не зависит от размера истории. На время выгрузки занимается одно соединение с базой:
+     * с реплики, если кошелек не закреплен за основной базой. Транзакция открывается после выбора базы,
+     * поэтому выгрузка выполняется через {@link TransactionTemplate}, а не {@code @Transactional}.
+     *
+     * @param walletId идентификатор кошелька
+     * @param from     начало периода включительно или null
+     * @param to       конец периода не включительно или null
+     * @param type     тип операции (DEPOSIT, WITHDRAW, TRANSFER_IN или TRANSFER_OUT) или null для всех типов
+     * @param out      поток для операций в формате NDJSON
+     * @return количество выгруженных операций
+     * @throws IllegalArgumentException если параметры некорректны или кошелек не найден;
+     *                                  в этом случае в поток ничего не записывается
+     */
+    public long export(UUID walletId, LocalDateTime from, LocalDateTime to, String type,
+                       OutputStream out) throws IOException {
+        TransactionFilter filter = filter(walletId, from, to, type);
+        return readRouting.read(walletId, () -> {
+            try {
+                return readOnlyTransaction.execute(status -> exportInTransaction(filter, out));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private long exportInTransaction(TransactionFilter filter, OutputStream out) {
+        if (!walletRepository.existsById(filter.getWalletId())) {
+            throw new IllegalArgumentException("Wallet not found");
+        }
+        long[] count = {0};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            historyRepository.forEach(filter, transaction -> {
+                try {
+                    write(transaction, generator);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count[0];
+    }
+
+    private static void write(Transaction transaction, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", transaction.getId().toString());
+        generator.writeStringField("walletId", transaction.getWalletId().toString());
+        generator.writeStringField("type", transaction.getType());
+        generator.writeFieldName("amount");
+        generator.writeNumber(Money.format(transaction.getAmount()));
+        if (transaction.getBalanceAfter() != null) {
+            generator.writeFieldName("balanceAfter");
+            generator.writeNumber(Money.format(transaction.getBalanceAfter()));
+        }
+        if (transaction.getIdempotencyKey() != null) {
+            generator.writeStringField("idempotencyKey", transaction.getIdempotencyKey());
+        }
+        if (transaction.getCounterpartyId() != null) {
+            generator.writeStringField("counterpartyId", transaction.getCounterpartyId().toString());
+        }
+        generator.writeStringField("createdAt", formatTime(transaction.getCreateAt()));
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Форматирует время операции так же, как оно выводится в истории: ISO-8601 без часового пояса.
+     */
+    public static String formatTime(LocalDateTime time) {
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(time);
+    }
+
+    private static TransactionFilter filter(UUID walletId, LocalDateTime from, LocalDateTime to, String type) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Invalid time range");
+        }
+        String normalized = null;
+        if (type != null) {
+            normalized = type.toUpperCase(Locale.ROOT);
+            if (!TYPES.contains(normalized)) {
+                throw new IllegalArgumentException("Invalid operation type");
+            }
+        }
+        return new TransactionFilter(walletId, from, to, normalized);
+    }
+
+    private static String encodeCursor(Transaction last) {
+        String key = formatTime(last.getCreateAt()) + "," + last.getId();
+        return CURSOR_ENCODER.encodeToString(key.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.wallet.service;
+
+import com.example.wallet.model.Transaction;
+
+import java.util.List;
+
+/**
+ * Страница истории операций кошелька.
+ */
+public class TransactionPage {
+
+    private final List<Transaction> transactions;
+    private final String nextCursor;
+
+    public TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Операции страницы от новых к старым.
+     */
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Курсор следующей страницы или null, если страница последняя.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
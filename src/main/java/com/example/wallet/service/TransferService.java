@@ -0,0 +1,173 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletBulkProperties;
+import com.example.wallet.model.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Сервис переводов между кошельками.
+ * Пакет переводов читается из JSON-массива или потока NDJSON инкрементально и применяется
+ * порциями по wallet.bulk.chunk-size переводов, по одной транзакции на порцию: кошельки порции
+ * блокируются один раз, сколько бы переводов их ни затрагивало. Результат каждого перевода
+ * сразу пишется строкой NDJSON (см. {@link NdjsonChunkProcessor}).
+ */
+@Service
+public class TransferService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferService.class);
+    private static final String TYPE = "TRANSFER";
+
+    private final WalletService walletService;
+    private final WalletMetrics metrics;
+    private final NdjsonChunkProcessor<WalletTransfer> processor;
+
+    public TransferService(WalletService walletService, WalletMetrics metrics, ObjectMapper objectMapper,
+                           WalletBulkProperties properties) {
+        if (properties.getChunkSize() < 1) {
+            throw new IllegalArgumentException("wallet.bulk.chunk-size must be positive");
+        }
+        this.walletService = walletService;
+        this.metrics = metrics;
+        this.processor = new NdjsonChunkProcessor<>(objectMapper, properties.getChunkSize(), this::readTransfer,
+                this::apply, WalletTransfer::getFailure, WalletTransfer::getResultingBalance,
+                TransferService::writeWallets);
+    }
+
+    /**
+     * Выполняет один перевод.
+     *
+     * @return баланс кошелька-отправителя после перевода в копейках
+     * @throws IllegalArgumentException если перевод отклонен; причина — в сообщении
+     * @see WalletService#transfer
+     */
+    public long transfer(UUID fromWalletId, UUID toWalletId, long amount, String idempotencyKey) {
+        try {
+            long balance = walletService.transfer(fromWalletId, toWalletId, amount, idempotencyKey);
+            metrics.recordOutcome(TYPE, null);
+            return balance;
+        } catch (RuntimeException e) {
+            metrics.recordOutcome(TYPE, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Обрабатывает поток переводов.
+     * Каждый перевод — объект с полями fromWalletId, toWalletId, amount
+     * и необязательным idempotencyKey.
+     * На каждый перевод в выходной поток пишется строка с его номером, статусом
+     * APPLIED и балансом отправителя либо статусом REJECTED и причиной отказа.
+     * При синтаксической ошибке во входных данных пишется строка со статусом ERROR
+     * и обработка прекращается; уже примененные переводы не откатываются.
+     *
+     * @param in  JSON-массив переводов или переводы в формате NDJSON
+     * @param out поток для результатов в формате NDJSON
+     * @return количество прочитанных переводов
+     */
+    public long process(InputStream in, OutputStream out) throws IOException {
+        return processor.process(in, out);
+    }
+
+    /**
+     * Читает один перевод, начиная с текущего токена.
+     * Некорректный перевод возвращается уже отклоненным.
+     */
+    private WalletTransfer readTransfer(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return rejected(null, null, "Invalid transfer");
+        }
+        String fromWalletId = null;
+        String toWalletId = null;
+        String amount = null;
+        String idempotencyKey = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "fromWalletId" -> fromWalletId = parser.getValueAsString();
+                case "toWalletId" -> toWalletId = parser.getValueAsString();
+                case "amount" -> amount = value.isNumeric() || value == JsonToken.VALUE_STRING
+                        ? parser.getText() : null;
+                case "idempotencyKey" -> idempotencyKey = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+
+        UUID from;
+        UUID to;
+        try {
+            from = UUID.fromString(fromWalletId);
+        } catch (RuntimeException e) {
+            return rejected(null, null, "Invalid fromWalletId");
+        }
+        try {
+            to = UUID.fromString(toWalletId);
+        } catch (RuntimeException e) {
+            return rejected(from, null, "Invalid toWalletId");
+        }
+        if (from.equals(to)) {
+            return rejected(from, to, "Invalid transfer");
+        }
+        long cents;
+        try {
+            cents = Money.parseAmount(amount);
+        } catch (IllegalArgumentException e) {
+            return rejected(from, to, "Invalid amount");
+        }
+        if (idempotencyKey != null && !WalletOperation.isValidIdempotencyKey(idempotencyKey)) {
+            return rejected(from, to, "Invalid idempotencyKey");
+        }
+        return new WalletTransfer(from, to, cents, idempotencyKey);
+    }
+
+    private static WalletTransfer rejected(UUID fromWalletId, UUID toWalletId, String reason) {
+        WalletTransfer transfer = new WalletTransfer(fromWalletId, toWalletId, 0, null);
+        transfer.rejected(new IllegalArgumentException(reason));
+        return transfer;
+    }
+
+    /**
+     * Применяет корректные переводы порции одной транзакцией.
+     * Если транзакция порции не удалась, переводы применяются по одному.
+     */
+    private void apply(List<WalletTransfer> valid) {
+        try {
+            walletService.applyTransfers(valid);
+        } catch (RuntimeException e) {
+            log.warn("Transfer chunk of {} transfers failed, applying one by one: {}", valid.size(), e.getMessage());
+            for (WalletTransfer transfer : valid) {
+                try {
+                    transfer.applied(walletService.transfer(transfer.getFromWalletId(), transfer.getToWalletId(),
+                            transfer.getAmount(), transfer.getIdempotencyKey()));
+                } catch (RuntimeException failure) {
+                    transfer.rejected(failure);
+                }
+            }
+        }
+        for (WalletTransfer transfer : valid) {
+            metrics.recordOutcome(TYPE, transfer.getFailure());
+        }
+    }
+
+    private static void writeWallets(WalletTransfer transfer, JsonGenerator generator) throws IOException {
+        if (transfer.getFromWalletId() != null) {
+            generator.writeStringField("fromWalletId", transfer.getFromWalletId().toString());
+        }
+        if (transfer.getToWalletId() != null) {
+            generator.writeStringField("toWalletId", transfer.getToWalletId().toString());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Локальный ограниченный кэш балансов кошельков.
+ * Записи вытесняются по размеру и по времени; после фиксации изменения баланса
+ * запись обновляется, поэтому чтение не видит баланс старше последнего локального коммита.
+ * <p>
+ * Изменения одного кошелька могут фиксироваться разными потоками: полосами исполнителя, пакетной
+ * обработкой и переводами, и их обновления кэша после фиксации выполняются в произвольном порядке.
+ * Поэтому каждое обновление получает номер, пока строка кошелька заблокирована изменившей её транзакцией,
+ * и запись заменяется только обновлением с большим номером.
+ * Счетчики попаданий, промахов и вытеснений публикуются как метрики cache.* с тегом cache=walletBalances.
+ */
+@Component
+public class WalletBalanceCache {
+
+    private static final long LOADED = Long.MIN_VALUE;
+
+    /**
+     * Баланс в кэше и номер обновления, записавшего его; у загруженного из базы баланса номера нет.
+     */
+    private static final class Entry {
+
+        final long balance;
+        final long version;
+
+        Entry(long balance, long version) {
+            this.balance = balance;
+            this.version = version;
+        }
+    }
+
+    private final Cache<UUID, Entry> cache;
+    private final AtomicLong versions = new AtomicLong();
+
+    public WalletBalanceCache(WalletCacheProperties properties, MeterRegistry meterRegistry) {
+        if (properties.isEnabled()) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(properties.getMaximumSize())
+                    .expireAfterWrite(Duration.ofMillis(properties.getExpireAfterWriteMs()))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "walletBalances");
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Возвращает баланс из кэша, при промахе загружает его и сохраняет в кэше.
+     *
+     * @param walletId идентификатор кошелька
+     * @param loader   загрузка баланса из базы данных
+     * @return баланс кошелька в копейках
+     */
+    public long get(UUID walletId, Function<UUID, Long> loader) {
+        if (cache == null) {
+            return loader.apply(walletId);
+        }
+        return cache.get(walletId, id -> new Entry(loader.apply(id), LOADED)).balance;
+    }
+
+    /**
+     * Возвращает баланс из кэша без загрузки.
+     *
+     * @param walletId идентификатор кошелька
+     * @return баланс в копейках или null, если кошелька нет в кэше или кэш выключен
+     */
+    public Long getIfPresent(UUID walletId) {
+        if (cache == null) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(walletId);
+        return entry != null ? entry.balance : null;
+    }
+
+    /**
+     * Обновляет баланс в кэше после фиксации текущей транзакции.
+     * Вызывается, пока строка кошелька заблокирована транзакцией: номер обновления берется сразу,
+     * и обновление, зафиксированное раньше, не заменит в кэше более позднее.
+     * Вне транзакции обновляет сразу.
+     *
+     * @param walletId идентификатор кошелька
+     * @param balance  новый баланс в копейках
+     */
+    public void putAfterCommit(UUID walletId, long balance) {
+        if (cache == null) {
+            return;
+        }
+        long version = versions.incrementAndGet();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(walletId, balance, version);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(walletId, balance, version);
+            }
+        });
+    }
+
+    private void put(UUID walletId, long balance, long version) {
+        cache.asMap().compute(walletId,
+                (id, current) -> current == null || current.version < version ? new Entry(balance, version) : current);
+    }
+
+    /**
+     * Удаляет баланс из кэша после фиксации текущей транзакции.
+     * Используется для горячих кошельков: параллельные изменения разных ячеек фиксируются
+     * в произвольном порядке, и баланс, вычисленный одной транзакцией, может не учитывать другую.
+     *
+     * @param walletId идентификатор кошелька
+     */
+    public void evictAfterCommit(UUID walletId) {
+        if (cache == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(walletId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.invalidate(walletId);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+}
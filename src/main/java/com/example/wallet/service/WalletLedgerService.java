@@ -0,0 +1,93 @@
+package com.example.wallet.service;
+
+import com.example.wallet.model.WalletSnapshot;
+import com.example.wallet.repository.LedgerDelta;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.repository.WalletSnapshotRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Сервис балансов по журналу операций.
+ * Баланс кошелька по журналу восстанавливается от последнего снимка: читаются только
+ * записи журнала после снимка, поэтому время восстановления не растет с длиной истории.
+ * Снимки сдвигаются вперед порциями кошельков (см. {@link WalletSnapshotJob}).
+ */
+@Service
+public class WalletLedgerService {
+
+    private final WalletSnapshotRepository snapshotRepository;
+    private final WalletRepository walletRepository;
+
+    public WalletLedgerService(WalletSnapshotRepository snapshotRepository, WalletRepository walletRepository) {
+        this.snapshotRepository = snapshotRepository;
+        this.walletRepository = walletRepository;
+    }
+
+    /**
+     * Восстанавливает баланс кошелька по журналу от последнего снимка.
+     * Баланс кошелька и журнал читаются из одного снимка данных базы,
+     * поэтому параллельные операции не дают ложного расхождения.
+     *
+     * @param walletId идентификатор кошелька
+     * @return баланс по журналу и текущий баланс кошелька
+     * @throws IllegalArgumentException если кошелек не найден
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public LedgerBalance rebuild(UUID walletId) {
+        long walletBalance = walletRepository.findTotalBalance(walletId)
+                .orElseThrow(() -> new IllegalArgumentException("Wallet not found"));
+        WalletSnapshot snapshot = snapshotRepository.findByWalletId(walletId).orElse(null);
+        LedgerDelta replayed = snapshotRepository.replay(walletId, snapshot);
+        long base = snapshot == null ? 0 : snapshot.getBalance();
+        return new LedgerBalance(walletId, walletBalance, base + replayed.getAmount(), replayed.getTransactions(),
+                snapshot);
+    }
+
+    /**
+     * Сдвигает снимки порции кошельков до записей журнала, созданных раньше before.
+     * Журнал каждого кошелька читается только после его текущего снимка; снимки кошельков
+     * без новых записей не меняются. Суммы и последние учтенные записи всех кошельков порции
+     * выбираются одним запросом (см. {@link WalletSnapshotRepository#findDeltas}). Таблица wallet
+     * и строки кошельков не блокируются, поэтому создание снимков не задерживает операции над балансами.
+     * <p>
+     * Граница before задается по времени создания записи, которое назначается приложением до фиксации.
+     * Снимок верен, только если к моменту прохода зафиксированы все записи, созданные раньше before:
+     * before должна отставать от текущего времени больше, чем длится самая долгая транзакция записи,
+     * плюс расхождение часов экземпляров (wallet.snapshot.settle-ms). Запись, зафиксированная позже,
+     * окажется позади снимка и в баланс по журналу не попадет.
+     *
+     * @param walletIds идентификаторы кошельков порции
+     * @param before    граница по времени создания записи, не включительно
+     * @return количество созданных или сдвинутых снимков
+     */
+    @Transactional
+    public int snapshot(List<UUID> walletIds, LocalDateTime before) {
+        if (walletIds.isEmpty()) {
+            return 0;
+        }
+        Map<UUID, WalletSnapshot> snapshots = snapshotRepository.findByWalletIds(walletIds);
+        int updated = 0;
+        for (LedgerDelta delta : snapshotRepository.findDeltas(walletIds, snapshots, before)) {
+            UUID walletId = delta.getWalletId();
+            WalletSnapshot previous = snapshots.get(walletId);
+            WalletSnapshot next = new WalletSnapshot(walletId,
+                    (previous == null ? 0 : previous.getBalance()) + delta.getAmount(),
+                    (previous == null ? 0 : previous.getTransactions()) + delta.getTransactions(),
+                    delta.getLastTransactionId(), delta.getLastCreatedAt());
+            if (previous == null) {
+                snapshotRepository.insert(next);
+                updated++;
+            } else if (snapshotRepository.update(next)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+}
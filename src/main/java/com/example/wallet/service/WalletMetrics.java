@@ -0,0 +1,385 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.ReplicaDataSourceConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики горячего пути операций над кошельками.
+ * <ul>
+ *     <li>wallet.stage — длительность этапов performOperation, getBalance, getBalances, applyBatch и applyTransfers
+ *     (теги operation и stage). Этап commit включает сброс отложенной вставки журнала
+ *     и фиксацию транзакции;</li>
+ *     <li>wallet.executor.queue.wait — ожидание операции в очереди полосы до начала выполнения;</li>
+ *     <li>wallet.executor.execute — выполнение пакета полосой, включая фиксацию транзакции (тег mode);</li>
+ *     <li>wallet.executor.batch.size — размер пакетов полос;</li>
+ *     <li>wallet.executor.queue.depth — глубина очереди каждой полосы (тег lane);</li>
+ *     <li>wallet.executor.rejected — операции, не принятые в очередь (тег reason; limit — отказ
+ *     адаптивного ограничения допуска);</li>
+ *     <li>wallet.admission.limit и wallet.admission.in.flight — адаптивное ограничение числа операций в работе
+ *     и их текущее число;</li>
+ *     <li>wallet.operations — исходы операций по типу и причине отказа (теги type и outcome;
+ *     переводы учитываются с типом TRANSFER);</li>
+ *     <li>wallet.slots.consolidations — переносы балансов ячеек горячего кошелька на строку кошелька;</li>
+ *     <li>wallet.journal.flush — сброс журнала принятых операций на диск;</li>
+ *     <li>wallet.journal.flush.records — записи журнала, подтвержденные одним сбросом;</li>
+ *     <li>wallet.replica.reads — чтения балансов и истории по базе, в которую они направлены (тег target);</li>
+ *     <li>wallet.replica.lag и wallet.replica.pinned — отставание реплики по последней проверке
+ *     и число кошельков, закрепленных за основной базой;</li>
+ *     <li>wallet.stream.subscribers, wallet.stream.coalesced и wallet.stream.dropped — подписки на поток балансов,
+ *     балансы, замененные более новыми до отправки медленному клиенту, и подписки, закрытые из-за зависшей
+ *     отправки.</li>
+ * </ul>
+ * Все счетчики и таймеры регистрируются заранее, поэтому запись измерения не обращается к реестру.
+ * Таймеры публикуют гистограмму для расчета перцентилей на стороне
+ * системы мониторинга.
+ */
+@Component
+public class WalletMetrics {
+
+    /**
+     * Измеряемый этап обработки.
+     */
+    public enum Stage {
+        PERFORM_TOTAL("performOperation", "total"),
+        IDEMPOTENCY_LOOKUP("performOperation", "idempotency_lookup"),
+        BALANCE_UPDATE("performOperation", "balance_update"),
+        COMMIT("performOperation", "commit"),
+        BALANCE_READ("getBalance", "total"),
+        BALANCE_LOAD("getBalance", "load"),
+        BALANCES_LOAD("getBalances", "load"),
+        BATCH_TOTAL("applyBatch", "total"),
+        BATCH_IDEMPOTENCY_LOOKUP("applyBatch", "idempotency_lookup"),
+        BATCH_LOCK("applyBatch", "lock"),
+        BATCH_COMMIT("applyBatch", "commit"),
+        TRANSFER_TOTAL("applyTransfers", "total"),
+        TRANSFER_IDEMPOTENCY_LOOKUP("applyTransfers", "idempotency_lookup"),
+        TRANSFER_LOCK("applyTransfers", "lock"),
+        TRANSFER_COMMIT("applyTransfers", "commit");
+
+        private final String operation;
+        private final String stage;
+
+        Stage(String operation, String stage) {
+            this.operation = operation;
+            this.stage = stage;
+        }
+    }
+
+    private static final String[] TYPES = {"DEPOSIT", "WITHDRAW", "TRANSFER", "OTHER"};
+    private static final String[] OUTCOMES = {"applied", "not_enough_balance", "wallet_not_found",
+            "balance_overflow", "idempotency_conflict", "invalid_operation_type", "error"};
+    private static final int ERROR = OUTCOMES.length - 1;
+
+    private final MeterRegistry registry;
+    private final Timer[] stages;
+    private final Timer queueWait;
+    private final Timer executeBatch;
+    private final Timer executeSingle;
+    private final DistributionSummary batchSize;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedShutdown;
+    private final Counter[][] outcomes;
+    private final Counter consolidations;
+    private final Counter rejectedJournal;
+    private final Counter rejectedLimit;
+    private final Timer journalFlush;
+    private final DistributionSummary journalFlushRecords;
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+    private final Counter streamCoalesced;
+    private final Counter streamDropped;
+
+    public WalletMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Stage[] values = Stage.values();
+        this.stages = new Timer[values.length];
+        for (Stage stage : values) {
+            stages[stage.ordinal()] = Timer.builder("wallet.stage")
+                    .description("Duration of a wallet service stage")
+                    .tag("operation", stage.operation)
+                    .tag("stage", stage.stage)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+        this.queueWait = Timer.builder("wallet.executor.queue.wait")
+                .description("Time an operation waits in its lane queue")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.executeBatch = executeTimer("batch");
+        this.executeSingle = executeTimer("single");
+        this.batchSize = DistributionSummary.builder("wallet.executor.batch.size")
+                .description("Number of operations applied by one lane batch")
+                .register(registry);
+        this.rejectedQueueFull = rejectedCounter("queue_full");
+        this.rejectedShutdown = rejectedCounter("shutdown");
+        this.rejectedJournal = rejectedCounter("journal");
+        this.rejectedLimit = rejectedCounter("limit");
+        this.journalFlush = Timer.builder("wallet.journal.flush")
+                .description("Time to force accepted-operation journal records to disk")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.journalFlushRecords = DistributionSummary.builder("wallet.journal.flush.records")
+                .description("Journal records made durable by one flush")
+                .register(registry);
+        this.replicaReads = readCounter("replica");
+        this.primaryReads = readCounter("primary");
+        this.streamCoalesced = Counter.builder("wallet.stream.coalesced")
+                .description("Balance events replaced by a newer balance before reaching a slow subscriber")
+                .register(registry);
+        this.streamDropped = Counter.builder("wallet.stream.dropped")
+                .description("Balance subscriptions closed because sending to the client stalled")
+                .register(registry);
+        this.consolidations = Counter.builder("wallet.slots.consolidations")
+                .description("Hot wallet slot balances moved to the wallet row to cover a withdrawal")
+                .register(registry);
+        this.outcomes = new Counter[TYPES.length][OUTCOMES.length];
+        for (int type = 0; type < TYPES.length; type++) {
+            for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+                outcomes[type][outcome] = Counter.builder("wallet.operations")
+                        .description("Completed wallet operations by type and outcome")
+                        .tag("type", TYPES[type])
+                        .tag("outcome", OUTCOMES[outcome])
+                        .register(registry);
+            }
+        }
+    }
+
+    private Timer executeTimer(String mode) {
+        return Timer.builder("wallet.executor.execute")
+                .description("Time a lane spends applying and committing operations")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter readCounter(String target) {
+        return Counter.builder("wallet.replica.reads")
+                .description("Balance and history reads by the database they were routed to")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    private Counter rejectedCounter(String reason) {
+        return Counter.builder("wallet.executor.rejected")
+                .description("Operations not accepted by the executor")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /**
+     * Записывает длительность этапа, начавшегося в момент started (System.nanoTime()).
+     */
+    public void record(Stage stage, long started) {
+        stages[stage.ordinal()].record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Записывает длительность фиксации текущей транзакции: от начала фиксации до её завершения.
+     * Вне транзакции ничего не делает.
+     */
+    void recordCommit(Stage stage) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long started;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                started = System.nanoTime();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (started != 0 && status == STATUS_COMMITTED) {
+                    record(stage, started);
+                }
+            }
+        });
+    }
+
+    /**
+     * Записывает время ожидания операций пакета в очереди и размер пакета.
+     */
+    void recordDequeued(Collection<WalletOperation> batch, long now) {
+        for (WalletOperation operation : batch) {
+            queueWait.record(now - operation.getEnqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(batch.size());
+    }
+
+    /**
+     * Записывает длительность выполнения пакета полосой.
+     *
+     * @param batched true, если пакет применялся одной транзакцией
+     */
+    void recordExecute(boolean batched, long started) {
+        (batched ? executeBatch : executeSingle).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    void recordConsolidation() {
+        consolidations.increment();
+    }
+
+    void recordRejected(boolean shutdown) {
+        (shutdown ? rejectedShutdown : rejectedQueueFull).increment();
+    }
+
+    void recordRejectedByJournal() {
+        rejectedJournal.increment();
+    }
+
+    void recordRejectedByLimit() {
+        rejectedLimit.increment();
+    }
+
+    /**
+     * Количество пакетов, выполненных полосами с момента запуска.
+     */
+    long getExecutedBatches() {
+        return executeBatch.count() + executeSingle.count();
+    }
+
+    /**
+     * Суммарное время выполнения пакетов полосами с момента запуска, нс.
+     */
+    double getExecuteNanos() {
+        return executeBatch.totalTime(TimeUnit.NANOSECONDS) + executeSingle.totalTime(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Количество потоков, ожидающих соединения с основной базой: в пуле Hikari и, в режиме виртуальных
+     * потоков, в очереди семафора перед пулом. Ожидающие соединения с репликой не учитываются.
+     * Если метрики пула не зарегистрированы, возвращает 0.
+     */
+    double getConnectionWaiters() {
+        double waiters = 0;
+        for (Gauge gauge : registry.find("hikaricp.connections.pending").gauges()) {
+            waiters += primaryPool(gauge) ? gauge.value() : 0;
+        }
+        for (Gauge gauge : registry.find("wallet.datasource.permits.waiting").gauges()) {
+            waiters += primaryPool(gauge) ? gauge.value() : 0;
+        }
+        return waiters;
+    }
+
+    private static boolean primaryPool(Gauge gauge) {
+        return !ReplicaDataSourceConfig.REPLICA_POOL_NAME.equals(gauge.getId().getTag("pool"));
+    }
+
+    void recordRead(boolean replica) {
+        (replica ? replicaReads : primaryReads).increment();
+    }
+
+    void recordStreamCoalesced() {
+        streamCoalesced.increment();
+    }
+
+    void recordStreamDropped() {
+        streamDropped.increment();
+    }
+
+    /**
+     * Регистрирует метрику числа подписок на поток балансов.
+     */
+    void registerStream(Collection<?> subscriptions) {
+        Gauge.builder("wallet.stream.subscribers", subscriptions, Collection::size)
+                .description("Open balance stream subscriptions")
+                .register(registry);
+    }
+
+    /**
+     * Регистрирует метрики чтения с реплики.
+     */
+    void registerReplica(ReadRouting routing) {
+        Gauge.builder("wallet.replica.lag", routing, ReadRouting::getLagMs)
+                .description("Replica lag measured by the last check, -1 if unknown")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("wallet.replica.pinned", routing, ReadRouting::getPinnedWallets)
+                .description("Wallets pinned to the primary after a local write")
+                .register(registry);
+    }
+
+    /**
+     * Регистрирует метрики ограничения допуска операций.
+     */
+    void registerAdmission(OperationAdmission admission) {
+        Gauge.builder("wallet.admission.limit", admission, OperationAdmission::getLimit)
+                .description("Adaptive limit of accepted operations in progress")
+                .register(registry);
+        Gauge.builder("wallet.admission.in.flight", admission, OperationAdmission::getInFlight)
+                .description("Accepted operations in progress")
+                .register(registry);
+    }
+
+    /**
+     * Записывает сброс журнала на диск, начавшийся в момент started.
+     *
+     * @param records количество записей, подтвержденных сбросом
+     */
+    void recordJournalFlush(long started, long records) {
+        journalFlush.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        journalFlushRecords.record(records);
+    }
+
+    /**
+     * Регистрирует метрику глубины очереди полосы.
+     */
+    void registerLaneDepth(int lane, Collection<?> queue) {
+        Gauge.builder("wallet.executor.queue.depth", queue, Collection::size)
+                .description("Operations waiting in a lane queue")
+                .tag("lane", Integer.toString(lane))
+                .register(registry);
+    }
+
+    /**
+     * Учитывает исход завершенной операции.
+     *
+     * @param operationType тип операции
+     * @param failure       причина отказа или null, если операция применена
+     */
+    public void recordOutcome(String operationType, RuntimeException failure) {
+        outcomes[typeOf(operationType)][outcomeOf(failure)].increment();
+    }
+
+    private static int typeOf(String operationType) {
+        if ("DEPOSIT".equalsIgnoreCase(operationType)) {
+            return 0;
+        }
+        if ("WITHDRAW".equalsIgnoreCase(operationType)) {
+            return 1;
+        }
+        if ("TRANSFER".equals(operationType)) {
+            return 2;
+        }
+        return 3;
+    }
+
+    private static int outcomeOf(RuntimeException failure) {
+        if (failure == null) {
+            return 0;
+        }
+        if (!(failure instanceof IllegalArgumentException) || failure.getMessage() == null) {
+            return ERROR;
+        }
+        return switch (failure.getMessage()) {
+            case "Not enough balance" -> 1;
+            case "Wallet not found" -> 2;
+            case "Balance overflow" -> 3;
+            case "Idempotency key reused with different parameters" -> 4;
+            case "Invalid operation type", "Invalid transfer" -> 5;
+            default -> ERROR;
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.wallet.service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Операция над кошельком, ожидающая выполнения в полосе исполнителя.
+ * При пакетной обработке сервис сначала записывает исход операции,
+ * а полоса завершает результат только после фиксации транзакции пакета.
+ */
+public class WalletOperation {
+
+    /**
+     * Максимальная длина ключа идемпотентности.
+     */
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+    private final UUID walletId;
+    private final String operationType;
+    private final long amount;
+    private final String idempotencyKey;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+    private final long enqueuedAt = System.nanoTime();
+
+    private UUID operationId;
+    private boolean replayed;
+    private long journalSequence;
+    private long resultingBalance;
+    private RuntimeException failure;
+
+    public WalletOperation(UUID walletId, String operationType, long amount) {
+        this(walletId, operationType, amount, null);
+    }
+
+    public WalletOperation(UUID walletId, String operationType, long amount, String idempotencyKey) {
+        this.walletId = walletId;
+        this.operationType = operationType;
+        this.amount = amount;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * Проверяет ключ идемпотентности, переданный клиентом.
+     *
+     * @return true, если ключ непустой и не длиннее {@link #MAX_IDEMPOTENCY_KEY_LENGTH}
+     */
+    public static boolean isValidIdempotencyKey(String idempotencyKey) {
+        return idempotencyKey != null && !idempotencyKey.isBlank()
+                && idempotencyKey.length() <= MAX_IDEMPOTENCY_KEY_LENGTH;
+    }
+
+    public UUID getWalletId() {
+        return walletId;
+    }
+
+    public String getOperationType() {
+        return operationType;
+    }
+
+    /**
+     * Сумма операции в копейках.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Ключ идемпотентности операции или null, если клиент его не передал.
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Идентификатор операции, принятой через журнал принятых операций, или null.
+     * Записывается в журнал базы вместе с операцией.
+     */
+    UUID getOperationId() {
+        return operationId;
+    }
+
+    void setOperationId(UUID operationId) {
+        this.operationId = operationId;
+    }
+
+    /**
+     * Признак операции, повторяемой из журнала принятых операций после аварийной остановки.
+     * Только такая операция перед применением ищется в журнале базы по идентификатору:
+     * она могла быть зафиксирована до остановки.
+     */
+    boolean isReplayed() {
+        return replayed;
+    }
+
+    void setReplayed(boolean replayed) {
+        this.replayed = replayed;
+    }
+
+    /**
+     * Номер записи операции в журнале принятых операций или 0, если операция в журнал не записана.
+     */
+    long getJournalSequence() {
+        return journalSequence;
+    }
+
+    void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
+    /**
+     * Момент создания операции по System.nanoTime(); от него отсчитывается ожидание в очереди.
+     */
+    long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+
+    /**
+     * Результат выполнения операции: баланс кошелька после операции в копейках.
+     * Завершается с исключением, если операция отклонена.
+     */
+    public CompletableFuture<Long> getResult() {
+        return result;
+    }
+
+    /**
+     * Записывает успешный исход операции.
+     *
+     * @param balance баланс кошелька после операции в копейках
+     */
+    void applied(long balance) {
+        this.resultingBalance = balance;
+        this.failure = null;
+    }
+
+    /**
+     * Записывает отказ в выполнении операции.
+     *
+     * @param failure причина отказа
+     */
+    void rejected(RuntimeException failure) {
+        this.failure = failure;
+    }
+
+    long getResultingBalance() {
+        return resultingBalance;
+    }
+
+    RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Завершает результат операции записанным исходом.
+     */
+    void complete() {
+        if (failure != null) {
+            result.completeExceptionally(failure);
+        } else {
+            result.complete(resultingBalance);
+        }
+    }
+}
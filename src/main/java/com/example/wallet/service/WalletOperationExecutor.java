@@ -0,0 +1,280 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletExecutorProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Исполнитель операций над кошельками с разбиением на полосы.
+ * Операции распределяются по полосам по хэшу идентификатора кошелька,
+ * каждая полоса обслуживается одним потоком-писателем. Благодаря этому
+ * операции одного кошелька выполняются строго по порядку, а операции
+ * разных кошельков — параллельно.
+ * <p>
+ * Полоса собирает операции в пакет в течение короткого окна или до достижения
+ * максимального размера пакета и фиксирует весь пакет одной транзакцией,
+ * поэтому количество коммитов почти не растет с нагрузкой.
+ * <p>
+ * Операции горячего кошелька тоже выполняет одна полоса: пакет блокирует строку и ячейки кошелька
+ * и зачисляет сумму пополнений пакета в одну ячейку (см. {@link WalletService#applyBatch}).
+ * <p>
+ * Операции, принятые через {@link #accept}, до постановки в очередь записываются в {@link OperationJournal}
+ * и отмечаются в нем выполненными после фиксации, поэтому переживают аварийную остановку приложения.
+ */
+@Component
+public class WalletOperationExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletOperationExecutor.class);
+
+    private final WalletService walletService;
+    private final WalletMetrics metrics;
+    private final OperationJournal journal;
+    private final Lane[] lanes;
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final long batchWindowNanos;
+    private final long shutdownTimeoutMs;
+
+    private volatile boolean running = true;
+
+    public WalletOperationExecutor(WalletService walletService, WalletMetrics metrics, OperationJournal journal,
+                                   WalletExecutorProperties properties,
+                                   @Qualifier("walletLaneThreadFactory") ThreadFactory threadFactory) {
+        if (properties.getLanes() < 1) {
+            throw new IllegalArgumentException("wallet.executor.lanes must be positive");
+        }
+        if (properties.getQueueCapacity() < 1) {
+            throw new IllegalArgumentException("wallet.executor.queue-capacity must be positive");
+        }
+        if (properties.getMaxBatchSize() < 1) {
+            throw new IllegalArgumentException("wallet.executor.max-batch-size must be positive");
+        }
+        this.walletService = walletService;
+        this.metrics = metrics;
+        this.journal = journal;
+        this.queueCapacity = properties.getQueueCapacity();
+        this.maxBatchSize = properties.getMaxBatchSize();
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(properties.getBatchWindowMs());
+        this.shutdownTimeoutMs = properties.getShutdownTimeoutMs();
+        this.lanes = new Lane[properties.getLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, queueCapacity, threadFactory);
+            metrics.registerLaneDepth(i, lanes[i].queue);
+            lanes[i].thread.start();
+        }
+    }
+
+    /**
+     * Принимает операцию с записью в журнал принятых операций. Метод возвращается, когда запись
+     * сброшена на диск и операция поставлена в очередь: после этого операция будет выполнена
+     * и при аварийной остановке приложения — повтором из журнала при следующем запуске.
+     * <p>
+     * Идентификатор операции записывается в журнал базы вместе с ней, чтобы повтор из журнала
+     * не применил уже зафиксированную операцию второй раз.
+     *
+     * @param operationId    идентификатор операции, под которым клиент запрашивает её статус
+     * @param walletId       идентификатор кошелька
+     * @param operationType  тип операции: DEPOSIT или WITHDRAW
+     * @param amount         сумма операции в копейках
+     * @param idempotencyKey ключ идемпотентности или null
+     * @return CompletableFuture с балансом кошелька в копейках после выполнения операции
+     * @throws RejectedExecutionException если очередь полосы заполнена, исполнитель остановлен
+     *                                    или журнал недоступен
+     * @throws IllegalArgumentException   если тип операции слишком длинный для журнала
+     */
+    public CompletableFuture<Long> accept(UUID operationId, UUID walletId, String operationType, long amount,
+                                          String idempotencyKey) {
+        if (!running) {
+            metrics.recordRejected(true);
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        WalletOperation operation = new WalletOperation(walletId, operationType, amount, idempotencyKey);
+        operation.setOperationId(operationId);
+        try {
+            operation.setJournalSequence(journal.accept(operationId, walletId, operationType, amount, idempotencyKey));
+        } catch (UncheckedIOException | IllegalStateException e) {
+            metrics.recordRejectedByJournal();
+            throw new RejectedExecutionException("Operation journal is unavailable", e);
+        }
+        if (!lanes[laneOf(walletId)].queue.offer(operation)) {
+            journal.cancel(operation.getJournalSequence());
+            metrics.recordRejected(false);
+            throw new RejectedExecutionException("Operation queue is full");
+        }
+        return operation.getResult();
+    }
+
+    /**
+     * Ставит в очередь операцию, восстановленную из журнала при запуске, ожидая места в очереди полосы.
+     * Перед применением такая операция ищется в журнале базы по идентификатору, так как могла быть
+     * зафиксирована до остановки.
+     *
+     * @return CompletableFuture с балансом кошелька в копейках после выполнения операции
+     * @throws InterruptedException если поток прерван во время ожидания
+     */
+    public CompletableFuture<Long> replay(JournalEntry entry) throws InterruptedException {
+        WalletOperation operation = new WalletOperation(entry.getWalletId(), entry.getOperationType(),
+                entry.getAmount(), entry.getIdempotencyKey());
+        operation.setOperationId(entry.getOperationId());
+        operation.setReplayed(true);
+        operation.setJournalSequence(entry.getSequence());
+        lanes[laneOf(entry.getWalletId())].queue.put(operation);
+        return operation.getResult();
+    }
+
+    /**
+     * Возвращает номер полосы для кошелька.
+     */
+    public int laneOf(UUID walletId) {
+        int h = walletId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), lanes.length);
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Текущая глубина очереди каждой полосы.
+     */
+    public int[] getLaneDepths() {
+        int[] depths = new int[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            depths[i] = lanes[i].queue.size();
+        }
+        return depths;
+    }
+
+    /**
+     * Останавливает прием операций и дожидается выполнения уже принятых.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        for (Lane lane : lanes) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            lane.thread.join(Math.max(1, remaining));
+            if (lane.thread.isAlive()) {
+                log.warn("Lane {} did not drain in time, {} operations left", lane.index, lane.queue.size());
+                lane.thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Выполняет пакет операций. Одиночная операция применяется атомарным UPDATE,
+     * пакет — одной транзакцией. Если транзакция пакета не удалась целиком,
+     * операции применяются по одной, чтобы сбой одной из них не отклонил остальные.
+     */
+    private void execute(List<WalletOperation> batch) {
+        long started = System.nanoTime();
+        metrics.recordDequeued(batch, started);
+        if (batch.size() > 1) {
+            try {
+                walletService.applyBatch(batch);
+                metrics.recordExecute(true, started);
+                batch.forEach(this::complete);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Batch of {} operations failed, applying one by one: {}", batch.size(), e.getMessage());
+            }
+            started = System.nanoTime();
+        }
+        for (WalletOperation operation : batch) {
+            try {
+                operation.applied(walletService.performOperation(operation));
+            } catch (RuntimeException e) {
+                operation.rejected(e);
+            }
+            complete(operation);
+        }
+        metrics.recordExecute(false, started);
+    }
+
+    private void complete(WalletOperation operation) {
+        journal.resolve(operation.getJournalSequence());
+        metrics.recordOutcome(operation.getOperationType(), operation.getFailure());
+        if (operation.getFailure() != null) {
+            log.warn("Operation {} on wallet {} failed: {}",
+                    operation.getOperationType(), operation.getWalletId(), operation.getFailure().getMessage());
+        }
+        operation.complete();
+    }
+
+    /**
+     * Полоса: ограниченная очередь и единственный поток, выполняющий её операции пакетами.
+     */
+    private final class Lane implements Runnable {
+
+        private final int index;
+        private final BlockingQueue<WalletOperation> queue;
+        private final Thread thread;
+
+        Lane(int index, int capacity, ThreadFactory threadFactory) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = threadFactory.newThread(this);
+        }
+
+        @Override
+        public void run() {
+            List<WalletOperation> batch = new ArrayList<>(maxBatchSize);
+            try {
+                while (running || !queue.isEmpty()) {
+                    WalletOperation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    collect(batch);
+                    execute(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Добирает операции в пакет, пока не истекло окно или пакет не заполнен.
+         */
+        private void collect(List<WalletOperation> batch) throws InterruptedException {
+            long deadline = System.nanoTime() + batchWindowNanos;
+            while (batch.size() < maxBatchSize) {
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= maxBatchSize || remaining <= 0) {
+                    return;
+                }
+                WalletOperation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        }
+    }
+}
@@ -1,14 +1,30 @@
 package com.example.wallet.service;
 
+import com.example.wallet.model.Money;
+import com.example.wallet.model.TimeOrderedUuidGenerator;
+import com.example.wallet.model.Transaction;
 import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.TransactionRepository;
+import com.example.wallet.repository.WalletBalanceUpdates;
+import com.example.wallet.repository.WalletBalanceView;
 import com.example.wallet.repository.WalletRepository;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 
 /**
  * Сервис для управления кошельками.
@@ -17,62 +33,662 @@ import java.util.concurrent.CompletableFuture;
 @Service
 public class WalletService {
 
+    /**
+     * Запас на перевод часов назад между приемом операции и записью её в журнал базы
+     * при поиске операций, повторяемых из журнала принятых операций.
+     */
+    private static final Duration REPLAY_CLOCK_SKEW = Duration.ofMinutes(1);
+
     private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final WalletBalanceCache balanceCache;
+    private final ReadRouting readRouting;
+    private final BalanceEventDispatcher balanceEvents;
+    private final HotWalletService hotWallets;
+    private final WalletMetrics metrics;
 
-    public WalletService(WalletRepository walletRepository) {
+    public WalletService(WalletRepository walletRepository, TransactionRepository transactionRepository,
+                         WalletBalanceCache balanceCache, ReadRouting readRouting,
+                         BalanceEventDispatcher balanceEvents, HotWalletService hotWallets, WalletMetrics metrics) {
         this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceCache = balanceCache;
+        this.readRouting = readRouting;
+        this.balanceEvents = balanceEvents;
+        this.hotWallets = hotWallets;
+        this.metrics = metrics;
     }
 
-     /**
-     * Выполняет асинхронную операцию изменения баланса кошелька.
-     *
-     * @param walletId      идентификатор кошелька
-     * @param operationType тип операции: DEPOSIT или WITHDRAW
-     * @param amount        сумма операции
-     * @return CompletableFuture<Void>
-     */
-    @Async
-    public CompletableFuture<Void> performOperationAsync(UUID walletId, String operationType, double amount) {
-        performOperation(walletId, operationType, amount);
-        return CompletableFuture.completedFuture(null);
-    }
     /**
      * Получает баланс кошелька по его идентификатору.
+     * Баланс читается из кэша, при промахе загружается из базы данных
+     * (с реплики, если кошелек не закреплен за основной базой, см. {@link ReadRouting}).
      *
      * @param walletId идентификатор кошелька
-     * @return баланс кошелька
+     * @return баланс кошелька в копейках
      * @throws IllegalArgumentException если кошелек не найден
      */
-    public double getBalance(UUID walletId) {
-        Optional<Wallet> wallet = walletRepository.findById(walletId);
-        return wallet.orElseThrow(() -> new IllegalArgumentException("Wallet not found")).getBalance();
+    public long getBalance(UUID walletId) {
+        long started = System.nanoTime();
+        try {
+            return balanceCache.get(walletId, this::loadBalance);
+        } finally {
+            metrics.record(WalletMetrics.Stage.BALANCE_READ, started);
+        }
+    }
+
+    /**
+     * Получает балансы нескольких кошельков.
+     * Балансы, найденные в кэше, возвращаются из него, остальные загружаются одним запросом
+     * с реплики, если ни один из них не закреплен за основной базой.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @return балансы найденных кошельков в копейках; отсутствующие кошельки в результат не попадают
+     */
+    public Map<UUID, Long> getBalances(Collection<UUID> walletIds) {
+        Map<UUID, Long> balances = new HashMap<>();
+        List<UUID> misses = new ArrayList<>();
+        for (UUID walletId : walletIds) {
+            Long cached = balanceCache.getIfPresent(walletId);
+            if (cached != null) {
+                balances.put(walletId, cached);
+            } else {
+                misses.add(walletId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long started = System.nanoTime();
+            for (WalletBalanceView view : readRouting.read(misses, () -> walletRepository.findBalances(misses))) {
+                balances.put(view.getId(), view.getBalance());
+            }
+            metrics.record(WalletMetrics.Stage.BALANCES_LOAD, started);
+        }
+        return balances;
+    }
+
+    /**
+     * Получает балансы нескольких кошельков из основной базы одним запросом, минуя кэш и реплику.
+     * Используется для начальных балансов потока балансов: кэш и реплика могут не учитывать изменение,
+     * зафиксированное до подписки, и подписчик получил бы устаревший баланс.
+     *
+     * @param walletIds идентификаторы кошельков
+     * @return балансы найденных кошельков в копейках; отсутствующие кошельки в результат не попадают
+     */
+    public Map<UUID, Long> getCommittedBalances(Collection<UUID> walletIds) {
+        long started = System.nanoTime();
+        Map<UUID, Long> balances = new HashMap<>();
+        for (WalletBalanceView view : walletRepository.findBalances(walletIds)) {
+            balances.put(view.getId(), view.getBalance());
+        }
+        metrics.record(WalletMetrics.Stage.BALANCES_LOAD, started);
+        return balances;
+    }
+
+    private long loadBalance(UUID walletId) {
+        long started = System.nanoTime();
+        Optional<Long> balance = readRouting.read(walletId, () -> walletRepository.findTotalBalance(walletId));
+        metrics.record(WalletMetrics.Stage.BALANCE_LOAD, started);
+        return balance.orElseThrow(() -> new IllegalArgumentException("Wallet not found"));
     }
 
     /**
      * Выполняет операцию изменения баланса кошелька.
+     * Баланс изменяется одним условным UPDATE без предварительного чтения,
+     * поэтому параллельные операции не теряют обновлений. В той же транзакции
+     * операция записывается в журнал.
+     * <p>
+     * Горячий кошелек пополняется через случайную ячейку. Снятие сначала списывается со строки кошелька;
+     * если её не хватает, средства берутся из ячеек (см. {@link #withdrawFromSlots}).
      *
      * @param walletId      идентификатор кошелька
      * @param operationType тип операции: DEPOSIT или WITHDRAW
-     * @param amount        сумма операции
-     * @throws IllegalArgumentException если кошелек не найден или недостаточно средств
+     * @param amount        сумма операции в копейках
+     * @return новый баланс кошелька в копейках
+     * @throws IllegalArgumentException если кошелек не найден, недостаточно средств или баланс переполнится
      */
-    public void performOperation(UUID walletId, String operationType, double amount) {
-        Wallet wallet = walletRepository.findById(walletId)
-                .orElseThrow(() -> new IllegalArgumentException("Wallet not found"));
+    @Transactional
+    public long performOperation(UUID walletId, String operationType, long amount) {
+        return performOperation(walletId, operationType, amount, null);
+    }
+
+    /**
+     * Выполняет операцию изменения баланса кошелька с ключом идемпотентности.
+     * Если операция с тем же ключом уже записана в журнал, кошелек не изменяется,
+     * а возвращается баланс, полученный при первом применении.
+     *
+     * @param walletId       идентификатор кошелька
+     * @param operationType  тип операции: DEPOSIT или WITHDRAW
+     * @param amount         сумма операции в копейках
+     * @param idempotencyKey ключ идемпотентности или null
+     * @return баланс кошелька после операции в копейках
+     * @throws IllegalArgumentException если кошелек не найден, недостаточно средств, баланс переполнится
+     *                                  или ключ уже использован для другой операции
+     */
+    @Transactional
+    public long performOperation(UUID walletId, String operationType, long amount, String idempotencyKey) {
+        long started = System.nanoTime();
+        try {
+            return apply(walletId, operationType.toUpperCase(), amount, idempotencyKey, null);
+        } finally {
+            metrics.record(WalletMetrics.Stage.PERFORM_TOTAL, started);
+        }
+    }
+
+    /**
+     * Выполняет операцию из очереди исполнителя так же, как {@link #performOperation(UUID, String, long, String)},
+     * и записывает в журнал базы её идентификатор. Операция, повторяемая из журнала принятых операций,
+     * сначала ищется в журнале базы по идентификатору и, если она уже зафиксирована, не применяется второй раз.
+     *
+     * @param operation операция исполнителя
+     * @return баланс кошелька после операции в копейках
+     * @throws IllegalArgumentException если кошелек не найден, недостаточно средств, баланс переполнится
+     *                                  или ключ уже использован для другой операции
+     */
+    @Transactional
+    public long performOperation(WalletOperation operation) {
+        long started = System.nanoTime();
+        try {
+            String type = operation.getOperationType().toUpperCase();
+            Transaction applied = findApplied(List.of(operation), WalletMetrics.Stage.IDEMPOTENCY_LOOKUP)
+                    .get(operation.getOperationId());
+            if (applied != null) {
+                return replay(applied, operation.getWalletId(), type, operation.getAmount());
+            }
+            return apply(operation.getWalletId(), type, operation.getAmount(), operation.getIdempotencyKey(),
+                    operation.getOperationId());
+        } finally {
+            metrics.record(WalletMetrics.Stage.PERFORM_TOTAL, started);
+        }
+    }
 
-        switch (operationType.toUpperCase()) {
+    private long apply(UUID walletId, String type, long amount, String idempotencyKey, UUID operationId) {
+        long stage = System.nanoTime();
+        if (idempotencyKey != null) {
+            Optional<Transaction> recorded = transactionRepository.findByIdempotencyKey(idempotencyKey);
+            metrics.record(WalletMetrics.Stage.IDEMPOTENCY_LOOKUP, stage);
+            if (recorded.isPresent()) {
+                return replay(recorded.get(), walletId, type, amount);
+            }
+            stage = System.nanoTime();
+        }
+        int slots = hotWallets.slotsOf(walletId);
+        boolean hot = slots > 0;
+        long balance;
+        switch (type) {
             case "WITHDRAW":
-                if (wallet.getBalance() < amount) {
-                    throw new IllegalArgumentException("Not enough balance");
+                balance = walletRepository.withdraw(walletId, amount);
+                if (balance == WalletBalanceUpdates.NOT_UPDATED) {
+                    balance = withdrawFromSlots(walletId, amount);
+                    hot = true;
                 }
-                wallet.setBalance(wallet.getBalance() - amount);
                 break;
             case "DEPOSIT":
-                wallet.setBalance(wallet.getBalance() + amount);
+                balance = slots > 0
+                        ? walletRepository.depositToSlot(walletId, hotWallets.pickSlot(slots), amount)
+                        : WalletBalanceUpdates.NOT_UPDATED;
+                if (balance == WalletBalanceUpdates.NOT_UPDATED) {
+                    balance = walletRepository.deposit(walletId, amount);
+                }
+                if (balance == WalletBalanceUpdates.NOT_UPDATED) {
+                    throw new IllegalArgumentException(walletRepository.existsById(walletId)
+                            ? "Balance overflow" : "Wallet not found");
+                }
                 break;
             default:
                 throw new IllegalArgumentException("Invalid operation type");
         }
-        walletRepository.save(wallet);
+        metrics.record(WalletMetrics.Stage.BALANCE_UPDATE, stage);
+        Transaction entry = new Transaction(walletId, type, amount, balance, idempotencyKey);
+        if (hot) {
+            // Баланс посчитан по ячейкам без блокировки и не записывается (см. Transaction#getBalanceAfter).
+            entry.setBalanceAfter(null);
+        }
+        entry.setOperationId(operationId);
+        transactionRepository.save(entry);
+        metrics.recordCommit(WalletMetrics.Stage.COMMIT);
+        if (hot) {
+            balanceCache.evictAfterCommit(walletId);
+            balanceEvents.reloadAfterCommit(walletId);
+        } else {
+            balanceCache.putAfterCommit(walletId, balance);
+            balanceEvents.publishAfterCommit(walletId, balance);
+        }
+        readRouting.pinAfterCommit(walletId);
+        return balance;
+    }
+
+    /**
+     * Снимает средства из ячеек горячего кошелька, когда не хватило баланса строки.
+     * Строка кошелька блокируется первой, затем снятие пробует случайную ячейку, а если не хватает
+     * и её, балансы всех ячеек переносятся на строку и снятие повторяется. Ячейки блокируются
+     * только при заблокированной строке, как и при пакетном применении и смене режима,
+     * поэтому снятия, переносы и пополнения ячеек не блокируют друг друга взаимно.
+     * Для обычного кошелька только определяет причину отказа.
+     *
+     * @return новый баланс в копейках
+     * @throws IllegalArgumentException если кошелек не найден, средств недостаточно или баланс переполнится
+     */
+    private long withdrawFromSlots(UUID walletId, long amount) {
+        int slots = walletRepository.findSlotsForUpdate(walletId)
+                .orElseThrow(() -> new IllegalArgumentException("Wallet not found"));
+        if (slots == 0) {
+            throw new IllegalArgumentException("Not enough balance");
+        }
+        long fromSlot = walletRepository.withdrawFromSlot(walletId, hotWallets.pickSlot(slots), amount);
+        if (fromSlot != WalletBalanceUpdates.NOT_UPDATED) {
+            return fromSlot;
+        }
+        long drained = walletRepository.drainSlots(walletId, 0);
+        if (drained == 0) {
+            throw new IllegalArgumentException("Not enough balance");
+        }
+        metrics.recordConsolidation();
+        if (walletRepository.deposit(walletId, drained) == WalletBalanceUpdates.NOT_UPDATED) {
+            throw new IllegalArgumentException("Balance overflow");
+        }
+        long balance = walletRepository.withdraw(walletId, amount);
+        if (balance == WalletBalanceUpdates.NOT_UPDATED) {
+            throw new IllegalArgumentException("Not enough balance");
+        }
+        return balance;
+    }
+
+    /**
+     * Применяет пакет операций в одной транзакции.
+     * Кошельки пакета блокируются одним запросом в порядке идентификаторов,
+     * операции каждого кошелька проверяются по порядку и сворачиваются
+     * в одно итоговое изменение баланса. Операция, для которой не хватает средств
+     * или которая переполнила бы баланс, отклоняется без отката остальных операций пакета. Записи журнала
+     * для примененных операций вставляются пакетно в той же транзакции.
+     * Исход каждой операции записывается в неё; результаты завершает вызывающая сторона
+     * после фиксации транзакции.
+     *
+     * Операции с ключом идемпотентности, уже записанным в журнал, не изменяют кошелек
+     * и получают исход первого применения; ключи пакета проверяются одним запросом.
+     * Так же обрабатываются операции, повторяемые из журнала принятых операций и уже зафиксированные
+     * до остановки: они ищутся по идентификатору операции, тоже одним запросом на пакет.
+     *
+     * Ячейки горячих кошельков пакета блокируются одним запросом в порядке (wallet_id, slot) после строк,
+     * поэтому балансы после операций, записываемые в журнал, точны. Пополнения горячего кошелька
+     * суммируются и зачисляются в одну ячейку одним изменением на кошелек после применения пакета.
+     * Если снятие с горячего кошелька не покрывается балансом строки, на строку переносятся
+     * еще не зачисленные пополнения и балансы ячеек (см. {@link #coverWithdrawal}).
+     *
+     * @param operations операции пакета в порядке поступления
+     */
+    @Transactional
+    public void applyBatch(List<WalletOperation> operations) {
+        long started = System.nanoTime();
+        Set<String> keys = new HashSet<>();
+        for (WalletOperation operation : operations) {
+            if (operation.getIdempotencyKey() != null) {
+                keys.add(operation.getIdempotencyKey());
+            }
+        }
+        Map<String, Transaction> recorded = findRecorded(keys, WalletMetrics.Stage.BATCH_IDEMPOTENCY_LOOKUP);
+        Map<UUID, Transaction> applied = findApplied(operations, WalletMetrics.Stage.BATCH_IDEMPOTENCY_LOOKUP);
+        Set<UUID> walletIds = new HashSet<>();
+        for (WalletOperation operation : operations) {
+            if ((operation.getIdempotencyKey() == null || !recorded.containsKey(operation.getIdempotencyKey()))
+                    && !applied.containsKey(operation.getOperationId())) {
+                walletIds.add(operation.getWalletId());
+            }
+        }
+        Map<UUID, Wallet> wallets = lockWallets(walletIds, WalletMetrics.Stage.BATCH_LOCK);
+        Map<UUID, Long> slotBalances = lockSlots(wallets.values());
+        Map<UUID, Long> slotCredits = new HashMap<>();
+
+        List<Transaction> ledger = new ArrayList<>(operations.size());
+        for (WalletOperation operation : operations) {
+            String key = operation.getIdempotencyKey();
+            Transaction previous = key != null ? recorded.get(key) : applied.get(operation.getOperationId());
+            if (previous != null) {
+                try {
+                    operation.applied(replay(previous, operation.getWalletId(),
+                            operation.getOperationType().toUpperCase(), operation.getAmount()));
+                } catch (IllegalArgumentException e) {
+                    operation.rejected(e);
+                }
+                continue;
+            }
+            Wallet wallet = wallets.get(operation.getWalletId());
+            if (wallet == null) {
+                operation.rejected(new IllegalArgumentException("Wallet not found"));
+                continue;
+            }
+            String type = operation.getOperationType().toUpperCase();
+            switch (type) {
+                case "WITHDRAW":
+                    if (!coverWithdrawal(wallet, operation.getAmount(), slotBalances, slotCredits)) {
+                        operation.rejected(new IllegalArgumentException("Not enough balance"));
+                        continue;
+                    }
+                    wallet.setBalance(wallet.getBalance() - operation.getAmount());
+                    break;
+                case "DEPOSIT":
+                    try {
+                        credit(wallet, operation.getAmount(), slotBalances, slotCredits);
+                    } catch (IllegalArgumentException e) {
+                        operation.rejected(e);
+                        continue;
+                    }
+                    break;
+                default:
+                    operation.rejected(new IllegalArgumentException("Invalid operation type"));
+                    continue;
+            }
+            long balance = wallet.getBalance() + slotBalances.getOrDefault(wallet.getId(), 0L);
+            operation.applied(balance);
+            Transaction entry = new Transaction(wallet.getId(), type, operation.getAmount(), balance, key);
+            entry.setOperationId(operation.getOperationId());
+            ledger.add(entry);
+            if (key != null) {
+                // Повтор того же ключа внутри пакета получает исход этой операции.
+                recorded.put(key, entry);
+            }
+        }
+        creditSlots(wallets.values(), slotCredits);
+        transactionRepository.saveAll(ledger);
+        metrics.recordCommit(WalletMetrics.Stage.BATCH_COMMIT);
+        cacheAfterCommit(wallets.values());
+        metrics.record(WalletMetrics.Stage.BATCH_TOTAL, started);
+    }
+
+    /**
+     * Переводит средства с одного кошелька на другой.
+     * Списание, зачисление и обе записи журнала фиксируются одной транзакцией
+     * (см. {@link #applyTransfers}).
+     *
+     * @param fromWalletId   кошелек-отправитель
+     * @param toWalletId     кошелек-получатель
+     * @param amount         сумма перевода в копейках
+     * @param idempotencyKey ключ идемпотентности или null
+     * @return баланс кошелька-отправителя после перевода в копейках
+     * @throws IllegalArgumentException если кошелек не найден, недостаточно средств, баланс получателя переполнится,
+     *                                  кошельки совпадают или ключ уже использован для другой операции
+     */
+    @Transactional
+    public long transfer(UUID fromWalletId, UUID toWalletId, long amount, String idempotencyKey) {
+        WalletTransfer transfer = new WalletTransfer(fromWalletId, toWalletId, amount, idempotencyKey);
+        applyTransfers(List.of(transfer));
+        if (transfer.getFailure() != null) {
+            throw transfer.getFailure();
+        }
+        return transfer.getResultingBalance();
+    }
+
+    /**
+     * Применяет пакет переводов в одной транзакции.
+     * Все кошельки пакета, отправители и получатели, блокируются одним запросом в порядке
+     * идентификаторов. Порядок один для всех транзакций, блокирующих несколько кошельков,
+     * поэтому встречные переводы и пакеты операций ждут друг друга, но не блокируют взаимно,
+     * а каждый кошелек блокируется один раз за пакет, сколько бы переводов его ни затрагивало.
+     * <p>
+     * Переводы применяются по порядку; перевод, для которого не хватает средств или который
+     * переполнил бы баланс получателя, отклоняется без отката остальных. Примененный перевод
+     * записывается в журнал двумя записями: TRANSFER_OUT у отправителя с ключом идемпотентности
+     * и TRANSFER_IN у получателя, каждая со ссылкой на другой кошелек. Перевод с ключом, уже записанным
+     * в журнал, не изменяет кошельки и получает баланс отправителя после первого применения.
+     * Ячейки горячих кошельков блокируются, снятие с них покрывается, а зачисление на них
+     * выполняется так же, как в {@link #applyBatch}.
+     * Переводы выполняются вне полос исполнителя, поэтому балансы после перевода попадают в кэш
+     * с номером, полученным под блокировкой кошелька, и не заменяют более поздние (см. {@link WalletBalanceCache}).
+     *
+     * @param transfers переводы пакета в порядке поступления
+     */
+    @Transactional
+    public void applyTransfers(List<WalletTransfer> transfers) {
+        long started = System.nanoTime();
+        Set<String> keys = new HashSet<>();
+        for (WalletTransfer transfer : transfers) {
+            if (transfer.getIdempotencyKey() != null) {
+                keys.add(transfer.getIdempotencyKey());
+            }
+        }
+        Map<String, Transaction> recorded = findRecorded(keys, WalletMetrics.Stage.TRANSFER_IDEMPOTENCY_LOOKUP);
+        Set<UUID> walletIds = new HashSet<>();
+        for (WalletTransfer transfer : transfers) {
+            if (transfer.getIdempotencyKey() == null || !recorded.containsKey(transfer.getIdempotencyKey())) {
+                walletIds.add(transfer.getFromWalletId());
+                walletIds.add(transfer.getToWalletId());
+            }
+        }
+        Map<UUID, Wallet> wallets = lockWallets(walletIds, WalletMetrics.Stage.TRANSFER_LOCK);
+        Map<UUID, Long> slotBalances = lockSlots(wallets.values());
+        Map<UUID, Long> slotCredits = new HashMap<>();
+
+        List<Transaction> ledger = new ArrayList<>(transfers.size() * 2);
+        for (WalletTransfer transfer : transfers) {
+            String key = transfer.getIdempotencyKey();
+            Transaction previous = key != null ? recorded.get(key) : null;
+            if (previous != null) {
+                try {
+                    transfer.applied(replay(previous, transfer));
+                } catch (IllegalArgumentException e) {
+                    transfer.rejected(e);
+                }
+                continue;
+            }
+            if (transfer.getFromWalletId().equals(transfer.getToWalletId())) {
+                transfer.rejected(new IllegalArgumentException("Invalid transfer"));
+                continue;
+            }
+            Wallet from = wallets.get(transfer.getFromWalletId());
+            Wallet to = wallets.get(transfer.getToWalletId());
+            if (from == null || to == null) {
+                transfer.rejected(new IllegalArgumentException("Wallet not found"));
+                continue;
+            }
+            long amount = transfer.getAmount();
+            try {
+                Money.add(to.getSlots() > 0 ? slotCredits.getOrDefault(to.getId(), 0L) : to.getBalance(), amount);
+            } catch (IllegalArgumentException e) {
+                transfer.rejected(e);
+                continue;
+            }
+            if (!coverWithdrawal(from, amount, slotBalances, slotCredits)) {
+                transfer.rejected(new IllegalArgumentException("Not enough balance"));
+                continue;
+            }
+            from.setBalance(from.getBalance() - amount);
+            credit(to, amount, slotBalances, slotCredits);
+            long fromBalance = from.getBalance() + slotBalances.getOrDefault(from.getId(), 0L);
+            long toBalance = to.getBalance() + slotBalances.getOrDefault(to.getId(), 0L);
+            transfer.applied(fromBalance);
+            Transaction debit = new Transaction(from.getId(), "TRANSFER_OUT", amount, fromBalance, key, to.getId());
+            ledger.add(debit);
+            ledger.add(new Transaction(to.getId(), "TRANSFER_IN", amount, toBalance, null, from.getId()));
+            if (key != null) {
+                recorded.put(key, debit);
+            }
+        }
+        creditSlots(wallets.values(), slotCredits);
+        transactionRepository.saveAll(ledger);
+        metrics.recordCommit(WalletMetrics.Stage.TRANSFER_COMMIT);
+        cacheAfterCommit(wallets.values());
+        metrics.record(WalletMetrics.Stage.TRANSFER_TOTAL, started);
+    }
+
+    /**
+     * Блокирует кошельки одним запросом в порядке идентификаторов.
+     */
+    private Map<UUID, Wallet> lockWallets(Set<UUID> walletIds, WalletMetrics.Stage stage) {
+        Map<UUID, Wallet> wallets = new LinkedHashMap<>();
+        if (walletIds.isEmpty()) {
+            return wallets;
+        }
+        long started = System.nanoTime();
+        for (Wallet wallet : walletRepository.findAllByIdForUpdate(walletIds)) {
+            wallets.put(wallet.getId(), wallet);
+        }
+        metrics.record(stage, started);
+        return wallets;
+    }
+
+    /**
+     * Блокирует ячейки заблокированных горячих кошельков одним запросом и возвращает суммы их балансов.
+     */
+    private Map<UUID, Long> lockSlots(Collection<Wallet> wallets) {
+        List<UUID> hot = new ArrayList<>();
+        for (Wallet wallet : wallets) {
+            if (wallet.getSlots() > 0) {
+                hot.add(wallet.getId());
+            }
+        }
+        return hot.isEmpty() ? new HashMap<>() : new HashMap<>(walletRepository.lockSlotBalances(hot));
+    }
+
+    /**
+     * Зачисляет сумму на заблокированный кошелек: обычному — на строку, горячему — в сумму пополнений,
+     * которая зачисляется в ячейку после применения пакета (см. {@link #creditSlots}).
+     *
+     * @throws IllegalArgumentException если баланс строки или сумма пополнений переполнится
+     */
+    private void credit(Wallet wallet, long amount, Map<UUID, Long> slotBalances, Map<UUID, Long> slotCredits) {
+        if (wallet.getSlots() > 0) {
+            slotCredits.put(wallet.getId(), Money.add(slotCredits.getOrDefault(wallet.getId(), 0L), amount));
+            slotBalances.merge(wallet.getId(), amount, Long::sum);
+        } else {
+            wallet.setBalance(Money.add(wallet.getBalance(), amount));
+        }
+    }
+
+    /**
+     * Проверяет, хватает ли баланса строки заблокированного кошелька на снятие. Если не хватает,
+     * на строку горячего кошелька переносятся еще не зачисленные пополнения и балансы его ячеек.
+     *
+     * @return true, если баланса строки достаточно
+     */
+    private boolean coverWithdrawal(Wallet wallet, long amount, Map<UUID, Long> slotBalances,
+                                    Map<UUID, Long> slotCredits) {
+        long inSlots = slotBalances.getOrDefault(wallet.getId(), 0L);
+        if (wallet.getBalance() < amount && inSlots > 0) {
+            Long credited = slotCredits.remove(wallet.getId());
+            long moved = credited != null ? credited : 0L;
+            if (inSlots > moved) {
+                // Ячейки уже заблокированы пакетом; переполнение строки откатывает пакет целиком.
+                moved += walletRepository.drainSlots(wallet.getId(), 0);
+                metrics.recordConsolidation();
+            }
+            wallet.setBalance(Money.add(wallet.getBalance(), moved));
+            slotBalances.put(wallet.getId(), 0L);
+        }
+        return wallet.getBalance() >= amount;
+    }
+
+    /**
+     * Зачисляет пополнения горячих кошельков пакета в ячейки, по одному изменению ячейки на кошелек.
+     * Ячейки уже заблокированы пакетом, поэтому зачисление не ждет других транзакций. Если ячейка
+     * переполнится, сумма зачисляется на строку; переполнение строки откатывает пакет целиком.
+     */
+    private void creditSlots(Collection<Wallet> wallets, Map<UUID, Long> slotCredits) {
+        for (Wallet wallet : wallets) {
+            Long credited = slotCredits.get(wallet.getId());
+            if (credited != null && walletRepository.depositToSlot(wallet.getId(),
+                    hotWallets.pickSlot(wallet.getSlots()), credited) == WalletBalanceUpdates.NOT_UPDATED) {
+                wallet.setBalance(Money.add(wallet.getBalance(), credited));
+            }
+        }
+    }
+
+    private void cacheAfterCommit(Collection<Wallet> wallets) {
+        for (Wallet wallet : wallets) {
+            if (wallet.getSlots() > 0) {
+                balanceCache.evictAfterCommit(wallet.getId());
+                balanceEvents.reloadAfterCommit(wallet.getId());
+            } else {
+                balanceCache.putAfterCommit(wallet.getId(), wallet.getBalance());
+                balanceEvents.publishAfterCommit(wallet.getId(), wallet.getBalance());
+            }
+            readRouting.pinAfterCommit(wallet.getId());
+        }
+    }
+
+    /**
+     * Находит записи журнала по ключам идемпотентности пакета одним запросом.
+     */
+    private Map<String, Transaction> findRecorded(Set<String> keys, WalletMetrics.Stage stage) {
+        Map<String, Transaction> recorded = new HashMap<>();
+        if (!keys.isEmpty()) {
+            long started = System.nanoTime();
+            for (Transaction transaction : transactionRepository.findByIdempotencyKeyIn(keys)) {
+                recorded.put(transaction.getIdempotencyKey(), transaction);
+            }
+            metrics.record(stage, started);
+        }
+        return recorded;
+    }
+
+    /**
+     * Находит записи журнала операций, повторяемых из журнала принятых операций, одним запросом.
+     * Запись операции создается не раньше её приема, поэтому поиск ограничен записями кошельков пакета
+     * начиная с момента приема самой ранней операции, который хранится в её идентификаторе.
+     * Операции, принятые после запуска, не ищутся: они еще не могли быть зафиксированы;
+     * операции с ключом идемпотентности распознаются по ключу.
+     *
+     * @return записи журнала по идентификаторам операций
+     */
+    private Map<UUID, Transaction> findApplied(List<WalletOperation> operations, WalletMetrics.Stage stage) {
+        Set<UUID> walletIds = new HashSet<>();
+        Set<UUID> operationIds = new HashSet<>();
+        long acceptedFrom = Long.MAX_VALUE;
+        for (WalletOperation operation : operations) {
+            if (operation.isReplayed() && operation.getIdempotencyKey() == null && operation.getOperationId() != null) {
+                walletIds.add(operation.getWalletId());
+                operationIds.add(operation.getOperationId());
+                acceptedFrom = Math.min(acceptedFrom, TimeOrderedUuidGenerator.timestampOf(operation.getOperationId()));
+            }
+        }
+        Map<UUID, Transaction> applied = new HashMap<>();
+        if (!operationIds.isEmpty()) {
+            long started = System.nanoTime();
+            LocalDateTime since = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(acceptedFrom).minus(REPLAY_CLOCK_SKEW), ZoneId.systemDefault());
+            for (Transaction transaction : transactionRepository
+                    .findByWalletIdInAndCreateAtGreaterThanEqualAndOperationIdIn(walletIds, since, operationIds)) {
+                applied.put(transaction.getOperationId(), transaction);
+            }
+            metrics.record(stage, started);
+        }
+        return applied;
+    }
+
+    /**
+     * Возвращает исход ранее записанной операции для повторного запроса с тем же ключом.
+     *
+     * @throws IllegalArgumentException если ключ использован для операции с другими параметрами
+     */
+    private long replay(Transaction recorded, UUID walletId, String type, long amount) {
+        if (!recorded.getWalletId().equals(walletId) || !recorded.getType().equals(type)
+                || recorded.getAmount() != amount) {
+            throw new IllegalArgumentException("Idempotency key reused with different parameters");
+        }
+        return balanceAfter(recorded);
+    }
+
+    /**
+     * Возвращает исход ранее записанного перевода для повторного запроса с тем же ключом.
+     *
+     * @throws IllegalArgumentException если ключ использован для операции с другими параметрами
+     */
+    private long replay(Transaction recorded, WalletTransfer transfer) {
+        if (!recorded.getType().equals("TRANSFER_OUT") || !recorded.getWalletId().equals(transfer.getFromWalletId())
+                || !transfer.getToWalletId().equals(recorded.getCounterpartyId())
+                || recorded.getAmount() != transfer.getAmount()) {
+            throw new IllegalArgumentException("Idempotency key reused with different parameters");
+        }
+        return balanceAfter(recorded);
+    }
+
+    /**
+     * Баланс кошелька после записанной операции. Для операции горячего кошелька, выполненной по одной,
+     * баланс не записывается (см. {@link Transaction#getBalanceAfter}), и повтор получает текущий баланс.
+     */
+    private long balanceAfter(Transaction recorded) {
+        if (recorded.getBalanceAfter() != null) {
+            return recorded.getBalanceAfter();
+        }
+        return walletRepository.findTotalBalance(recorded.getWalletId())
+                .orElseThrow(() -> new IllegalArgumentException("Wallet not found"));
     }
 }
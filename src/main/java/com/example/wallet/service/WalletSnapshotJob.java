@@ -0,0 +1,148 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletSnapshotProperties;
+import com.example.wallet.repository.WalletSnapshotRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Фоновое создание снимков балансов по журналу операций.
+ * <p>
+ * Проход делит пространство идентификаторов кошельков на wallet.snapshot.partitions диапазонов
+ * и обрабатывает их параллельно. Внутри диапазона кошельки перебираются по возрастанию
+ * идентификатора порциями по wallet.snapshot.batch-size, по одной транзакции на порцию,
+ * с паузой wallet.snapshot.pause-ms между порциями. Так проход занимает не больше
+ * partitions соединений и не блокирует строки кошельков, а нагрузка на базу ограничена
+ * паузами. Каждый снимок сдвигается только на записи журнала, появившиеся после него,
+ * поэтому повторные проходы читают лишь новую часть журнала.
+ */
+@Service
+public class WalletSnapshotJob {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletSnapshotJob.class);
+
+    private final WalletSnapshotRepository snapshotRepository;
+    private final WalletLedgerService ledgerService;
+    private final WalletSnapshotProperties properties;
+    private final ExecutorService partitionExecutor;
+    private final ReentrantLock running = new ReentrantLock();
+
+    private volatile SnapshotRun lastRun;
+
+    public WalletSnapshotJob(WalletSnapshotRepository snapshotRepository, WalletLedgerService ledgerService,
+                             WalletSnapshotProperties properties) {
+        if (properties.getPartitions() < 1) {
+            throw new IllegalArgumentException("wallet.snapshot.partitions must be positive");
+        }
+        if (properties.getBatchSize() < 1) {
+            throw new IllegalArgumentException("wallet.snapshot.batch-size must be positive");
+        }
+        this.snapshotRepository = snapshotRepository;
+        this.ledgerService = ledgerService;
+        this.properties = properties;
+        this.partitionExecutor = Executors.newFixedThreadPool(properties.getPartitions(),
+                Thread.ofPlatform().name("wallet-snapshot-", 0).daemon().factory());
+    }
+
+    /**
+     * Запускает проход по расписанию, если создание снимков включено.
+     */
+    @Scheduled(fixedDelayString = "${wallet.snapshot.interval-ms:600000}",
+            initialDelayString = "${wallet.snapshot.interval-ms:600000}")
+    public void scheduledRun() {
+        if (properties.isEnabled()) {
+            run().ifPresent(result -> log.info("Snapshot run: {} wallets scanned, {} snapshots advanced, "
+                            + "{} batches failed in {} ms", result.getScanned(), result.getSnapshotted(),
+                    result.getFailedBatches(), result.getDurationMs()));
+        }
+    }
+
+    /**
+     * Выполняет проход по всем кошелькам и ждет его завершения.
+     *
+     * @return итоги прохода или пустой Optional, если проход уже выполняется
+     */
+    public Optional<SnapshotRun> run() {
+        if (!running.tryLock()) {
+            return Optional.empty();
+        }
+        try {
+            SnapshotRun run = new SnapshotRun(LocalDateTime.now().minusNanos(properties.getSettleMs() * 1_000_000));
+            lastRun = run;
+            int partitions = properties.getPartitions();
+            long step = Long.divideUnsigned(-1L, partitions) + 1;
+            List<Future<?>> futures = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                UUID lower = new UUID(p * step, 0);
+                UUID upper = p + 1 < partitions ? new UUID((p + 1) * step, 0) : null;
+                futures.add(partitionExecutor.submit(() -> runPartition(lower, upper, run)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(f -> f.cancel(true));
+                    break;
+                } catch (ExecutionException e) {
+                    log.warn("Snapshot partition failed: {}", e.getCause().getMessage());
+                }
+            }
+            run.finished();
+            return Optional.of(run);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    private void runPartition(UUID lower, UUID upper, SnapshotRun run) {
+        UUID after = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<UUID> walletIds = snapshotRepository.findWalletIds(lower, upper, after, properties.getBatchSize());
+            if (walletIds.isEmpty()) {
+                return;
+            }
+            try {
+                run.batchDone(walletIds.size(), ledgerService.snapshot(walletIds, run.getBefore()));
+            } catch (RuntimeException e) {
+                log.warn("Snapshot batch of {} wallets after {} failed: {}", walletIds.size(), after, e.getMessage());
+                run.batchFailed(walletIds.size());
+            }
+            if (walletIds.size() < properties.getBatchSize()) {
+                return;
+            }
+            after = walletIds.get(walletIds.size() - 1);
+            try {
+                Thread.sleep(properties.getPauseMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Итоги последнего прохода или null, если проходов еще не было.
+     */
+    public SnapshotRun getLastRun() {
+        return lastRun;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        partitionExecutor.shutdownNow();
+    }
+}
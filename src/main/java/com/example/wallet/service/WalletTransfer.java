@@ -0,0 +1,78 @@
+package com.example.wallet.service;
+
+import java.util.UUID;
+
+/**
+ * Перевод между кошельками в пакете переводов.
+ * Сервис записывает исход перевода в него; вызывающая сторона читает исход
+ * после фиксации транзакции пакета.
+ */
+public class WalletTransfer {
+
+    private final UUID fromWalletId;
+    private final UUID toWalletId;
+    private final long amount;
+    private final String idempotencyKey;
+
+    private long resultingBalance;
+    private RuntimeException failure;
+
+    public WalletTransfer(UUID fromWalletId, UUID toWalletId, long amount, String idempotencyKey) {
+        this.fromWalletId = fromWalletId;
+        this.toWalletId = toWalletId;
+        this.amount = amount;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public UUID getFromWalletId() {
+        return fromWalletId;
+    }
+
+    public UUID getToWalletId() {
+        return toWalletId;
+    }
+
+    /**
+     * Сумма перевода в копейках.
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Ключ идемпотентности перевода или null, если клиент его не передал.
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Записывает успешный исход перевода.
+     *
+     * @param balance баланс кошелька-отправителя после перевода в копейках
+     */
+    void applied(long balance) {
+        this.resultingBalance = balance;
+        this.failure = null;
+    }
+
+    /**
+     * Записывает отказ в выполнении перевода.
+     *
+     * @param failure причина отказа
+     */
+    void rejected(RuntimeException failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Баланс кошелька-отправителя после перевода в копейках.
+     */
+    long getResultingBalance() {
+        return resultingBalance;
+    }
+
+    RuntimeException getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.wallet;
+
+import com.example.wallet.model.Transaction;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.TransactionRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.TransactionHistoryService;
+import com.example.wallet.service.TransactionPage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Интеграционный тест истории операций на встроенной базе H2 (профиль it).
+ * Проверяет, что постраничный обход курсором и выгрузка возвращают каждую операцию ровно один раз,
+ * в том числе когда у нескольких операций совпадает время создания.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("it")
+class TransactionHistoryIntegrationTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @Autowired
+    private TransactionHistoryService historyService;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Тестирует обход истории страницами: операции не теряются и не повторяются на границах страниц,
+     * даже если время создания совпадает у операций по разные стороны границы.
+     */
+    @Test
+    void getHistory_ShouldReturnEveryTransactionOnce_WhenPagingWithCursor() {
+        UUID walletId = createWallet();
+        Set<UUID> expected = seed(walletId, 23);
+
+        Set<UUID> seen = new HashSet<>();
+        LocalDateTime previous = LocalDateTime.MAX;
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransactionPage page = historyService.getHistory(walletId, null, null, null, cursor, 5);
+            for (Transaction transaction : page.getTransactions()) {
+                assertTrue(seen.add(transaction.getId()), "Duplicate transaction " + transaction.getId());
+                assertFalse(transaction.getCreateAt().isAfter(previous));
+                previous = transaction.getCreateAt();
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+        assertEquals(5, pages);
+    }
+
+    /**
+     * Тестирует фильтрацию истории по периоду и типу операции.
+     */
+    @Test
+    void getHistory_ShouldApplyFilters_WhenRangeAndTypeGiven() {
+        UUID walletId = createWallet();
+        seed(walletId, 20);
+
+        TransactionPage page = historyService.getHistory(walletId, START.plusMinutes(1), START.plusMinutes(3),
+                "withdraw", null, 100);
+
+        assertEquals(4, page.getTransactions().size());
+        for (Transaction transaction : page.getTransactions()) {
+            assertEquals("WITHDRAW", transaction.getType());
+            assertFalse(transaction.getCreateAt().isBefore(START.plusMinutes(1)));
+            assertTrue(transaction.getCreateAt().isBefore(START.plusMinutes(3)));
+        }
+        assertNull(page.getNextCursor());
+    }
+
+    /**
+     * Тестирует выгрузку истории: все операции кошелька выводятся строками NDJSON от старых к новым.
+     */
+    @Test
+    void export_ShouldStreamAllTransactionsInChronologicalOrder() throws Exception {
+        UUID walletId = createWallet();
+        Set<UUID> expected = seed(walletId, 17);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = historyService.export(walletId, null, null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(17, count);
+        assertEquals(17, lines.length);
+        Set<UUID> seen = new HashSet<>();
+        LocalDateTime previous = LocalDateTime.MIN;
+        for (String line : lines) {
+            JsonNode row = objectMapper.readTree(line);
+            assertEquals(walletId.toString(), row.get("walletId").asText());
+            seen.add(UUID.fromString(row.get("id").asText()));
+            LocalDateTime createdAt = LocalDateTime.parse(row.get("createdAt").asText());
+            assertFalse(createdAt.isBefore(previous));
+            previous = createdAt;
+        }
+        assertEquals(expected, seen);
+    }
+
+    private UUID createWallet() {
+        return walletRepository.save(new Wallet()).getId();
+    }
+
+    /**
+     * Создает операции кошелька: по четыре операции на минуту, начиная с START,
+     * с чередованием пополнений и снятий.
+     */
+    private Set<UUID> seed(UUID walletId, int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Transaction transaction = new Transaction(walletId, i % 2 == 0 ? "DEPOSIT" : "WITHDRAW",
+                    100L * (i + 1), 0L, null);
+            transaction.setCreateAt(START.plusMinutes(i / 4));
+            transactions.add(transaction);
+        }
+        Set<UUID> ids = new HashSet<>();
+        transactionRepository.saveAll(transactions).forEach(transaction -> ids.add(transaction.getId()));
+        return ids;
+    }
+}
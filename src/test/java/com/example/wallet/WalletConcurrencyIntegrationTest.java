@@ -0,0 +1,312 @@
+package com.example.wallet;
+
+import com.example.wallet.model.TimeOrderedUuidGenerator;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.TransactionRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.HotWalletService;
+import com.example.wallet.service.WalletOperationExecutor;
+import com.example.wallet.service.WalletService;
+import com.example.wallet.service.WalletTransfer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Интеграционный тест конкурентного изменения балансов.
+ * Запускается на встроенной базе H2 в режиме совместимости с PostgreSQL (профиль it)
+ * и не требует сети или внешней базы данных.
+ * <p>
+ * Каждый сценарий создает свои кошельки и параллельно выполняет смесь пополнений
+ * и снятий. Потерянное обновление обнаруживается сверкой: итоговый баланс каждого кошелька
+ * должен равняться начальному плюс сумма примененных пополнений минус сумма примененных снятий,
+ * а записи журнала — совпадать с примененными операциями. Для сценария в лог выводятся
+ * пропускная способность и перцентили задержки.
+ * <p>
+ * Сценарии задаются свойством wallet.it.scenarios: через точку с запятой, каждый в виде
+ * "имя,кошельки,потоки,операции,процент снятий,путь[,ячейки]", где путь — service (одиночная операция
+ * WalletService) или executor (прием через журнал принятых операций
+ * и очередь полос с пакетной фиксацией), а ячейки — количество ячеек
+ * баланса в режиме горячего кошелька (по умолчанию 0, обычные кошельки).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("it")
+class WalletConcurrencyIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletConcurrencyIntegrationTest.class);
+
+    private static final String DEFAULT_SCENARIOS = "hot-wallets-service,2,64,4000,50,service;"
+            + "many-wallets-service,500,32,4000,50,service;"
+            + "hot-wallets-executor,2,64,4000,50,executor;"
+            + "hot-wallets-slots-service,2,64,4000,50,service,8;"
+            + "hot-wallets-slots-executor,2,64,4000,50,executor,8;"
+            + "many-wallets-executor-withdraw-heavy,500,32,4000,80,executor";
+
+    private static final long INITIAL_BALANCE = 10_000L;
+    private static final int MAX_AMOUNT = 1_000;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletOperationExecutor walletOperationExecutor;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private HotWalletService hotWalletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Параметры сценария нагрузки.
+     */
+    record Scenario(String name, int wallets, int threads, int operations, int withdrawPercent, String path,
+                    int slots) {
+
+        static Scenario parse(String value) {
+            String[] parts = value.trim().split(",");
+            return new Scenario(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Integer.parseInt(parts[3]), Integer.parseInt(parts[4]), parts[5],
+                    parts.length > 6 ? Integer.parseInt(parts[6]) : 0);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static List<Scenario> scenarios() {
+        return Arrays.stream(System.getProperty("wallet.it.scenarios", DEFAULT_SCENARIOS).split(";"))
+                .filter(value -> !value.isBlank())
+                .map(Scenario::parse)
+                .toList();
+    }
+
+    /**
+     * Тестирует, что при параллельных операциях не теряется ни одно обновление:
+     * итоговые балансы и журнал совпадают с суммой примененных операций, балансы не отрицательны.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("scenarios")
+    void concurrentOperations_ShouldNotLoseUpdates(Scenario scenario) throws Exception {
+        List<UUID> walletIds = createWallets(scenario.wallets());
+        if (scenario.slots() > 0) {
+            walletIds.forEach(walletId -> hotWalletService.setSlots(walletId, scenario.slots()));
+        }
+        Map<UUID, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < walletIds.size(); i++) {
+            indexes.put(walletIds.get(i), i);
+        }
+        AtomicLongArray appliedDelta = new AtomicLongArray(walletIds.size());
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        long[] latencies = new long[scenario.operations()];
+        AtomicInteger next = new AtomicInteger();
+        List<Throwable> unexpected = new ArrayList<>();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(scenario.threads());
+        for (int t = 0; t < scenario.threads(); t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            workers.add(Thread.ofPlatform().name("it-worker-" + t).start(() -> {
+                try {
+                    start.await();
+                    for (int op = next.getAndIncrement(); op < scenario.operations(); op = next.getAndIncrement()) {
+                        UUID walletId = walletIds.get(random.nextInt(walletIds.size()));
+                        boolean withdraw = random.nextInt(100) < scenario.withdrawPercent();
+                        long amount = 1 + random.nextInt(MAX_AMOUNT);
+                        long started = System.nanoTime();
+                        try {
+                            execute(scenario.path(), walletId, withdraw ? "WITHDRAW" : "DEPOSIT", amount);
+                            appliedDelta.addAndGet(indexes.get(walletId), withdraw ? -amount : amount);
+                            applied.incrementAndGet();
+                        } catch (IllegalArgumentException e) {
+                            assertEquals("Not enough balance", e.getMessage());
+                            rejected.incrementAndGet();
+                        }
+                        latencies[op] = System.nanoTime() - started;
+                    }
+                } catch (Throwable e) {
+                    synchronized (unexpected) {
+                        unexpected.add(e);
+                    }
+                }
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.MINUTES.toMillis(5));
+        }
+        long elapsed = System.nanoTime() - started;
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+        report(scenario, elapsed, latencies, applied.get(), rejected.get());
+
+        Map<UUID, long[]> ledger = ledgerTotals(walletIds);
+        long ledgerRows = 0;
+        for (int i = 0; i < walletIds.size(); i++) {
+            UUID walletId = walletIds.get(i);
+            long balance = walletRepository.findTotalBalance(walletId).orElseThrow();
+            long[] totals = ledger.getOrDefault(walletId, new long[2]);
+            assertEquals(INITIAL_BALANCE + appliedDelta.get(i), balance, "Lost update on wallet " + walletId);
+            assertEquals(appliedDelta.get(i), totals[0], "Ledger does not match balance of wallet " + walletId);
+            assertTrue(balance >= 0, "Negative balance on wallet " + walletId);
+            ledgerRows += totals[1];
+        }
+        assertEquals(applied.get(), ledgerRows);
+        assertEquals(scenario.operations(), applied.get() + rejected.get());
+    }
+
+    /**
+     * Тестирует встречные переводы между небольшим набором кошельков, одиночные и пакетами:
+     * транзакции, блокирующие одни и те же кошельки в разных сочетаниях, не блокируют друг друга взаимно,
+     * сумма балансов не меняется, а журнал каждого кошелька совпадает с его балансом.
+     */
+    @Test
+    void concurrentTransfers_ShouldNotDeadlockAndPreserveTotal() throws Exception {
+        List<UUID> walletIds = createWallets(6);
+        int threads = 32;
+        int rounds = 100;
+        int batchSize = 10;
+        List<Throwable> unexpected = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            boolean batched = t % 2 == 0;
+            workers.add(Thread.ofPlatform().name("it-transfer-" + t).start(() -> {
+                try {
+                    start.await();
+                    for (int round = 0; round < rounds; round++) {
+                        List<WalletTransfer> transfers = new ArrayList<>(batchSize);
+                        for (int i = 0; i < (batched ? batchSize : 1); i++) {
+                            int from = random.nextInt(walletIds.size());
+                            int to = (from + 1 + random.nextInt(walletIds.size() - 1)) % walletIds.size();
+                            transfers.add(new WalletTransfer(walletIds.get(from), walletIds.get(to),
+                                    1 + random.nextInt(MAX_AMOUNT), null));
+                        }
+                        if (batched) {
+                            walletService.applyTransfers(transfers);
+                        } else {
+                            WalletTransfer transfer = transfers.get(0);
+                            try {
+                                walletService.transfer(transfer.getFromWalletId(), transfer.getToWalletId(),
+                                        transfer.getAmount(), null);
+                            } catch (IllegalArgumentException e) {
+                                assertEquals("Not enough balance", e.getMessage());
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (unexpected) {
+                        unexpected.add(e);
+                    }
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.MINUTES.toMillis(5));
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+        Map<UUID, long[]> ledger = ledgerTotals(walletIds);
+        long total = 0;
+        for (UUID walletId : walletIds) {
+            long balance = walletRepository.findTotalBalance(walletId).orElseThrow();
+            assertTrue(balance >= 0, "Negative balance on wallet " + walletId);
+            assertEquals(balance - INITIAL_BALANCE, ledger.getOrDefault(walletId, new long[2])[0],
+                    "Ledger does not match balance of wallet " + walletId);
+            total += balance;
+        }
+        assertEquals(INITIAL_BALANCE * walletIds.size(), total);
+    }
+
+    private void execute(String path, UUID walletId, String operationType, long amount) throws Exception {
+        switch (path) {
+            case "service" -> walletService.performOperation(walletId, operationType, amount);
+            case "executor" -> {
+                try {
+                    walletOperationExecutor.accept(TimeOrderedUuidGenerator.next(), walletId, operationType, amount, null)
+                            .get(30, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IllegalArgumentException cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown path: " + path);
+        }
+    }
+
+    private List<UUID> createWallets(int count) {
+        List<Wallet> wallets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Wallet wallet = new Wallet();
+            wallet.setBalance(INITIAL_BALANCE);
+            wallets.add(wallet);
+        }
+        return walletRepository.saveAll(wallets).stream().map(Wallet::getId).toList();
+    }
+
+    /**
+     * Суммы журнала по кошелькам в копейках: изменение баланса и количество записей.
+     */
+    private Map<UUID, long[]> ledgerTotals(List<UUID> walletIds) {
+        Map<UUID, long[]> totals = new HashMap<>();
+        jdbcTemplate.query("SELECT wallet_id, "
+                        + "CAST(ROUND(SUM(" + TransactionRepository.SIGNED_AMOUNT + ") * 100) AS BIGINT), "
+                        + "COUNT(*) FROM transaction GROUP BY wallet_id",
+                (ResultSet row) -> {
+                    UUID walletId = row.getObject(1, UUID.class);
+                    if (walletIds.contains(walletId)) {
+                        totals.put(walletId, new long[]{row.getLong(2), row.getLong(3)});
+                    }
+                });
+        return totals;
+    }
+
+    private static void report(Scenario scenario, long elapsedNanos, long[] latencies, int applied, int rejected) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        log.info(String.format("%-40s wallets=%d threads=%d ops=%d applied=%d rejected=%d "
+                        + "throughput=%.0f ops/s latency ms p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f",
+                scenario.name(), scenario.wallets(), scenario.threads(), latencies.length, applied, rejected,
+                latencies.length / (elapsedNanos / 1e9),
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+                sorted[sorted.length - 1] / 1e6));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.wallet;
+
+import com.example.wallet.model.ReconciliationMismatch;
+import com.example.wallet.model.ReconciliationRun;
+import com.example.wallet.repository.ReconciliationRepository;
+import com.example.wallet.service.ReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Интеграционный тест сверки балансов кошельков с журналом на встроенной базе H2 (профиль it).
+ * База общая с другими интеграционными тестами, поэтому проверяются только кошельки,
+ * созданные в тесте.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("it")
+class WalletReconciliationIntegrationTest {
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private ReconciliationRepository reconciliationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Тестирует сверку: в отчет попадает только кошелек, баланс которого расходится с журналом,
+     * а баланс горячего кошелька учитывается вместе с ячейками.
+     */
+    @Test
+    void run_ShouldReportOnlyMismatchedWallets() {
+        UUID balanced = createWallet(UUID.randomUUID(), 300);
+        deposit(balanced, 500);
+        withdraw(balanced, 200);
+        UUID hot = createWallet(UUID.randomUUID(), 100);
+        createSlot(hot, 250);
+        deposit(hot, 350);
+        UUID broken = createWallet(UUID.randomUUID(), 1000);
+        deposit(broken, 900);
+
+        ReconciliationRun run = reconciliationService.run().orElseThrow();
+
+        assertNotNull(run.getFinishedAt());
+        assertEquals(run.getRanges(), run.getCheckedRanges());
+        assertTrue(run.getWallets() >= 3);
+        Map<UUID, ReconciliationMismatch> mismatches = findMismatches(run.getId());
+        assertFalse(mismatches.containsKey(balanced));
+        assertFalse(mismatches.containsKey(hot));
+        ReconciliationMismatch mismatch = mismatches.get(broken);
+        assertNotNull(mismatch);
+        assertEquals(100_000, mismatch.getWalletBalance());
+        assertEquals(90_000, mismatch.getLedgerBalance());
+    }
+
+    /**
+     * Тестирует продолжение прерванной сверки: уже проверенный диапазон не проверяется повторно,
+     * а остальные диапазоны проверяются и сверка завершается.
+     */
+    @Test
+    void run_ShouldResumeUnfinishedRun_WhenRangesAlreadyChecked() {
+        UUID inCheckedRange = createWallet(new UUID(ThreadLocalRandom.current().nextLong() >>> 8,
+                ThreadLocalRandom.current().nextLong()), 700);
+        UUID inLastRange = createWallet(new UUID(ThreadLocalRandom.current().nextLong() | 0xF000_0000_0000_0000L,
+                ThreadLocalRandom.current().nextLong()), 800);
+        ReconciliationRun interrupted = reconciliationRepository.createRun(4);
+        reconciliationRepository.saveRange(interrupted.getId(), 0, 0, List.of(), 0);
+
+        ReconciliationRun run = reconciliationService.run().orElseThrow();
+
+        assertEquals(interrupted.getId(), run.getId());
+        assertNotNull(run.getFinishedAt());
+        assertEquals(4, run.getCheckedRanges());
+        Map<UUID, ReconciliationMismatch> mismatches = findMismatches(run.getId());
+        assertFalse(mismatches.containsKey(inCheckedRange));
+        assertEquals(80_000, mismatches.get(inLastRange).getWalletBalance());
+        assertEquals(0, mismatches.get(inLastRange).getLedgerBalance());
+    }
+
+    private Map<UUID, ReconciliationMismatch> findMismatches(UUID runId) {
+        return reconciliationRepository.findMismatches(runId, Integer.MAX_VALUE).stream()
+                .collect(Collectors.toMap(ReconciliationMismatch::getWalletId, Function.identity()));
+    }
+
+    private UUID createWallet(UUID walletId, long balance) {
+        jdbcTemplate.update("INSERT INTO wallet (id, balance) VALUES (?, ?)", walletId, BigDecimal.valueOf(balance));
+        return walletId;
+    }
+
+    private void createSlot(UUID walletId, long balance) {
+        jdbcTemplate.update("UPDATE wallet SET slots = 1 WHERE id = ?", walletId);
+        jdbcTemplate.update("INSERT INTO wallet_slot (wallet_id, slot, balance) VALUES (?, 0, ?)", walletId,
+                BigDecimal.valueOf(balance));
+    }
+
+    private void deposit(UUID walletId, long amount) {
+        insertTransaction(walletId, "DEPOSIT", amount);
+    }
+
+    private void withdraw(UUID walletId, long amount) {
+        insertTransaction(walletId, "WITHDRAW", amount);
+    }
+
+    private void insertTransaction(UUID walletId, String type, long amount) {
+        jdbcTemplate.update("INSERT INTO transaction (id, wallet_id, type, amount, created_at) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), walletId, type, BigDecimal.valueOf(amount), LocalDateTime.now());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.wallet;
+
+import com.example.wallet.model.Transaction;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.TransactionRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.ReadRouting;
+import com.example.wallet.service.TransactionHistoryService;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Интеграционный тест чтения с реплики на двух встроенных базах H2 (профиль it):
+ * вторая база в памяти играет роль реплики. Основная база своя, а не общая с другими тестами:
+ * контекст с другими свойствами повторно применял бы миграции к уже размеченной базе. Схема реплики копируется из основной базы,
+ * а данные в ней расходятся с основной, поэтому по результату чтения видно, из какой базы оно выполнено.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:wallet_primary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                + "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+        "wallet.replica.enabled=true",
+        "wallet.replica.datasource.jdbc-url=jdbc:h2:mem:wallet_replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;"
+                + "DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+        "wallet.replica.datasource.username=sa",
+        "wallet.replica.lag-query=SELECT 0",
+        "wallet.replica.max-lag-ms=0",
+        "wallet.replica.lag-check-ms=200",
+        "wallet.replica.pin-ms=1000",
+        "wallet.cache.enabled=false"})
+@ActiveProfiles("it")
+class WalletReplicaIntegrationTest {
+
+    private static final long PRIMARY_BALANCE = 10_000L;
+    private static final long REPLICA_BALANCE = 5_000L;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private TransactionHistoryService historyService;
+
+    @Autowired
+    private ReadRouting readRouting;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        replica = new JdbcTemplate(replicaDataSource);
+        Integer tables = replica.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'wallet'", Integer.class);
+        if (tables == 0) {
+            for (String statement : jdbcTemplate.queryForList("SCRIPT NODATA", String.class)) {
+                replica.execute(statement);
+            }
+        }
+        readRouting.checkLag();
+        assertTrue(readRouting.isReplicaAvailable());
+    }
+
+    /**
+     * Тестирует, что баланс читается с реплики, после изменения кошелька — из основной базы,
+     * а по истечении закрепления — снова с реплики. Изменение в реплику не попадает.
+     */
+    @Test
+    void getBalance_ShouldReadPrimaryOnlyWhilePinned_WhenWalletChanged() throws InterruptedException {
+        UUID walletId = createWallet();
+        UUID otherWalletId = createWallet();
+
+        assertEquals(REPLICA_BALANCE, walletService.getBalance(walletId));
+
+        assertEquals(PRIMARY_BALANCE + 100, walletService.performOperation(walletId, "DEPOSIT", 100));
+
+        assertEquals(PRIMARY_BALANCE + 100, walletService.getBalance(walletId));
+        assertEquals(REPLICA_BALANCE, walletService.getBalance(otherWalletId));
+        assertEquals(0, new BigDecimal("50.00").compareTo(replica.queryForObject(
+                "SELECT balance FROM wallet WHERE id = ?", BigDecimal.class, walletId)));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (walletService.getBalance(walletId) != REPLICA_BALANCE && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(REPLICA_BALANCE, walletService.getBalance(walletId));
+    }
+
+    /**
+     * Тестирует, что страница истории и выгрузка незакрепленного кошелька читаются с реплики.
+     */
+    @Test
+    void getHistory_ShouldReadReplica_WhenWalletNotPinned() throws Exception {
+        UUID walletId = createWallet();
+        transactionRepository.save(new Transaction(walletId, "DEPOSIT", 100, PRIMARY_BALANCE, null));
+
+        assertTrue(historyService.getHistory(walletId, null, null, null, null, null).getTransactions().isEmpty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, historyService.export(walletId, null, null, null, out));
+        assertEquals(1, transactionRepository.findAll().stream()
+                .filter(transaction -> walletId.equals(transaction.getWalletId()))
+                .count());
+    }
+
+    /**
+     * Создает кошелек в основной базе и его копию с другим балансом в реплике.
+     */
+    private UUID createWallet() {
+        Wallet wallet = new Wallet();
+        wallet.setBalance(PRIMARY_BALANCE);
+        UUID walletId = walletRepository.save(wallet).getId();
+        replica.update("INSERT INTO wallet (id, balance, slots) VALUES (?, ?, 0)",
+                walletId, BigDecimal.valueOf(REPLICA_BALANCE, 2));
+        return walletId;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.wallet;
+
+import com.example.wallet.model.Transaction;
+import com.example.wallet.model.Wallet;
+import com.example.wallet.model.WalletSnapshot;
+import com.example.wallet.repository.TransactionRepository;
+import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.repository.WalletSnapshotRepository;
+import com.example.wallet.service.LedgerBalance;
+import com.example.wallet.service.SnapshotRun;
+import com.example.wallet.service.WalletLedgerService;
+import com.example.wallet.service.WalletSnapshotJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Интеграционный тест снимков балансов по журналу на встроенной базе H2 (профиль it).
+ * Проверяет, что проход создания снимков учитывает только устоявшиеся записи журнала,
+ * сдвигает снимок инкрементально, а восстановление баланса читает только записи после снимка.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("it")
+class WalletSnapshotIntegrationTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @Autowired
+    private WalletSnapshotJob snapshotJob;
+
+    @Autowired
+    private WalletLedgerService ledgerService;
+
+    @Autowired
+    private WalletSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    /**
+     * Тестирует восстановление баланса после снимка: записи, созданные позже границы прохода,
+     * не попадают в снимок и читаются при восстановлении, а итог совпадает с балансом кошелька.
+     */
+    @Test
+    void rebuild_ShouldReplayOnlyTransactionsAfterSnapshot() {
+        UUID walletId = createWallet();
+        long settled = seed(walletId, 10, START);
+        long recent = seed(walletId, 3, LocalDateTime.now());
+        setBalance(walletId, settled + recent);
+
+        SnapshotRun run = snapshotJob.run().orElseThrow();
+
+        assertTrue(run.getScanned() > 0);
+        assertEquals(0, run.getFailedBatches());
+        WalletSnapshot snapshot = snapshotRepository.findByWalletId(walletId).orElseThrow();
+        assertEquals(settled, snapshot.getBalance());
+        assertEquals(10, snapshot.getTransactions());
+
+        LedgerBalance balance = ledgerService.rebuild(walletId);
+        assertEquals(3, balance.getReplayedTransactions());
+        assertEquals(settled + recent, balance.getLedgerBalance());
+        assertEquals(balance.getWalletBalance(), balance.getLedgerBalance());
+    }
+
+    /**
+     * Тестирует сдвиг снимка: повторный проход добавляет к снимку только новые записи журнала.
+     */
+    @Test
+    void run_ShouldAdvanceSnapshotIncrementally_WhenNewTransactionsSettle() {
+        UUID walletId = createWallet();
+        long first = seed(walletId, 6, START);
+        snapshotJob.run().orElseThrow();
+        WalletSnapshot before = snapshotRepository.findByWalletId(walletId).orElseThrow();
+
+        long second = seed(walletId, 5, START.plusHours(1));
+        snapshotJob.run().orElseThrow();
+
+        WalletSnapshot after = snapshotRepository.findByWalletId(walletId).orElseThrow();
+        assertEquals(first, before.getBalance());
+        assertEquals(first + second, after.getBalance());
+        assertEquals(11, after.getTransactions());
+        assertTrue(after.getLastCreatedAt().isAfter(before.getLastCreatedAt()));
+        assertEquals(0, ledgerService.rebuild(walletId).getReplayedTransactions());
+    }
+
+    /**
+     * Тестирует снимок по записям с одинаковым временем создания: последней учтенной записью
+     * становится запись с наибольшим ключом (created_at, id), и после снимка ничего не остается.
+     */
+    @Test
+    void run_ShouldRecordLastTransactionByKey_WhenTransactionsShareCreationTime() {
+        UUID walletId = createWallet();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Transaction transaction = new Transaction(walletId, "DEPOSIT", 100L, 0L, null);
+            transaction.setCreateAt(START);
+            transactions.add(transaction);
+        }
+        transactionRepository.saveAll(transactions);
+        setBalance(walletId, 400L);
+
+        snapshotJob.run().orElseThrow();
+
+        WalletSnapshot snapshot = snapshotRepository.findByWalletId(walletId).orElseThrow();
+        assertEquals(400L, snapshot.getBalance());
+        assertEquals(4, snapshot.getTransactions());
+        assertEquals(START, snapshot.getLastCreatedAt());
+        LedgerBalance balance = ledgerService.rebuild(walletId);
+        assertEquals(0, balance.getReplayedTransactions());
+        assertEquals(400L, balance.getLedgerBalance());
+    }
+
+    /**
+     * Тестирует восстановление баланса несуществующего кошелька.
+     */
+    @Test
+    void rebuild_ShouldThrowException_WhenWalletNotFound() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> ledgerService.rebuild(UUID.randomUUID()));
+        assertEquals("Wallet not found", exception.getMessage());
+    }
+
+    private UUID createWallet() {
+        return walletRepository.save(new Wallet()).getId();
+    }
+
+    private void setBalance(UUID walletId, long balance) {
+        Wallet wallet = walletRepository.findById(walletId).orElseThrow();
+        wallet.setBalance(balance);
+        walletRepository.save(wallet);
+    }
+
+    /**
+     * Создает операции кошелька по секунде друг за другом, начиная с момента start:
+     * три пополнения на каждое снятие.
+     *
+     * @return изменение баланса по созданным операциям в копейках
+     */
+    private long seed(UUID walletId, int count, LocalDateTime start) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            boolean withdraw = i % 4 == 3;
+            long amount = 100L * (i + 1);
+            Transaction transaction = new Transaction(walletId, withdraw ? "WITHDRAW" : "DEPOSIT", amount, 0L, null);
+            transaction.setCreateAt(start.plusSeconds(i));
+            transactions.add(transaction);
+            total += withdraw ? -amount : amount;
+        }
+        transactionRepository.saveAll(transactions);
+        return total;
+    }
+}
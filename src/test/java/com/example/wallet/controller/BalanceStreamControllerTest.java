@@ -0,0 +1,92 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.config.WalletStreamProperties;
+import com.example.wallet.service.BalanceEventDispatcher;
+import com.example.wallet.service.BalanceSubscription;
+import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Тестовый класс для контроллера потока балансов (BalanceStreamController).
+ * Проверяет открытие подписки с начальными балансами и обработку ошибок подписки.
+ */
+@WebMvcTest(BalanceStreamController.class)
+@Import(WalletStreamProperties.class)
+class BalanceStreamControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BalanceEventDispatcher dispatcher;
+
+    @MockBean
+    private WalletService walletService;
+
+    /**
+     * Тестирует открытие подписки.
+     * Ожидается асинхронный ответ, начальный баланс в буфере подписки и запланированная отправка.
+     */
+    @Test
+    void subscribe_ShouldStartStreamWithInitialBalance_WhenWalletExists() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        BalanceSubscription subscription = mock(BalanceSubscription.class);
+        when(subscription.getWalletIds()).thenReturn(Set.of(walletId));
+        when(dispatcher.subscribe(anyCollection(), any())).thenReturn(subscription);
+        when(walletService.getCommittedBalances(Set.of(walletId))).thenReturn(Map.of(walletId, 15_000L));
+
+        mockMvc.perform(get("/api/v1/wallets/stream").param("walletId", walletId.toString()))
+                .andExpect(request().asyncStarted());
+
+        verify(subscription).offerInitial(walletId, 15_000L);
+        verify(dispatcher).schedule(subscription);
+    }
+
+    /**
+     * Тестирует подписку на несуществующий кошелек.
+     * Ожидается ответ с кодом 404 и отмена подписки.
+     */
+    @Test
+    void subscribe_ShouldReturnNotFound_WhenWalletDoesNotExist() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        BalanceSubscription subscription = mock(BalanceSubscription.class);
+        when(subscription.getWalletIds()).thenReturn(Set.of(walletId));
+        when(dispatcher.subscribe(anyCollection(), any())).thenReturn(subscription);
+        when(walletService.getCommittedBalances(Set.of(walletId))).thenReturn(Map.of());
+
+        mockMvc.perform(get("/api/v1/wallets/stream").param("walletId", walletId.toString()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Wallet not found"));
+
+        verify(dispatcher).unsubscribe(subscription);
+        verify(dispatcher, never()).schedule(any());
+    }
+
+    /**
+     * Тестирует отказ в подписке сверх наибольшего числа подписок.
+     * Ожидается ответ с кодом 503.
+     */
+    @Test
+    void subscribe_ShouldReturnServiceUnavailable_WhenTooManySubscribers() throws Exception {
+        when(dispatcher.subscribe(anyCollection(), any())).thenThrow(new IllegalStateException("Too many subscribers"));
+
+        mockMvc.perform(get("/api/v1/wallets/stream").param("walletId", UUID.randomUUID().toString()))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("Too many subscribers"));
+    }
+}
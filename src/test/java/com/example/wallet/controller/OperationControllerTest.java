@@ -0,0 +1,120 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.config.OperationTrackingProperties;
+import com.example.wallet.service.OperationTracker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Тестовый класс для контроллера статусов операций (OperationController).
+ * Проверяет получение статуса, ожидание завершения операции и обработку неизвестной операции.
+ */
+@WebMvcTest(OperationController.class)
+class OperationControllerTest {
+
+    @TestConfiguration
+    static class TrackerConfig {
+
+        @Bean
+        OperationTrackingProperties operationTrackingProperties() {
+            return new OperationTrackingProperties();
+        }
+
+        @Bean
+        OperationTracker operationTracker(OperationTrackingProperties properties) {
+            return new OperationTracker(properties);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OperationTracker operationTracker;
+
+    /**
+     * Тестирует получение статуса отклонённой операции.
+     * Ожидается статус REJECTED и причина отказа.
+     */
+    @Test
+    void getStatus_ShouldReturnRejected_WhenOperationFailed() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        UUID operationId = UUID.randomUUID();
+        operationTracker.track(operationId, walletId, "WITHDRAW", 50_000L, null,
+                CompletableFuture.failedFuture(new IllegalArgumentException("Not enough balance")));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/wallets/operations/{operationId}", operationId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.walletId").value(walletId.toString()))
+                .andExpect(jsonPath("$.status").value("REJECTED"))
+                .andExpect(jsonPath("$.error").value("Not enough balance"));
+    }
+
+    /**
+     * Тестирует ожидание завершения операции (long-poll).
+     * Ответ отдаётся после завершения операции и содержит новый баланс.
+     */
+    @Test
+    void getStatus_ShouldWaitForCompletion_WhenWaitRequested() throws Exception {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        UUID operationId = UUID.randomUUID();
+        operationTracker.track(operationId, UUID.randomUUID(), "DEPOSIT", 10_000L, null, future);
+
+        MvcResult result = mockMvc.perform(get("/api/v1/wallets/operations/{operationId}", operationId)
+                        .param("waitMs", "5000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        future.complete(110_000L);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("APPLIED"))
+                .andExpect(jsonPath("$.balance").value(1100.0));
+    }
+
+    /**
+     * Тестирует запрос статуса без ожидания для незавершённой операции.
+     * Ожидается статус PENDING.
+     */
+    @Test
+    void getStatus_ShouldReturnPending_WhenNotCompleted() throws Exception {
+        UUID operationId = UUID.randomUUID();
+        operationTracker.track(operationId, UUID.randomUUID(), "DEPOSIT", 10_000L, null, new CompletableFuture<>());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/wallets/operations/{operationId}", operationId))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    /**
+     * Тестирует запрос статуса неизвестной операции.
+     * Ожидается ответ с кодом 404.
+     */
+    @Test
+    void getStatus_ShouldReturnNotFound_WhenOperationUnknown() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/wallets/operations/{operationId}", UUID.randomUUID()))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Operation not found"));
+    }
+}
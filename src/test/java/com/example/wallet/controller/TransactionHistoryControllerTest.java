@@ -0,0 +1,130 @@
+package com.example.wallet.controller;
+
+import com.example.wallet.model.Transaction;
+import com.example.wallet.service.TransactionHistoryService;
+import com.example.wallet.service.TransactionPage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Тестовый класс для контроллера истории операций (TransactionHistoryController).
+ * Проверяет вывод страницы истории, передачу параметров фильтра и обработку ошибок.
+ */
+@WebMvcTest(TransactionHistoryController.class)
+class TransactionHistoryControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TransactionHistoryService historyService;
+
+    /**
+     * Тестирует получение страницы истории.
+     * Ожидаются операции страницы и курсор следующей страницы.
+     */
+    @Test
+    void getHistory_ShouldReturnPageWithNextCursor_WhenMoreTransactionsExist() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        Transaction transaction = new Transaction(walletId, "DEPOSIT", 12_550L, 20_000L, "key-1");
+        transaction.setId(UUID.randomUUID());
+        transaction.setCreateAt(LocalDateTime.of(2024, 3, 1, 12, 0));
+        when(historyService.getHistory(eq(walletId), eq(LocalDateTime.of(2024, 3, 1, 0, 0)), isNull(),
+                eq("DEPOSIT"), isNull(), eq(1)))
+                .thenReturn(new TransactionPage(List.of(transaction), "next"));
+
+        mockMvc.perform(get("/api/v1/wallets/{walletId}/transactions", walletId)
+                        .param("from", "2024-03-01T00:00:00")
+                        .param("type", "DEPOSIT")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.walletId").value(walletId.toString()))
+                .andExpect(jsonPath("$.transactions[0].id").value(transaction.getId().toString()))
+                .andExpect(jsonPath("$.transactions[0].amount").value(125.5))
+                .andExpect(jsonPath("$.transactions[0].balanceAfter").value(200.0))
+                .andExpect(jsonPath("$.transactions[0].createdAt").value("2024-03-01T12:00:00"))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    /**
+     * Тестирует получение истории несуществующего кошелька.
+     * Ожидается ответ с кодом 404.
+     */
+    @Test
+    void getHistory_ShouldReturnNotFound_WhenWalletDoesNotExist() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(historyService.getHistory(eq(walletId), isNull(), isNull(), isNull(), isNull(), isNull()))
+                .thenThrow(new IllegalArgumentException("Wallet not found"));
+
+        mockMvc.perform(get("/api/v1/wallets/{walletId}/transactions", walletId))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Wallet not found"));
+    }
+
+    /**
+     * Тестирует получение истории с некорректным курсором.
+     * Ожидается ответ с кодом 400.
+     */
+    @Test
+    void getHistory_ShouldReturnBadRequest_WhenCursorIsInvalid() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(historyService.getHistory(eq(walletId), isNull(), isNull(), isNull(), eq("broken"), isNull()))
+                .thenThrow(new IllegalArgumentException("Invalid cursor"));
+
+        mockMvc.perform(get("/api/v1/wallets/{walletId}/transactions", walletId).param("cursor", "broken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid cursor"));
+    }
+
+    /**
+     * Тестирует выгрузку истории.
+     * Ожидается поток NDJSON, записанный сервисом.
+     */
+    @Test
+    void export_ShouldStreamNdjson_WhenWalletExists() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        String line = "{\"id\":\"1\"}\n";
+        when(historyService.export(eq(walletId), isNull(), isNull(), isNull(), any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(4, OutputStream.class).write(line.getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        mockMvc.perform(get("/api/v1/wallets/{walletId}/transactions/export", walletId))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(line));
+    }
+
+    /**
+     * Тестирует выгрузку истории несуществующего кошелька.
+     * Ожидается ответ с кодом 404 и сообщением об ошибке в JSON.
+     */
+    @Test
+    void export_ShouldReturnNotFound_WhenWalletDoesNotExist() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(historyService.export(eq(walletId), isNull(), isNull(), isNull(), any(OutputStream.class)))
+                .thenThrow(new IllegalArgumentException("Wallet not found"));
+
+        mockMvc.perform(get("/api/v1/wallets/{walletId}/transactions/export", walletId))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Wallet not found"));
+    }
+}
@@ -1,8 +1,17 @@
 package com.example.wallet.controller;
 
 import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.service.BalanceLookupService;
+import com.example.wallet.service.BulkOperationService;
+import com.example.wallet.service.OperationAdmission;
+import com.example.wallet.service.OperationTracker;
+import com.example.wallet.service.TrackedOperation;
+import com.example.wallet.service.TransferService;
+import com.example.wallet.service.WalletOperationExecutor;
 import com.example.wallet.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -10,9 +19,16 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -30,9 +46,32 @@ class WalletControllerTest {
     @MockBean
     private WalletService walletService;
 
+    @MockBean
+    private WalletOperationExecutor walletOperationExecutor;
+
+    @MockBean
+    private BulkOperationService bulkOperationService;
+
+    @MockBean
+    private BalanceLookupService balanceLookupService;
+
+    @MockBean
+    private OperationTracker operationTracker;
+
     @MockBean
     private WalletRepository walletRepository;
 
+    @MockBean
+    private OperationAdmission operationAdmission;
+
+    @MockBean
+    private TransferService transferService;
+
+    @BeforeEach
+    void setUp() {
+        when(operationAdmission.tryAcquire()).thenReturn(true);
+    }
+
     /**
      * Тестирует получение баланса кошелька, если кошелёк существует.
      * Проверяет, что возвращается правильный баланс.
@@ -41,13 +80,12 @@ class WalletControllerTest {
     void getBalance_ShouldReturnBalance_WhenWalletExists() throws Exception {
 
         UUID walletId = UUID.randomUUID();
-        double balance = 5000.0;
-        when(walletService.getBalance(walletId)).thenReturn(balance);
+        when(walletService.getBalance(walletId)).thenReturn(500_012L);
 
         mockMvc.perform(get("/api/v1/wallets/{walletId}", walletId))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.walletId").value(walletId.toString()))
-                .andExpect(jsonPath("$.balance").value(balance));
+                .andExpect(jsonPath("$.balance").value(5000.12));
     }
 
     /**
@@ -66,25 +104,28 @@ class WalletControllerTest {
 
     /**
      * Тестирует успешное выполнение операции, если входные данные корректны.
-     * Проверяется, что ответ содержит данные о кошельке и операции.
+     * Проверяется, что сумма переводится в копейки без потери точности, а ответ содержит
+     * идентификатор операции и данные о кошельке и операции.
      */
     @Test
     void performOperation_ShouldReturnSuccess_WhenOperationValid() throws Exception {
         UUID walletId = UUID.randomUUID();
         String operationType = "DEPOSIT";
-        double amount = 1000.0;
+        long amount = 100_010L;
 
         // Мокируем асинхронный метод
-        CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
-        Mockito.when(walletService.performOperationAsync(walletId, operationType, amount)).thenReturn(future);
+        CompletableFuture<Long> future = CompletableFuture.completedFuture(amount);
+        ArgumentCaptor<UUID> operationIdCaptor = ArgumentCaptor.forClass(UUID.class);
+        Mockito.when(walletOperationExecutor.accept(operationIdCaptor.capture(), eq(walletId), eq(operationType),
+                eq(amount), isNull())).thenReturn(future);
 
         String requestBody = String.format("""
                 {
                   "walletId": "%s",
                   "operationType": "%s",
-                  "amount": %s
+                  "amount": 1000.10
                 }
-                """, walletId, operationType, amount);
+                """, walletId, operationType);
 
         mockMvc.perform(post("/api/v1/wallets")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -92,7 +133,130 @@ class WalletControllerTest {
                 .andExpect(status().isAccepted()) // Ожидаем статус 202
                 .andExpect(jsonPath("$.walletId").value(walletId.toString()))
                 .andExpect(jsonPath("$.operation").value(operationType))
-                .andExpect(jsonPath("$.amount").value(amount));
+                .andExpect(jsonPath("$.amount").value(1000.1))
+                .andExpect(result -> {
+                    // Клиент получает идентификатор, под которым операция записана в журнал и зарегистрирована
+                    UUID operationId = operationIdCaptor.getValue();
+                    header().string("Location", "/api/v1/wallets/operations/" + operationId).match(result);
+                    jsonPath("$.operationId").value(operationId.toString()).match(result);
+                    verify(operationTracker).track(operationId, walletId, operationType, amount, null, future);
+                });
+    }
+
+    /**
+     * Тестирует повторный запрос с ключом идемпотентности уже принятой операции.
+     * Ожидается идентификатор первой операции без повторной постановки в очередь.
+     */
+    @Test
+    void performOperation_ShouldReturnOriginalOperation_WhenIdempotencyKeyRepeated() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        UUID operationId = UUID.randomUUID();
+        when(operationTracker.findByIdempotencyKey("retry-1")).thenReturn(Optional.of(new TrackedOperation(
+                operationId, walletId, "DEPOSIT", 10_000L, CompletableFuture.completedFuture(60_000L))));
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operationBody(walletId, "DEPOSIT", 100.0)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/wallets/operations/" + operationId))
+                .andExpect(jsonPath("$.operationId").value(operationId.toString()));
+
+        verifyNoInteractions(walletOperationExecutor);
+    }
+
+    /**
+     * Тестирует повтор ключа идемпотентности с другой суммой операции.
+     * Ожидается ответ с кодом 422.
+     */
+    @Test
+    void performOperation_ShouldReturnUnprocessable_WhenIdempotencyKeyReusedWithDifferentAmount() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(operationTracker.findByIdempotencyKey("retry-1")).thenReturn(Optional.of(new TrackedOperation(
+                UUID.randomUUID(), walletId, "DEPOSIT", 10_000L, new CompletableFuture<>())));
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operationBody(walletId, "DEPOSIT", 250.0)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value("Idempotency key reused with different parameters"));
+
+        verifyNoInteractions(walletOperationExecutor);
+    }
+
+    /**
+     * Тестирует слишком длинный ключ идемпотентности.
+     * Ожидается ответ с кодом 400.
+     */
+    @Test
+    void performOperation_ShouldReturnBadRequest_WhenIdempotencyKeyTooLong() throws Exception {
+        mockMvc.perform(post("/api/v1/wallets")
+                        .header("Idempotency-Key", "k".repeat(65))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operationBody(UUID.randomUUID(), "DEPOSIT", 100.0)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid Idempotency-Key"));
+    }
+
+    /**
+     * Тестирует ситуацию, когда очередь полосы кошелька заполнена.
+     * Ожидается ответ с кодом 503 и сообщением об ошибке.
+     */
+    @Test
+    void performOperation_ShouldReturnServiceUnavailable_WhenQueueIsFull() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        when(walletOperationExecutor.accept(any(UUID.class), eq(walletId), eq("DEPOSIT"), eq(10_000L), isNull()))
+                .thenThrow(new RejectedExecutionException("Operation queue is full"));
+
+        String requestBody = String.format("""
+                {
+                  "walletId": "%s",
+                  "operationType": "DEPOSIT",
+                  "amount": 100.0
+                }
+                """, walletId);
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("Operation queue is full"));
+
+        verify(operationAdmission).release();
+    }
+
+    /**
+     * Тестирует ситуацию, когда достигнуто ограничение числа операций в работе.
+     * Ожидается ответ с кодом 429 и заголовком Retry-After без постановки операции в очередь.
+     */
+    @Test
+    void performOperation_ShouldReturnTooManyRequests_WhenAdmissionLimitReached() throws Exception {
+        when(operationAdmission.tryAcquire()).thenReturn(false);
+        when(operationAdmission.getRetryAfterSeconds()).thenReturn(3L);
+
+        mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operationBody(UUID.randomUUID(), "DEPOSIT", 100.0)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.error").value("Too many operations in progress"));
+
+        verifyNoInteractions(walletOperationExecutor);
+    }
+
+    /**
+     * Тестирует сумму с долями копеек.
+     * Ожидается ответ с кодом 400 без постановки операции в очередь.
+     */
+    @Test
+    void performOperation_ShouldReturnBadRequest_WhenAmountHasFractionOfCent() throws Exception {
+        mockMvc.perform(post("/api/v1/wallets")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operationBody(UUID.randomUUID(), "DEPOSIT", 100.005)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(walletOperationExecutor);
     }
 
     /**
@@ -109,4 +273,80 @@ class WalletControllerTest {
                         .param("amount", "100"))
                 .andExpect(status().isBadRequest());
     }
+
+    /**
+     * Тестирует перевод между кошельками.
+     * Ожидается ответ 200 с балансом отправителя после перевода.
+     */
+    @Test
+    void transfer_ShouldReturnSenderBalance_WhenTransferApplied() throws Exception {
+        UUID fromWalletId = UUID.randomUUID();
+        UUID toWalletId = UUID.randomUUID();
+        when(transferService.transfer(fromWalletId, toWalletId, 2_550L, "payout-1")).thenReturn(7_450L);
+
+        mockMvc.perform(post("/api/v1/wallets/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Idempotency-Key", "payout-1")
+                        .content(transferBody(fromWalletId, toWalletId, "25.50")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fromWalletId").value(fromWalletId.toString()))
+                .andExpect(jsonPath("$.toWalletId").value(toWalletId.toString()))
+                .andExpect(jsonPath("$.amount").value(25.5))
+                .andExpect(jsonPath("$.balance").value(74.5));
+    }
+
+    /**
+     * Тестирует перевод при недостатке средств у отправителя.
+     * Ожидается ответ с кодом 409 и сообщением об ошибке.
+     */
+    @Test
+    void transfer_ShouldReturnConflict_WhenNotEnoughBalance() throws Exception {
+        UUID fromWalletId = UUID.randomUUID();
+        UUID toWalletId = UUID.randomUUID();
+        when(transferService.transfer(fromWalletId, toWalletId, 10_000L, null))
+                .thenThrow(new IllegalArgumentException("Not enough balance"));
+
+        mockMvc.perform(post("/api/v1/wallets/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(transferBody(fromWalletId, toWalletId, "100")))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Not enough balance"));
+    }
+
+    /**
+     * Тестирует перевод на тот же кошелек.
+     * Ожидается ответ с кодом 400 без обращения к сервису.
+     */
+    @Test
+    void transfer_ShouldReturnBadRequest_WhenWalletsAreSame() throws Exception {
+        UUID walletId = UUID.randomUUID();
+
+        mockMvc.perform(post("/api/v1/wallets/transfers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(transferBody(walletId, walletId, "1")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid transfer"));
+
+        verifyNoInteractions(transferService);
+    }
+
+    private static String transferBody(UUID fromWalletId, UUID toWalletId, String amount) {
+        return String.format("""
+                {
+                  "fromWalletId": "%s",
+                  "toWalletId": "%s",
+                  "amount": %s
+                }
+                """, fromWalletId, toWalletId, amount);
+    }
+
+    private static String operationBody(UUID walletId, String operationType, double amount) {
+        return String.format("""
+                {
+                  "walletId": "%s",
+                  "operationType": "%s",
+                  "amount": %s
+                }
+                """, walletId, operationType, amount);
+    }
 }
@@ -0,0 +1,59 @@
+package com.example.wallet.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для денежных сумм в копейках (Money).
+ * Проверяет точный разбор сумм, границы и проверку переполнения.
+ */
+class MoneyTest {
+
+    /**
+     * Тестирует разбор корректных сумм в копейки без погрешности.
+     */
+    @Test
+    void parseAmount_ShouldReturnExactCents() {
+        assertEquals(10_000L, Money.parseAmount("100"));
+        assertEquals(10_050L, Money.parseAmount("100.5"));
+        assertEquals(10_001L, Money.parseAmount("100.01"));
+        assertEquals(10L, Money.parseAmount("0.10"));
+        assertEquals(150L, Money.parseAmount("1.500"));
+        assertEquals(Money.MAX_CENTS, Money.parseAmount("9999999999999.99"));
+    }
+
+    /**
+     * Тестирует отказ для некорректных, неположительных и слишком больших сумм.
+     */
+    @Test
+    void parseAmount_ShouldThrowException_WhenAmountInvalid() {
+        for (String value : new String[]{"", "0", "0.00", "-1", "1.001", "1e3", "abc", ".5", "1.2.3",
+                "10000000000000", "99999999999999999999"}) {
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> Money.parseAmount(value), value);
+            assertEquals("Invalid amount", exception.getMessage());
+        }
+    }
+
+    /**
+     * Тестирует сложение на границе numeric(15, 2).
+     */
+    @Test
+    void add_ShouldThrowException_WhenResultExceedsMaximum() {
+        assertEquals(Money.MAX_CENTS, Money.add(Money.MAX_CENTS - 1, 1));
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> Money.add(Money.MAX_CENTS, 1));
+        assertEquals("Balance overflow", exception.getMessage());
+    }
+
+    /**
+     * Тестирует вывод суммы десятичным текстом без экспоненты и погрешности.
+     */
+    @Test
+    void format_ShouldRenderPlainDecimal() {
+        assertEquals("1000.10", Money.format(100_010L));
+        assertEquals("0.07", Money.format(7L));
+        assertEquals("-12.30", Money.format(-1_230L));
+        assertEquals("9999999999999.99", Money.format(Money.MAX_CENTS));
+        assertEquals("9999999999999.99", Money.toDecimal(Money.MAX_CENTS).toString());
+    }
+}
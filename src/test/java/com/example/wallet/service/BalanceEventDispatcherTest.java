@@ -0,0 +1,240 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletReplicaProperties;
+import com.example.wallet.config.WalletStreamProperties;
+import com.example.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для рассылки изменений балансов (BalanceEventDispatcher).
+ * Проверяет доставку балансов подписчикам, в том числе подписанным во время транзакции записи,
+ * замену неотправленных балансов медленному подписчику и закрытие зависших подписок.
+ */
+class BalanceEventDispatcherTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private SimpleMeterRegistry registry;
+    private WalletRepository walletRepository;
+    private WalletStreamProperties properties;
+    private BalanceEventDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        walletRepository = mock(WalletRepository.class);
+        properties = new WalletStreamProperties();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    /**
+     * Тестирует, что подписчик получает баланс только кошельков своей подписки.
+     */
+    @Test
+    void publishAfterCommit_ShouldDeliverOnlySubscribedWallets() throws Exception {
+        dispatcher = createDispatcher();
+        UUID walletId = UUID.randomUUID();
+        RecordingListener listener = new RecordingListener();
+        dispatcher.subscribe(List.of(walletId), listener);
+
+        dispatcher.publishAfterCommit(UUID.randomUUID(), 100L);
+        dispatcher.publishAfterCommit(walletId, 200L);
+
+        assertEquals(walletId + "=200", listener.next());
+        assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Тестирует, что изменение получает подписка, открытая после записи, но до фиксации транзакции:
+     * её начальный баланс мог быть прочитан до фиксации.
+     */
+    @Test
+    void publishAfterCommit_ShouldDeliverToSubscriptionOpenedBeforeCommit() throws Exception {
+        dispatcher = createDispatcher();
+        UUID walletId = UUID.randomUUID();
+        RecordingListener listener = new RecordingListener();
+        List<TransactionSynchronization> synchronizations;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            dispatcher.publishAfterCommit(walletId, 200L);
+            synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        dispatcher.subscribe(List.of(walletId), listener);
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(walletId + "=200", listener.next());
+    }
+
+    /**
+     * Тестирует, что медленный подписчик получает последний баланс вместо промежуточных,
+     * а запись не ждет его.
+     */
+    @Test
+    void publishAfterCommit_ShouldCoalesceBalances_WhenSubscriberIsSlow() throws Exception {
+        dispatcher = createDispatcher();
+        UUID walletId = UUID.randomUUID();
+        RecordingListener listener = new RecordingListener();
+        listener.block();
+        dispatcher.subscribe(List.of(walletId), listener);
+
+        dispatcher.publishAfterCommit(walletId, 100L);
+        assertTrue(listener.sending.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (long balance = 200L; balance <= 500L; balance += 100L) {
+            dispatcher.publishAfterCommit(walletId, balance);
+        }
+        listener.release();
+
+        assertEquals(walletId + "=100", listener.next());
+        assertEquals(walletId + "=500", listener.next());
+        assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Тестирует, что начальный баланс, прочитанный после изменения кошелька,
+     * не заменяет более новый баланс из события изменения.
+     */
+    @Test
+    void offerInitial_ShouldBeIgnored_WhenWalletChangedAfterSubscribe() throws Exception {
+        dispatcher = createDispatcher();
+        UUID walletId = UUID.randomUUID();
+        RecordingListener listener = new RecordingListener();
+        BalanceSubscription subscription = dispatcher.subscribe(List.of(walletId), listener);
+
+        dispatcher.publishAfterCommit(walletId, 200L);
+        assertEquals(walletId + "=200", listener.next());
+        subscription.offerInitial(walletId, 100L);
+        dispatcher.schedule(subscription);
+
+        assertNull(listener.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Тестирует, что баланс горячего кошелька после фиксации перечитывается из базы.
+     */
+    @Test
+    void reloadAfterCommit_ShouldDeliverBalanceFromRepository() throws Exception {
+        dispatcher = createDispatcher();
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.of(700L));
+        RecordingListener listener = new RecordingListener();
+        dispatcher.subscribe(List.of(walletId), listener);
+
+        dispatcher.reloadAfterCommit(walletId);
+
+        assertEquals(walletId + "=700", listener.next());
+    }
+
+    /**
+     * Тестирует, что подписка, отправка которой зависла дольше max-stall-ms, закрывается,
+     * а изменения её кошелька больше не обрабатываются.
+     */
+    @Test
+    void publishAfterCommit_ShouldDropSubscriber_WhenSendStalls() throws Exception {
+        properties.setMaxStallMs(50);
+        dispatcher = createDispatcher();
+        UUID walletId = UUID.randomUUID();
+        RecordingListener listener = new RecordingListener();
+        listener.block();
+        BalanceSubscription subscription = dispatcher.subscribe(List.of(walletId), listener);
+
+        dispatcher.publishAfterCommit(walletId, 100L);
+
+        assertTrue(listener.closed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(subscription.isClosed());
+        assertEquals(1.0, registry.get("wallet.stream.dropped").counter().count());
+        assertEquals(0.0, registry.get("wallet.stream.subscribers").gauge().value());
+        listener.release();
+    }
+
+    /**
+     * Тестирует отказ в подписке сверх наибольшего числа подписок и при неверном числе кошельков.
+     */
+    @Test
+    void subscribe_ShouldThrow_WhenLimitsExceeded() {
+        properties.setMaxSubscribers(1);
+        properties.setMaxWalletsPerSubscription(2);
+        dispatcher = createDispatcher();
+        dispatcher.subscribe(List.of(UUID.randomUUID()), new RecordingListener());
+
+        assertThrows(IllegalStateException.class,
+                () -> dispatcher.subscribe(List.of(UUID.randomUUID()), new RecordingListener()));
+        assertThrows(IllegalArgumentException.class, () -> dispatcher.subscribe(List.of(), new RecordingListener()));
+        assertThrows(IllegalArgumentException.class, () -> dispatcher.subscribe(
+                Set.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()), new RecordingListener()));
+    }
+
+    private BalanceEventDispatcher createDispatcher() {
+        WalletMetrics metrics = new WalletMetrics(registry);
+        return new BalanceEventDispatcher(properties, walletRepository,
+                new ReadRouting(new WalletReplicaProperties(), null, metrics), metrics);
+    }
+
+    /**
+     * Получатель, запоминающий события; может блокировать отправку, имитируя медленного клиента.
+     */
+    private static final class RecordingListener implements BalanceListener {
+
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        String next() throws InterruptedException {
+            return events.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void onBalance(UUID walletId, long balance) {
+            sending.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(walletId + "=" + balance);
+        }
+
+        @Override
+        public void onHeartbeat() {
+        }
+
+        @Override
+        public void onClose() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletBulkProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для запроса балансов множества кошельков (BalanceLookupService).
+ */
+class BalanceLookupServiceTest {
+
+    /**
+     * Тестирует, что идентификаторы разрешаются порциями, а отсутствующие
+     * и некорректные идентификаторы возвращаются отдельными строками с ошибкой.
+     */
+    @Test
+    void lookup_ShouldResolveInChunksAndReportMissingIds() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID missing = UUID.randomUUID();
+        WalletService walletService = mock(WalletService.class);
+        when(walletService.getBalances(List.of(first, second))).thenReturn(Map.of(first, 150L, second, 200L));
+        when(walletService.getBalances(List.of(missing))).thenReturn(Map.of());
+        WalletBulkProperties properties = new WalletBulkProperties();
+        properties.setChunkSize(2);
+        ObjectMapper objectMapper = new ObjectMapper();
+        BalanceLookupService service = new BalanceLookupService(walletService, objectMapper, properties);
+        String body = String.format("[\"%s\", \"%s\", \"%s\", \"bad\"]", first, second, missing);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = service.lookup(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(4, count);
+        assertEquals(4, lines.length);
+        assertEquals(1.5, objectMapper.readTree(lines[0]).get("balance").asDouble());
+        assertEquals(2.0, objectMapper.readTree(lines[1]).get("balance").asDouble());
+        assertEquals("Wallet not found", objectMapper.readTree(lines[2]).get("error").asText());
+        assertEquals("Invalid walletId", objectMapper.readTree(lines[3]).get("error").asText());
+        verify(walletService, times(2)).getBalances(anyCollection());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletBulkProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для пакетной загрузки операций (BulkOperationService).
+ * Проверяет разбор JSON-массива и NDJSON, разбиение на порции
+ * и формирование результатов по каждой операции.
+ */
+class BulkOperationServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WalletService walletService;
+    private BulkOperationService bulkOperationService;
+    private List<Integer> chunkSizes;
+
+    /**
+     * Настройка мока сервиса: каждая операция DEPOSIT применяется с балансом, равным сумме,
+     * остальные отклоняются. Размер порции — 2 операции.
+     */
+    @BeforeEach
+    void setUp() {
+        walletService = mock(WalletService.class);
+        chunkSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<WalletOperation> batch = invocation.getArgument(0);
+            chunkSizes.add(batch.size());
+            for (WalletOperation operation : batch) {
+                if (operation.getOperationType().equals("DEPOSIT")) {
+                    operation.applied(operation.getAmount());
+                } else {
+                    operation.rejected(new IllegalArgumentException("Not enough balance"));
+                }
+            }
+            return null;
+        }).when(walletService).applyBatch(anyList());
+        WalletBulkProperties properties = new WalletBulkProperties();
+        properties.setChunkSize(2);
+        bulkOperationService = new BulkOperationService(walletService, new WalletMetrics(new SimpleMeterRegistry()),
+                objectMapper, properties);
+    }
+
+    /**
+     * Тестирует обработку JSON-массива: операции применяются порциями,
+     * результаты возвращаются по одной строке на операцию в исходном порядке.
+     */
+    @Test
+    void process_ShouldApplyJsonArrayInChunks() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        String body = String.format("""
+                [
+                  {"walletId": "%1$s", "operationType": "DEPOSIT", "amount": 100.0},
+                  {"walletId": "%1$s", "operationType": "WITHDRAW", "amount": 500},
+                  {"walletId": "%1$s", "operationType": "DEPOSIT", "amount": 25.5}
+                ]
+                """, walletId);
+
+        List<JsonNode> results = process(body);
+
+        assertEquals(List.of(2, 1), chunkSizes);
+        assertEquals(3, results.size());
+        assertEquals(0, results.get(0).get("index").asInt());
+        assertEquals("APPLIED", results.get(0).get("status").asText());
+        assertEquals(100.0, results.get(0).get("balance").asDouble());
+        assertEquals("REJECTED", results.get(1).get("status").asText());
+        assertEquals("Not enough balance", results.get(1).get("error").asText());
+        assertEquals(walletId.toString(), results.get(2).get("walletId").asText());
+        assertEquals(25.5, results.get(2).get("balance").asDouble());
+    }
+
+    /**
+     * Тестирует обработку NDJSON: некорректные операции отклоняются без обращения к сервису,
+     * остальные применяются.
+     */
+    @Test
+    void process_ShouldRejectInvalidItemsInNdjson() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        String body = String.format("""
+                {"walletId": "%1$s", "operationType": "DEPOSIT", "amount": 10}
+                {"walletId": "not-a-uuid", "operationType": "DEPOSIT", "amount": 10}
+                {"walletId": "%1$s", "operationType": "DEPOSIT", "amount": -5}
+                """, walletId);
+
+        List<JsonNode> results = process(body);
+
+        assertEquals(List.of(1), chunkSizes);
+        assertEquals("APPLIED", results.get(0).get("status").asText());
+        assertEquals("Invalid walletId", results.get(1).get("error").asText());
+        assertEquals("Invalid amount", results.get(2).get("error").asText());
+    }
+
+    /**
+     * Тестирует синтаксическую ошибку во входных данных:
+     * уже прочитанные операции применяются, затем возвращается строка со статусом ERROR.
+     */
+    @Test
+    void process_ShouldReportError_WhenJsonIsMalformed() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        String body = String.format("""
+                [{"walletId": "%s", "operationType": "DEPOSIT", "amount": 10}, {"walletId": ]
+                """, walletId);
+
+        List<JsonNode> results = process(body);
+
+        assertEquals(2, results.size());
+        assertEquals("APPLIED", results.get(0).get("status").asText());
+        assertEquals("ERROR", results.get(1).get("status").asText());
+        assertEquals(1, results.get(1).get("index").asInt());
+    }
+
+    private List<JsonNode> process(String body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulkOperationService.process(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+}
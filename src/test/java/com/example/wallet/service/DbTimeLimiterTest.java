@@ -0,0 +1,50 @@
+package com.example.wallet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для ограничителя нагрузки по времени базы (DbTimeLimiter).
+ * Проверяет, что разрешение запроса резервирует бюджет по оценке, а учет запроса заменяет
+ * резерв фактической стоимостью.
+ */
+class DbTimeLimiterTest {
+
+    private static final long COST = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /**
+     * Тестирует, что следующий запрос ждет резерв предыдущего, который еще не учтен,
+     * как ждал бы параллельный поток.
+     */
+    @Test
+    void acquire_ShouldWaitForReservedCost_WhenPreviousQueryIsNotRecorded() throws InterruptedException {
+        DbTimeLimiter limiter = new DbTimeLimiter(1000);
+        limiter.record(limiter.acquire(), COST);
+
+        long reserved = limiter.acquire();
+        long started = System.nanoTime();
+        limiter.acquire();
+
+        assertEquals(COST, reserved);
+        assertTrue(System.nanoTime() - started >= COST);
+    }
+
+    /**
+     * Тестирует, что учет запроса, оказавшегося дешевле оценки, возвращает неиспользованный резерв.
+     */
+    @Test
+    void record_ShouldReleaseUnusedReservation_WhenQueryIsCheaperThanEstimate() throws InterruptedException {
+        DbTimeLimiter limiter = new DbTimeLimiter(1000);
+        limiter.record(limiter.acquire(), COST);
+        limiter.record(limiter.acquire(), 0);
+
+        long started = System.nanoTime();
+        long reserved = limiter.acquire();
+
+        assertEquals(0, reserved);
+        assertTrue(System.nanoTime() - started < COST);
+    }
+}
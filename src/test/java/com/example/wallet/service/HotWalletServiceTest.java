@@ -0,0 +1,106 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletHotProperties;
+import com.example.wallet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для режима горячего кошелька (HotWalletService).
+ * Проверяет перевод кошелька в режим и обратно и обновление локального списка горячих кошельков.
+ */
+class HotWalletServiceTest {
+
+    private WalletRepository walletRepository;
+    private HotWalletService hotWalletService;
+
+    @BeforeEach
+    void setUp() {
+        walletRepository = mock(WalletRepository.class);
+        WalletHotProperties properties = new WalletHotProperties();
+        properties.setMaxSlots(8);
+        hotWalletService = new HotWalletService(walletRepository, properties);
+    }
+
+    /**
+     * Тестирует включение режима: создаются недостающие ячейки, кошелек попадает
+     * в локальный список после фиксации транзакции.
+     */
+    @Test
+    void setSlots_ShouldCreateSlots_WhenEnablingHotMode() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findSlotsForUpdate(walletId)).thenReturn(Optional.of(0));
+
+        inTransaction(() -> hotWalletService.setSlots(walletId, 4));
+
+        for (int slot = 0; slot < 4; slot++) {
+            verify(walletRepository).insertSlot(walletId, slot);
+        }
+        verify(walletRepository).updateSlots(walletId, 4);
+        verify(walletRepository, never()).drainSlots(any(), anyInt());
+        assertEquals(4, hotWalletService.slotsOf(walletId));
+    }
+
+    /**
+     * Тестирует уменьшение числа ячеек: балансы удаляемых ячеек переносятся на строку кошелька
+     * до удаления ячеек; при выключении режима кошелек исчезает из локального списка.
+     */
+    @Test
+    void setSlots_ShouldMoveRemovedSlotBalancesToRow_WhenDisablingHotMode() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findSlotsForUpdate(walletId)).thenReturn(Optional.of(0), Optional.of(4));
+        when(walletRepository.drainSlots(walletId, 0)).thenReturn(7_000L);
+        when(walletRepository.deposit(walletId, 7_000L)).thenReturn(17_000L);
+        inTransaction(() -> hotWalletService.setSlots(walletId, 4));
+
+        inTransaction(() -> hotWalletService.setSlots(walletId, 0));
+
+        InOrder order = inOrder(walletRepository);
+        order.verify(walletRepository).drainSlots(walletId, 0);
+        order.verify(walletRepository).deposit(walletId, 7_000L);
+        order.verify(walletRepository).deleteSlots(walletId, 0);
+        order.verify(walletRepository).updateSlots(walletId, 0);
+        assertEquals(0, hotWalletService.slotsOf(walletId));
+    }
+
+    /**
+     * Тестирует отказ при недопустимом количестве ячеек и для несуществующего кошелька.
+     */
+    @Test
+    void setSlots_ShouldReject_WhenSlotCountInvalidOrWalletMissing() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findSlotsForUpdate(walletId)).thenReturn(Optional.empty());
+
+        Exception invalid = assertThrows(IllegalArgumentException.class, () -> hotWalletService.setSlots(walletId, 9));
+        Exception missing = assertThrows(IllegalArgumentException.class, () -> hotWalletService.setSlots(walletId, 2));
+
+        assertEquals("Invalid slot count", invalid.getMessage());
+        assertEquals("Wallet not found", missing.getMessage());
+        verify(walletRepository, never()).updateSlots(eq(walletId), anyInt());
+    }
+
+    /**
+     * Выполняет действие с активной синхронизацией транзакции и затем вызывает afterCommit.
+     */
+    private static void inTransaction(Runnable action) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            action.run();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletAdmissionProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для допуска асинхронных операций (OperationAdmission).
+ * Проверяет отказ сверх ограничения и пересчет ограничения по задержке базы и насыщению пула соединений.
+ */
+class OperationAdmissionTest {
+
+    private SimpleMeterRegistry registry;
+    private WalletMetrics metrics;
+    private WalletAdmissionProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new WalletMetrics(registry);
+        properties = new WalletAdmissionProperties();
+        properties.setMinLimit(1);
+        properties.setWindowMs(TimeUnit.HOURS.toMillis(1));
+    }
+
+    /**
+     * Тестирует, что операция сверх ограничения отклоняется и учитывается в метрике,
+     * а после выполнения одной из операций место освобождается.
+     */
+    @Test
+    void tryAcquire_ShouldReject_WhenLimitReached() {
+        properties.setInitialLimit(2);
+        OperationAdmission admission = new OperationAdmission(properties, metrics);
+
+        assertTrue(admission.tryAcquire());
+        assertTrue(admission.tryAcquire());
+        assertFalse(admission.tryAcquire());
+        assertEquals(1.0, registry.get("wallet.executor.rejected").tag("reason", "limit").counter().count());
+        assertEquals(2, admission.getInFlight());
+
+        admission.release();
+
+        assertTrue(admission.tryAcquire());
+    }
+
+    /**
+     * Тестирует, что ограничение уменьшается, когда задержка выполнения операций в базе
+     * превышает наименьшую наблюдавшуюся больше допустимого.
+     */
+    @Test
+    void update_ShouldDecreaseLimit_WhenLatencyGrows() {
+        properties.setInitialLimit(100);
+        OperationAdmission admission = new OperationAdmission(properties, metrics);
+        executeBatches(10, 1);
+        admission.update(System.nanoTime());
+        assertEquals(100, admission.getLimit());
+
+        executeBatches(10, 10);
+        admission.update(System.nanoTime());
+
+        assertTrue(admission.getLimit() < 100);
+    }
+
+    /**
+     * Тестирует, что ограничение растет, когда задержка стабильна, а операций в работе
+     * столько, сколько допускает ограничение.
+     */
+    @Test
+    void update_ShouldIncreaseLimit_WhenLatencyStableAndLimitUsed() {
+        properties.setInitialLimit(20);
+        properties.setSmoothing(1.0);
+        OperationAdmission admission = new OperationAdmission(properties, metrics);
+        acquireAll(admission);
+        executeBatches(10, 1);
+
+        admission.update(System.nanoTime());
+
+        assertEquals(24, admission.getLimit());
+        assertTrue(admission.tryAcquire());
+    }
+
+    /**
+     * Тестирует, что ограничение уменьшается при стабильной задержке,
+     * если потоки ждут соединения с базой.
+     */
+    @Test
+    void update_ShouldDecreaseLimit_WhenConnectionPoolSaturated() {
+        Gauge.builder("hikaricp.connections.pending", () -> 3).register(registry);
+        properties.setInitialLimit(20);
+        properties.setSmoothing(1.0);
+        OperationAdmission admission = new OperationAdmission(properties, metrics);
+        acquireAll(admission);
+        executeBatches(10, 1);
+
+        admission.update(System.nanoTime());
+
+        assertEquals(18, admission.getLimit());
+    }
+
+    private void executeBatches(int count, long millis) {
+        for (int i = 0; i < count; i++) {
+            metrics.recordExecute(true, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private static void acquireAll(OperationAdmission admission) {
+        while (admission.tryAcquire()) {
+            // занимаем все места до ограничения
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletJournalProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для журнала принятых операций (OperationJournal).
+ * Проверяет восстановление невыполненных операций после перезапуска, удаление файлов
+ * с выполненными операциями и чтение журнала с поврежденной последней записью.
+ */
+class OperationJournalTest {
+
+    @TempDir
+    private Path directory;
+
+    private OperationJournal journal;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Тестирует восстановление: после перезапуска возвращаются только операции без отметки
+     * о выполнении, в порядке приема и со всеми параметрами.
+     */
+    @Test
+    void drainRecovered_ShouldReturnUnresolvedOperations_WhenReopened() throws Exception {
+        UUID walletId = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        journal = open(4096);
+        journal.accept(first, walletId, "DEPOSIT", 1_000L, null);
+        long second = journal.accept(UUID.randomUUID(), walletId, "WITHDRAW", 500L, "key-2");
+        journal.accept(third, walletId, "withdraw", 250L, "key-3");
+        journal.resolve(second);
+        reopen(4096);
+
+        List<JournalEntry> entries = journal.drainRecovered();
+
+        assertEquals(2, entries.size());
+        assertEquals(first, entries.get(0).getOperationId());
+        assertEquals(walletId, entries.get(0).getWalletId());
+        assertEquals("DEPOSIT", entries.get(0).getOperationType());
+        assertEquals(1_000L, entries.get(0).getAmount());
+        assertNull(entries.get(0).getIdempotencyKey());
+        assertEquals(third, entries.get(1).getOperationId());
+        assertEquals("withdraw", entries.get(1).getOperationType());
+        assertEquals("key-3", entries.get(1).getIdempotencyKey());
+        assertEquals(2, journal.getUnresolvedCount());
+        assertTrue(journal.drainRecovered().isEmpty());
+    }
+
+    /**
+     * Тестирует, что файлы, все операции которых выполнены, удаляются, а номера записей
+     * после перезапуска продолжаются.
+     */
+    @Test
+    void resolve_ShouldDeleteSegments_WhenAllOperationsResolved() throws Exception {
+        journal = open(4096);
+        long last = 0;
+        for (int i = 0; i < 200; i++) {
+            last = journal.accept(UUID.randomUUID(), UUID.randomUUID(), "DEPOSIT", i, null);
+            journal.resolve(last);
+        }
+
+        assertEquals(1, journalFiles());
+        long pending = journal.accept(UUID.randomUUID(), UUID.randomUUID(), "DEPOSIT", 1L, null);
+        reopen(4096);
+
+        assertEquals(1, journal.drainRecovered().size());
+        assertTrue(journal.accept(UUID.randomUUID(), UUID.randomUUID(), "DEPOSIT", 1L, null) > pending);
+        assertEquals(last + 1, pending);
+    }
+
+    /**
+     * Тестирует чтение журнала, последняя запись которого повреждена: запись отбрасывается,
+     * предыдущие восстанавливаются.
+     */
+    @Test
+    void drainRecovered_ShouldSkipDamagedRecord() throws Exception {
+        UUID first = UUID.randomUUID();
+        journal = open(4096);
+        journal.accept(first, UUID.randomUUID(), "DEPOSIT", 100L, null);
+        journal.accept(UUID.randomUUID(), UUID.randomUUID(), "DEPOSIT", 200L, null);
+        journal.close();
+        journal = null;
+        Path file;
+        try (Stream<Path> files = Files.list(directory)) {
+            file = files.filter(path -> path.toString().endsWith(".journal")).findFirst().orElseThrow();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            int firstLength = raf.readInt();
+            long damaged = 8 + firstLength + 8 + 20;
+            raf.seek(damaged);
+            int value = raf.read();
+            raf.seek(damaged);
+            raf.write(value ^ 0xFF);
+        }
+        journal = open(4096);
+
+        List<JournalEntry> entries = journal.drainRecovered();
+
+        assertEquals(1, entries.size());
+        assertEquals(first, entries.get(0).getOperationId());
+    }
+
+    /**
+     * Тестирует, что выключенный журнал ничего не пишет на диск.
+     */
+    @Test
+    void accept_ShouldNotWrite_WhenDisabled() throws Exception {
+        WalletJournalProperties properties = new WalletJournalProperties();
+        properties.setEnabled(false);
+        properties.setDirectory(directory.resolve("disabled").toString());
+        journal = new OperationJournal(properties, new WalletMetrics(new SimpleMeterRegistry()));
+
+        assertEquals(0, journal.accept(UUID.randomUUID(), UUID.randomUUID(), "DEPOSIT", 1L, null));
+        assertFalse(Files.exists(directory.resolve("disabled")));
+    }
+
+    private OperationJournal open(int segmentBytes) {
+        WalletJournalProperties properties = new WalletJournalProperties();
+        properties.setDirectory(directory.toString());
+        properties.setSegmentBytes(segmentBytes);
+        return new OperationJournal(properties, new WalletMetrics(new SimpleMeterRegistry()));
+    }
+
+    private void reopen(int segmentBytes) throws InterruptedException {
+        journal.close();
+        journal = open(segmentBytes);
+    }
+
+    private long journalFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".journal")).count();
+        }
+    }
+}
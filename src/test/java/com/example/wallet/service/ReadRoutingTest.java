@@ -0,0 +1,129 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.ReplicaRoutingDataSource;
+import com.example.wallet.config.WalletReplicaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для выбора базы чтения (ReadRouting).
+ * Проверяет, что чтение идет на реплику только при допустимом отставании и для незакрепленных кошельков.
+ */
+class ReadRoutingTest {
+
+    private SimpleMeterRegistry registry;
+    private WalletReplicaProperties properties;
+    private JdbcTemplate jdbcTemplate;
+    private Connection primaryConnection;
+    private Connection replicaConnection;
+    private ReplicaRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        registry = new SimpleMeterRegistry();
+        properties = new WalletReplicaProperties();
+        properties.setEnabled(true);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        primaryConnection = mock(Connection.class);
+        replicaConnection = mock(Connection.class);
+        DataSource primary = mock(DataSource.class);
+        DataSource replica = mock(DataSource.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        dataSource = new ReplicaRoutingDataSource(primary, replica);
+        dataSource.afterPropertiesSet();
+    }
+
+    /**
+     * Тестирует, что чтение незакрепленного кошелька идет на реплику, отставание которой допустимо.
+     */
+    @Test
+    void read_ShouldUseReplica_WhenLagAcceptableAndWalletNotPinned() throws SQLException {
+        ReadRouting routing = routingWithLag(200L);
+
+        assertSame(replicaConnection, routing.read(UUID.randomUUID(), dataSource::getConnection));
+        assertSame(primaryConnection, dataSource.getConnection());
+        assertEquals(1.0, registry.get("wallet.replica.reads").tag("target", "replica").counter().count());
+    }
+
+    /**
+     * Тестирует, что после изменения кошелька его чтения идут в основную базу,
+     * в том числе в составе чтения нескольких кошельков.
+     */
+    @Test
+    void read_ShouldUsePrimary_WhenWalletPinned() throws SQLException {
+        ReadRouting routing = routingWithLag(0L);
+        UUID walletId = UUID.randomUUID();
+
+        routing.pinAfterCommit(walletId);
+
+        assertSame(primaryConnection, routing.read(walletId, dataSource::getConnection));
+        assertSame(primaryConnection, routing.read(List.of(UUID.randomUUID(), walletId), dataSource::getConnection));
+        assertSame(replicaConnection, routing.read(UUID.randomUUID(), dataSource::getConnection));
+        assertEquals(2.0, registry.get("wallet.replica.reads").tag("target", "primary").counter().count());
+    }
+
+    /**
+     * Тестирует, что чтения идут в основную базу, пока отставание реплики больше допустимого
+     * или последняя проверка отставания не удалась.
+     */
+    @Test
+    void read_ShouldUsePrimary_WhenReplicaLagsOrCheckFails() throws SQLException {
+        ReadRouting routing = routingWithLag(properties.getMaxLagMs() + 1);
+        assertFalse(routing.isReplicaAvailable());
+        assertSame(primaryConnection, routing.read(UUID.randomUUID(), dataSource::getConnection));
+
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class)))
+                .thenThrow(new DataAccessResourceFailureException("replica is down"));
+        routing.checkLag();
+
+        assertEquals(-1, routing.getLagMs());
+        assertSame(primaryConnection, routing.read(UUID.randomUUID(), dataSource::getConnection));
+    }
+
+    /**
+     * Тестирует, что отказ соединения с репликой при чтении сразу переводит чтения в основную базу.
+     */
+    @Test
+    void read_ShouldStopUsingReplica_WhenReplicaReadFails() {
+        ReadRouting routing = routingWithLag(0L);
+
+        assertThrows(DataAccessResourceFailureException.class, () -> routing.read(UUID.randomUUID(), () -> {
+            throw new DataAccessResourceFailureException("connection refused");
+        }));
+
+        assertFalse(routing.isReplicaAvailable());
+    }
+
+    /**
+     * Тестирует, что закрепление короче суммы допустимого отставания и периода проверки отклоняется.
+     */
+    @Test
+    void constructor_ShouldThrow_WhenPinShorterThanLagBound() {
+        properties.setPinMs(properties.getMaxLagMs());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReadRouting(properties, jdbcTemplate, new WalletMetrics(registry)));
+    }
+
+    private ReadRouting routingWithLag(long lagMs) {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(lagMs);
+        ReadRouting routing = new ReadRouting(properties, jdbcTemplate, new WalletMetrics(registry));
+        routing.checkLag();
+        return routing;
+    }
+}
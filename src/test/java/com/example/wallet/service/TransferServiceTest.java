@@ -0,0 +1,181 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletBulkProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для пакетной загрузки переводов (TransferService).
+ * Проверяет разбор JSON-массива и NDJSON, отклонение некорректных переводов,
+ * разбиение на порции и применение переводов по одному при сбое порции.
+ */
+class TransferServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WalletService walletService;
+    private TransferService transferService;
+    private List<Integer> chunkSizes;
+
+    /**
+     * Настройка мока сервиса: каждый перевод на сумму до 100 применяется с балансом, равным сумме,
+     * остальные отклоняются. Размер порции — 2 перевода.
+     */
+    @BeforeEach
+    void setUp() {
+        walletService = mock(WalletService.class);
+        chunkSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<WalletTransfer> batch = invocation.getArgument(0);
+            chunkSizes.add(batch.size());
+            for (WalletTransfer transfer : batch) {
+                if (transfer.getAmount() <= 10000) {
+                    transfer.applied(transfer.getAmount());
+                } else {
+                    transfer.rejected(new IllegalArgumentException("Not enough balance"));
+                }
+            }
+            return null;
+        }).when(walletService).applyTransfers(anyList());
+        WalletBulkProperties properties = new WalletBulkProperties();
+        properties.setChunkSize(2);
+        transferService = new TransferService(walletService, new WalletMetrics(new SimpleMeterRegistry()),
+                objectMapper, properties);
+    }
+
+    /**
+     * Тестирует обработку JSON-массива: переводы применяются порциями,
+     * результаты возвращаются по одной строке на перевод в исходном порядке.
+     */
+    @Test
+    void process_ShouldApplyJsonArrayInChunks() throws Exception {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        String body = String.format("""
+                [
+                  {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 100.0},
+                  {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 500},
+                  {"fromWalletId": "%2$s", "toWalletId": "%1$s", "amount": 25.5}
+                ]
+                """, from, to);
+
+        List<JsonNode> results = process(body);
+
+        assertEquals(List.of(2, 1), chunkSizes);
+        assertEquals(3, results.size());
+        assertEquals(0, results.get(0).get("index").asInt());
+        assertEquals(from.toString(), results.get(0).get("fromWalletId").asText());
+        assertEquals(to.toString(), results.get(0).get("toWalletId").asText());
+        assertEquals("APPLIED", results.get(0).get("status").asText());
+        assertEquals(100.0, results.get(0).get("balance").asDouble());
+        assertEquals("REJECTED", results.get(1).get("status").asText());
+        assertEquals("Not enough balance", results.get(1).get("error").asText());
+        assertEquals(to.toString(), results.get(2).get("fromWalletId").asText());
+        assertEquals(25.5, results.get(2).get("balance").asDouble());
+    }
+
+    /**
+     * Тестирует обработку NDJSON: переводы с некорректными кошельками и перевод на тот же кошелек
+     * отклоняются без обращения к сервису, остальные применяются.
+     */
+    @Test
+    void process_ShouldRejectInvalidItemsInNdjson() throws Exception {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        String body = String.format("""
+                {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 10}
+                {"fromWalletId": "not-a-uuid", "toWalletId": "%2$s", "amount": 10}
+                {"fromWalletId": "%1$s", "toWalletId": "not-a-uuid", "amount": 10}
+                {"fromWalletId": "%1$s", "toWalletId": "%1$s", "amount": 10}
+                {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": -5}
+                """, from, to);
+
+        List<JsonNode> results = process(body);
+
+        assertEquals(List.of(1), chunkSizes);
+        assertEquals(5, results.size());
+        assertEquals("APPLIED", results.get(0).get("status").asText());
+        assertEquals("Invalid fromWalletId", results.get(1).get("error").asText());
+        assertEquals("Invalid toWalletId", results.get(2).get("error").asText());
+        assertEquals(from.toString(), results.get(2).get("fromWalletId").asText());
+        assertEquals("Invalid transfer", results.get(3).get("error").asText());
+        assertEquals("Invalid amount", results.get(4).get("error").asText());
+        verify(walletService, never()).transfer(any(), any(), anyLong(), any());
+    }
+
+    /**
+     * Тестирует синтаксическую ошибку в середине потока:
+     * уже прочитанные переводы применяются, затем возвращается строка со статусом ERROR.
+     */
+    @Test
+    void process_ShouldReportError_WhenJsonIsMalformed() throws Exception {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        String body = String.format("""
+                {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 10}
+                {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 20}
+                {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 30}
+                {"fromWalletId": "%1$s", "toWalletId":
+                """, from, to);
+
+        List<JsonNode> results = process(body);
+
+        assertEquals(List.of(2, 1), chunkSizes);
+        assertEquals(4, results.size());
+        assertEquals("APPLIED", results.get(2).get("status").asText());
+        assertEquals("ERROR", results.get(3).get("status").asText());
+        assertEquals(3, results.get(3).get("index").asInt());
+        assertTrue(results.get(3).get("error").asText().startsWith("Malformed JSON"));
+    }
+
+    /**
+     * Тестирует сбой транзакции порции: переводы порции применяются по одному,
+     * отказ одного перевода не мешает остальным.
+     */
+    @Test
+    void process_ShouldApplyTransfersOneByOne_WhenChunkFails() throws Exception {
+        UUID from = UUID.randomUUID();
+        UUID to = UUID.randomUUID();
+        doThrow(new IllegalStateException("Deadlock detected")).when(walletService).applyTransfers(anyList());
+        when(walletService.transfer(from, to, 1000L, "key-1")).thenReturn(9000L);
+        when(walletService.transfer(from, to, 2000L, "key-2"))
+                .thenThrow(new IllegalArgumentException("Not enough balance"));
+        String body = String.format("""
+                {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 10, "idempotencyKey": "key-1"}
+                {"fromWalletId": "%1$s", "toWalletId": "%2$s", "amount": 20, "idempotencyKey": "key-2"}
+                """, from, to);
+
+        List<JsonNode> results = process(body);
+
+        verify(walletService).transfer(from, to, 1000L, "key-1");
+        verify(walletService).transfer(from, to, 2000L, "key-2");
+        assertEquals("APPLIED", results.get(0).get("status").asText());
+        assertEquals(90.0, results.get(0).get("balance").asDouble());
+        assertEquals("REJECTED", results.get(1).get("status").asText());
+        assertEquals("Not enough balance", results.get(1).get("error").asText());
+    }
+
+    private List<JsonNode> process(String body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transferService.process(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+}
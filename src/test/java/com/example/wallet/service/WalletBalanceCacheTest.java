@@ -0,0 +1,75 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для кэша балансов (WalletBalanceCache).
+ * Проверяет, что обновления после фиксации, выполненные не в порядке фиксации,
+ * не оставляют в кэше устаревший баланс.
+ */
+class WalletBalanceCacheTest {
+
+    private final WalletBalanceCache cache =
+            new WalletBalanceCache(new WalletCacheProperties(), new SimpleMeterRegistry());
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Тестирует, что обновление более ранней транзакции, выполненное после обновления более поздней,
+     * не заменяет баланс в кэше.
+     */
+    @Test
+    void putAfterCommit_ShouldKeepNewerBalance_WhenOlderCommitCallbackRunsLast() {
+        UUID walletId = UUID.randomUUID();
+        TransactionSynchronization older = registerPut(walletId, 100L);
+        TransactionSynchronization newer = registerPut(walletId, 200L);
+
+        newer.afterCommit();
+        older.afterCommit();
+
+        assertEquals(200L, cache.getIfPresent(walletId));
+    }
+
+    /**
+     * Тестирует, что обновление после фиксации заменяет баланс, загруженный из базы.
+     */
+    @Test
+    void putAfterCommit_ShouldReplaceLoadedBalance() {
+        UUID walletId = UUID.randomUUID();
+        assertEquals(100L, cache.get(walletId, id -> 100L));
+
+        registerPut(walletId, 200L).afterCommit();
+
+        assertEquals(200L, cache.get(walletId, id -> fail("Balance must be cached")));
+    }
+
+    /**
+     * Регистрирует обновление кэша в отдельной транзакции и возвращает его обработчик фиксации.
+     */
+    private TransactionSynchronization registerPut(UUID walletId, long balance) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.putAfterCommit(walletId, balance);
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            assertEquals(1, synchronizations.size());
+            return synchronizations.get(0);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.wallet.service;
+
+import com.example.wallet.config.WalletExecutorProperties;
+import com.example.wallet.config.WalletJournalProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Тестовый класс для исполнителя операций (WalletOperationExecutor).
+ * Проверяет порядок выполнения операций одного кошелька, повтор операций из журнала,
+ * ограничение очереди полосы, передачу ошибок в результат операции и метрики исполнителя.
+ */
+class WalletOperationExecutorTest {
+
+    private WalletService walletService;
+    private WalletExecutorProperties properties;
+    private SimpleMeterRegistry registry;
+    private WalletMetrics metrics;
+    private OperationJournal journal;
+    private WalletOperationExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        walletService = mock(WalletService.class);
+        registry = new SimpleMeterRegistry();
+        metrics = new WalletMetrics(registry);
+        properties = new WalletExecutorProperties();
+        properties.setLanes(4);
+        properties.setQueueCapacity(16);
+        WalletJournalProperties journalProperties = new WalletJournalProperties();
+        journalProperties.setEnabled(false);
+        journal = new OperationJournal(journalProperties, metrics);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Тестирует, что операции одного кошелька выполняются в порядке поступления.
+     */
+    @Test
+    void accept_ShouldExecuteOperationsOfOneWalletInOrder() throws Exception {
+        List<Long> executed = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            WalletOperation operation = invocation.getArgument(0);
+            executed.add(operation.getAmount());
+            return 0L;
+        }).when(walletService).performOperation(any(WalletOperation.class));
+        properties.setMaxBatchSize(1);
+        executor = new WalletOperationExecutor(walletService, metrics, journal, properties,
+                Thread.ofPlatform().factory());
+        UUID walletId = UUID.randomUUID();
+
+        CompletableFuture<Long> last = null;
+        for (int i = 1; i <= 10; i++) {
+            last = executor.accept(UUID.randomUUID(), walletId, "DEPOSIT", i, null);
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), executed);
+    }
+
+    /**
+     * Тестирует, что ошибка операции передаётся в её CompletableFuture.
+     */
+    @Test
+    void accept_ShouldCompleteExceptionally_WhenOperationFails() {
+        doThrow(new IllegalArgumentException("Not enough balance"))
+                .when(walletService).performOperation(any(WalletOperation.class));
+        executor = new WalletOperationExecutor(walletService, metrics, journal, properties,
+                Thread.ofPlatform().factory());
+
+        CompletableFuture<Long> result =
+                executor.accept(UUID.randomUUID(), UUID.randomUUID(), "WITHDRAW", 10_000L, null);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertEquals("Not enough balance", exception.getCause().getMessage());
+        assertEquals(1.0, registry.get("wallet.operations")
+                .tags("type", "WITHDRAW", "outcome", "not_enough_balance").counter().count());
+    }
+
+    /**
+     * Тестирует, что операции, накопившиеся в очереди полосы, применяются одним пакетом.
+     */
+    @Test
+    void accept_ShouldApplyQueuedOperationsAsOneBatch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return 1_000L;
+        }).when(walletService).performOperation(any(WalletOperation.class));
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            List<WalletOperation> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            batch.forEach(operation -> operation.applied(operation.getAmount()));
+            return null;
+        }).when(walletService).applyBatch(anyList());
+        properties.setLanes(1);
+        executor = new WalletOperationExecutor(walletService, metrics, journal, properties,
+                Thread.ofPlatform().factory());
+
+        CompletableFuture<Long> first =
+                executor.accept(UUID.randomUUID(), UUID.randomUUID(), "DEPOSIT", 1_000L, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Long>> queued = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            queued.add(executor.accept(UUID.randomUUID(), UUID.randomUUID(), "DEPOSIT", i, null));
+        }
+        release.countDown();
+
+        assertEquals(1_000L, first.get(5, TimeUnit.SECONDS));
+        for (int i = 0; i < queued.size(); i++) {
+            assertEquals(i + 1L, queued.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(List.of(5), batchSizes);
+        assertEquals(6, registry.get("wallet.executor.queue.wait").timer().count());
+        assertEquals(1, registry.get("wallet.executor.execute").tag("mode", "batch").timer().count());
+    }
+
+    /**
+     * Тестирует, что при заполненной очереди полосы операция отклоняется.
+     */
+    @Test
+    void accept_ShouldReject_WhenLaneQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return 0L;
+        }).when(walletService).performOperation(any(WalletOperation.class));
+        properties.setQueueCapacity(1);
+        executor = new WalletOperationExecutor(walletService, metrics, journal, properties,
+                Thread.ofPlatform().factory());
+        UUID walletId = UUID.randomUUID();
+
+        executor.accept(UUID.randomUUID(), walletId, "DEPOSIT", 100L, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.accept(UUID.randomUUID(), walletId, "DEPOSIT", 200L, null);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> executor.accept(UUID.randomUUID(), walletId, "DEPOSIT", 300L, null));
+        assertEquals(1, executor.getLaneDepths()[executor.laneOf(walletId)]);
+        assertEquals(1.0, registry.get("wallet.executor.rejected").tag("reason", "queue_full").counter().count());
+        assertEquals(1.0, registry.get("wallet.executor.queue.depth")
+                .tag("lane", Integer.toString(executor.laneOf(walletId))).gauge().value());
+        release.countDown();
+    }
+
+    /**
+     * Тестирует прием операции через журнал: операция выполняется со своим идентификатором,
+     * без ключа идемпотентности и без поиска в журнале базы, и после выполнения отмечается в журнале выполненной.
+     */
+    @Test
+    void accept_ShouldResolveJournalEntry_WhenOperationCompletes(@TempDir Path directory) throws Exception {
+        when(walletService.performOperation(any(WalletOperation.class))).thenReturn(700L);
+        WalletJournalProperties journalProperties = new WalletJournalProperties();
+        journalProperties.setDirectory(directory.toString());
+        journal = new OperationJournal(journalProperties, metrics);
+        executor = new WalletOperationExecutor(walletService, metrics, journal, properties,
+                Thread.ofPlatform().factory());
+        UUID operationId = UUID.randomUUID();
+        UUID walletId = UUID.randomUUID();
+
+        assertEquals(700L, executor.accept(operationId, walletId, "DEPOSIT", 700L, null)
+                .get(5, TimeUnit.SECONDS));
+
+        verify(walletService).performOperation(argThat((WalletOperation operation) ->
+                operation.getOperationId().equals(operationId) && operation.getWalletId().equals(walletId)
+                        && operation.getIdempotencyKey() == null && !operation.isReplayed()));
+        assertEquals(0, journal.getUnresolvedCount());
+        executor.shutdown();
+        executor = null;
+        journal.close();
+    }
+
+    /**
+     * Тестирует, что операция, восстановленная из журнала, выполняется с прежним идентификатором
+     * и признаком повтора, по которому сервис ищет её в журнале базы.
+     */
+    @Test
+    void replay_ShouldMarkOperationReplayed() throws Exception {
+        when(walletService.performOperation(any(WalletOperation.class))).thenReturn(500L);
+        executor = new WalletOperationExecutor(walletService, metrics, journal, properties,
+                Thread.ofPlatform().factory());
+        UUID operationId = UUID.randomUUID();
+
+        assertEquals(500L, executor.replay(new JournalEntry(1L, operationId, UUID.randomUUID(), "DEPOSIT", 500L, null))
+                .get(5, TimeUnit.SECONDS));
+
+        verify(walletService).performOperation(argThat((WalletOperation operation) ->
+                operation.getOperationId().equals(operationId) && operation.isReplayed()));
+    }
+}
@@ -1,14 +1,38 @@
 package com.example.wallet.service;
 
+import com.example.wallet.config.WalletCacheProperties;
+import com.example.wallet.config.WalletHotProperties;
+import com.example.wallet.config.WalletReplicaProperties;
+import com.example.wallet.model.Money;
+import com.example.wallet.model.TimeOrderedUuidGenerator;
+import com.example.wallet.model.Transaction;
 import com.example.wallet.model.Wallet;
+import com.example.wallet.repository.TransactionRepository;
+import com.example.wallet.repository.WalletBalanceUpdates;
+import com.example.wallet.repository.WalletBalanceView;
 import com.example.wallet.repository.WalletRepository;
+import com.example.wallet.repository.WalletSlotsView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -21,16 +45,26 @@ import static org.mockito.Mockito.*;
 class WalletServiceTest {
 
     private WalletRepository walletRepository;
+    private TransactionRepository transactionRepository;
+    private HotWalletService hotWalletService;
+    private WalletBalanceCache balanceCache;
     private WalletService walletService;
 
     /**
      * Настройка моков перед каждым тестом.
-     * Создаётся мок для репозитория кошельков и инициализируется сервис.
+     * Создаются моки для репозиториев кошельков и журнала и инициализируется сервис.
      */
     @BeforeEach
     void setUp() {
         walletRepository = mock(WalletRepository.class);
-        walletService = new WalletService(walletRepository);
+        transactionRepository = mock(TransactionRepository.class);
+        hotWalletService = new HotWalletService(walletRepository, new WalletHotProperties());
+        balanceCache = new WalletBalanceCache(new WalletCacheProperties(), new SimpleMeterRegistry());
+        walletService = new WalletService(walletRepository, transactionRepository, balanceCache,
+                new ReadRouting(new WalletReplicaProperties(), null, new WalletMetrics(new SimpleMeterRegistry())),
+                mock(BalanceEventDispatcher.class),
+                hotWalletService,
+                new WalletMetrics(new SimpleMeterRegistry()));
     }
 
     /**
@@ -41,12 +75,11 @@ class WalletServiceTest {
     void getBalance_ShouldReturnCorrectBalance_WhenWalletExists() {
 
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, 5000.0);
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.of(500_000L));
 
-        double balance = walletService.getBalance(walletId);
+        long balance = walletService.getBalance(walletId);
 
-        assertEquals(5000.0, balance);
+        assertEquals(500_000L, balance);
     }
 
     /**
@@ -57,43 +90,153 @@ class WalletServiceTest {
     @Test
     void getBalance_ShouldReturnCorrectBalance_WhenWalletNotFound() {
         UUID walletId = UUID.randomUUID();
-        when(walletRepository.findById(walletId)).thenReturn(Optional.empty());
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.empty());
 
         Exception exception = assertThrows(IllegalArgumentException.class, () -> walletService.getBalance(walletId));
         assertEquals("Wallet not found", exception.getMessage());
     }
 
+    /**
+     * Тестирует, что повторное чтение баланса обслуживается кэшем,
+     * а после операции возвращается уже новый баланс без обращения к базе.
+     */
+    @Test
+    void getBalance_ShouldUseCache_AndReflectCommittedOperation() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.of(100_000L));
+        when(walletRepository.deposit(walletId, 50_000L)).thenReturn(150_000L);
+
+        assertEquals(100_000L, walletService.getBalance(walletId));
+        assertEquals(100_000L, walletService.getBalance(walletId));
+        walletService.performOperation(walletId, "DEPOSIT", 50_000L);
+
+        assertEquals(150_000L, walletService.getBalance(walletId));
+        verify(walletRepository, times(1)).findTotalBalance(walletId);
+    }
+
+    /**
+     * Тестирует, что при выключенном кэше каждый запрос баланса идёт в репозиторий.
+     */
+    @Test
+    void getBalance_ShouldAlwaysLoad_WhenCacheDisabled() {
+        WalletCacheProperties properties = new WalletCacheProperties();
+        properties.setEnabled(false);
+        walletService = new WalletService(walletRepository, transactionRepository,
+                new WalletBalanceCache(properties, new SimpleMeterRegistry()),
+                new ReadRouting(new WalletReplicaProperties(), null, new WalletMetrics(new SimpleMeterRegistry())),
+                mock(BalanceEventDispatcher.class),
+                hotWalletService,
+                new WalletMetrics(new SimpleMeterRegistry()));
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.of(100_000L));
+
+        walletService.getBalance(walletId);
+        walletService.getBalance(walletId);
+
+        verify(walletRepository, times(2)).findTotalBalance(walletId);
+    }
+
+    /**
+     * Тестирует получение балансов нескольких кошельков.
+     * Кошелёк из кэша не запрашивается из базы, остальные загружаются одним запросом,
+     * отсутствующий кошелёк не попадает в результат.
+     */
+    @Test
+    void getBalances_ShouldQueryOnlyCacheMisses() {
+        UUID cachedId = UUID.randomUUID();
+        UUID storedId = UUID.randomUUID();
+        UUID missingId = UUID.randomUUID();
+        when(walletRepository.findTotalBalance(cachedId)).thenReturn(Optional.of(1_000L));
+        walletService.getBalance(cachedId);
+        WalletBalanceView stored = mock(WalletBalanceView.class);
+        when(stored.getId()).thenReturn(storedId);
+        when(stored.getBalance()).thenReturn(2_000L);
+        when(walletRepository.findBalances(List.of(storedId, missingId))).thenReturn(List.of(stored));
+
+        Map<UUID, Long> balances = walletService.getBalances(List.of(cachedId, storedId, missingId));
+
+        assertEquals(Map.of(cachedId, 1_000L, storedId, 2_000L), balances);
+        verify(walletRepository, times(1)).findBalances(List.of(storedId, missingId));
+    }
+
+    /**
+     * Тестирует, что балансы для начального значения потока читаются из базы, даже если баланс есть в кэше.
+     */
+    @Test
+    void getCommittedBalances_ShouldReadDatabase_WhenBalanceIsCached() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.of(1_000L));
+        walletService.getBalance(walletId);
+        WalletBalanceView stored = mock(WalletBalanceView.class);
+        when(stored.getId()).thenReturn(walletId);
+        when(stored.getBalance()).thenReturn(3_000L);
+        when(walletRepository.findBalances(Set.of(walletId))).thenReturn(List.of(stored));
+
+        assertEquals(Map.of(walletId, 3_000L), walletService.getCommittedBalances(Set.of(walletId)));
+    }
+
     /**
      * Тестирует успешное выполнение операции депозита.
-     * Проверяет, что баланс увеличивается и репозиторий вызывает метод save.
+     * Проверяет, что баланс изменяется атомарным запросом без загрузки сущности.
      */
     @Test
     void performOperation_ShouldDeposit_WHenOperationIsDeposit() {
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, 1000.0);
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.deposit(walletId, 50_000L)).thenReturn(150_000L);
+
+        long balance = walletService.performOperation(walletId, "DEPOSIT", 50_000L);
+
+        assertEquals(150_000L, balance);
+        verify(walletRepository, never()).findById(walletId);
+        verify(walletRepository, never()).save(any());
+        verify(transactionRepository, times(1)).save(argThat(transaction ->
+                transaction.getWalletId().equals(walletId)
+                        && transaction.getType().equals("DEPOSIT")
+                        && transaction.getAmount() == 50_000L));
+    }
+
+    /**
+     * Тестирует, что операция записывает длительности этапов в метрику wallet.stage:
+     * общее время и атомарное изменение баланса; поиск по ключу идемпотентности без ключа не измеряется.
+     */
+    @Test
+    void performOperation_ShouldRecordStageTimers() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        walletService = new WalletService(walletRepository, transactionRepository,
+                new WalletBalanceCache(new WalletCacheProperties(), new SimpleMeterRegistry()),
+                new ReadRouting(new WalletReplicaProperties(), null, new WalletMetrics(new SimpleMeterRegistry())),
+                mock(BalanceEventDispatcher.class),
+                hotWalletService,
+                new WalletMetrics(registry));
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.deposit(walletId, 50_000L)).thenReturn(150_000L);
+
+        walletService.performOperation(walletId, "DEPOSIT", 50_000L);
 
-        walletService.performOperation(walletId, "DEPOSIT", 500.0);
+        assertEquals(1, stageCount(registry, "total"));
+        assertEquals(1, stageCount(registry, "balance_update"));
+        assertEquals(0, stageCount(registry, "idempotency_lookup"));
+    }
 
-        assertEquals(1500.0, wallet.getBalance());
-        verify(walletRepository, times(1)).save(wallet);
+    private static long stageCount(SimpleMeterRegistry registry, String stage) {
+        return registry.get("wallet.stage").tags("operation", "performOperation", "stage", stage).timer().count();
     }
 
     /**
      * Тестирует успешное выполнение операции вывода.
-     * Проверяет, что баланс уменьшается и репозиторий вызывает метод save.
+     * Проверяет, что баланс изменяется атомарным запросом без загрузки сущности.
      */
     @Test
     void performOperation_ShouldWithdraw_WHenOperationIsWithdraw() {
 
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, 2000.0);
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.withdraw(walletId, 50_000L)).thenReturn(150_000L);
 
-        walletService.performOperation(walletId, "WITHDRAW", 500.0);
+        long balance = walletService.performOperation(walletId, "WITHDRAW", 50_000L);
 
-        assertEquals(1500.0, wallet.getBalance());
-        verify(walletRepository, times(1)).save(wallet);
+        assertEquals(150_000L, balance);
+        verify(walletRepository, never()).findById(walletId);
+        verify(walletRepository, never()).save(any());
     }
 
     /**
@@ -104,14 +247,30 @@ class WalletServiceTest {
     void performOperation_ShouldThrowException_WhenInsufficientFunds() {
 
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, 300.0);
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
+        when(walletRepository.withdraw(walletId, 50_000L)).thenReturn(WalletBalanceUpdates.NOT_UPDATED);
+        when(walletRepository.findSlotsForUpdate(walletId)).thenReturn(Optional.of(0));
 
         Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> walletService.performOperation(walletId, "WITHDRAW", 500.0));
+                () -> walletService.performOperation(walletId, "WITHDRAW", 50_000L));
 
         assertEquals("Not enough balance", exception.getMessage());
-        verify(walletRepository, never()).save(wallet);
+        verifyNoInteractions(transactionRepository);
+    }
+
+    /**
+     * Тестирует операцию над несуществующим кошельком.
+     * Ожидается исключение с сообщением "Wallet not found".
+     */
+    @Test
+    void performOperation_ShouldThrowException_WhenWalletNotFound() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.withdraw(walletId, 50_000L)).thenReturn(WalletBalanceUpdates.NOT_UPDATED);
+        when(walletRepository.findSlotsForUpdate(walletId)).thenReturn(Optional.empty());
+
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> walletService.performOperation(walletId, "WITHDRAW", 50_000L));
+
+        assertEquals("Wallet not found", exception.getMessage());
     }
 
     /**
@@ -121,13 +280,475 @@ class WalletServiceTest {
     @Test
     void performOperation_ShouldThrowException_WhenOperationInvalid() {
         UUID walletId = UUID.randomUUID();
-        Wallet wallet = new Wallet(walletId, 1000.0);
-        when(walletRepository.findById(walletId)).thenReturn(Optional.of(wallet));
 
         Exception exception = assertThrows(IllegalArgumentException.class,
-                () -> walletService.performOperation(walletId, "INVALID", 500.0));
+                () -> walletService.performOperation(walletId, "INVALID", 50_000L));
 
         assertEquals("Invalid operation type", exception.getMessage());
-        verify(walletRepository, never()).save(wallet);  // save не должен быть вызван при невалидной операции
+        verifyNoInteractions(walletRepository);  // кошелек не должен изменяться при невалидной операции
+    }
+
+    /**
+     * Тестирует пакетное применение операций.
+     * Операции одного кошелька сворачиваются в итоговый баланс, а снятие,
+     * для которого не хватает средств, отклоняется без влияния на остальные операции.
+     */
+    @Test
+    void applyBatch_ShouldFoldOperationsAndRejectOnlyInsufficientWithdraw() {
+        UUID walletId = UUID.randomUUID();
+        UUID otherWalletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, 10_000L);
+        Wallet otherWallet = new Wallet(otherWalletId, 5_000L);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet, otherWallet));
+
+        WalletOperation deposit = new WalletOperation(walletId, "DEPOSIT", 5_000L);
+        WalletOperation tooLarge = new WalletOperation(walletId, "WITHDRAW", 50_000L);
+        WalletOperation withdraw = new WalletOperation(walletId, "WITHDRAW", 12_000L);
+        WalletOperation other = new WalletOperation(otherWalletId, "WITHDRAW", 5_000L);
+        List<WalletOperation> batch = List.of(deposit, tooLarge, withdraw, other);
+
+        walletService.applyBatch(batch);
+        batch.forEach(WalletOperation::complete);
+
+        assertEquals(3_000L, wallet.getBalance());
+        assertEquals(0L, otherWallet.getBalance());
+        assertEquals(15_000L, deposit.getResult().join());
+        assertEquals(3_000L, withdraw.getResult().join());
+        assertEquals(0L, other.getResult().join());
+        CompletionException exception = assertThrows(CompletionException.class, () -> tooLarge.getResult().join());
+        assertEquals("Not enough balance", exception.getCause().getMessage());
+        verify(walletRepository, times(1)).findAllByIdForUpdate(Set.of(walletId, otherWalletId));
+        verify(transactionRepository, times(1)).saveAll(argThat((List<Transaction> ledger) ->
+                ledger.size() == 3
+                        && ledger.get(0).getType().equals("DEPOSIT")
+                        && ledger.get(1).getAmount() == 12_000L
+                        && ledger.get(2).getWalletId().equals(otherWalletId)));
+    }
+
+    /**
+     * Тестирует пакетную операцию над несуществующим кошельком.
+     * Ожидается отказ только для этой операции.
+     */
+    @Test
+    void applyBatch_ShouldRejectOperation_WhenWalletNotFound() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, 10_000L);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+
+        WalletOperation missing = new WalletOperation(UUID.randomUUID(), "DEPOSIT", 1_000L);
+        WalletOperation deposit = new WalletOperation(walletId, "DEPOSIT", 1_000L);
+
+        walletService.applyBatch(List.of(missing, deposit));
+
+        assertEquals("Wallet not found", missing.getFailure().getMessage());
+        assertNull(deposit.getFailure());
+        assertEquals(11_000L, wallet.getBalance());
+    }
+
+    /**
+     * Тестирует повтор операции с уже записанным ключом идемпотентности.
+     * Ожидается исходный баланс без изменения кошелька и без новой записи журнала.
+     */
+    @Test
+    void performOperation_ShouldReturnRecordedBalance_WhenIdempotencyKeyIsRecorded() {
+        UUID walletId = UUID.randomUUID();
+        when(transactionRepository.findByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new Transaction(walletId, "DEPOSIT", 50_000L, 150_000L, "key-1")));
+
+        long balance = walletService.performOperation(walletId, "deposit", 50_000L, "key-1");
+
+        assertEquals(150_000L, balance);
+        verifyNoInteractions(walletRepository);
+        verify(transactionRepository, never()).save(any());
+    }
+
+    /**
+     * Тестирует повтор ключа идемпотентности с другими параметрами операции.
+     * Ожидается отказ без изменения кошелька.
+     */
+    @Test
+    void performOperation_ShouldThrowException_WhenIdempotencyKeyReusedWithDifferentParameters() {
+        UUID walletId = UUID.randomUUID();
+        when(transactionRepository.findByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(new Transaction(walletId, "DEPOSIT", 50_000L, 150_000L, "key-1")));
+
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> walletService.performOperation(walletId, "DEPOSIT", 70_000L, "key-1"));
+
+        assertEquals("Idempotency key reused with different parameters", exception.getMessage());
+        verifyNoInteractions(walletRepository);
+    }
+
+    /**
+     * Тестирует пакет с повторами ключей идемпотентности: записанный в журнал ключ
+     * и ключ, повторенный внутри пакета, получают исход первого применения.
+     * Кошелек повтора из журнала не блокируется, а в журнал пишется одна новая запись.
+     */
+    @Test
+    void applyBatch_ShouldReplayDuplicateIdempotencyKeys() {
+        UUID walletId = UUID.randomUUID();
+        UUID recordedWalletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, 10_000L);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+        when(transactionRepository.findByIdempotencyKeyIn(anyCollection())).thenReturn(
+                List.of(new Transaction(recordedWalletId, "WITHDRAW", 2_000L, 8_000L, "recorded")));
+
+        WalletOperation recorded = new WalletOperation(recordedWalletId, "WITHDRAW", 2_000L, "recorded");
+        WalletOperation first = new WalletOperation(walletId, "DEPOSIT", 1_000L, "fresh");
+        WalletOperation retry = new WalletOperation(walletId, "DEPOSIT", 1_000L, "fresh");
+
+        walletService.applyBatch(List.of(recorded, first, retry));
+
+        assertEquals(8_000L, recorded.getResultingBalance());
+        assertEquals(11_000L, first.getResultingBalance());
+        assertEquals(11_000L, retry.getResultingBalance());
+        assertNull(retry.getFailure());
+        assertEquals(11_000L, wallet.getBalance());
+        verify(transactionRepository, times(1)).findByIdempotencyKeyIn(Set.of("recorded", "fresh"));
+        verify(walletRepository, times(1)).findAllByIdForUpdate(Set.of(walletId));
+        verify(transactionRepository, times(1)).saveAll(argThat((List<Transaction> ledger) ->
+                ledger.size() == 1
+                        && ledger.get(0).getIdempotencyKey().equals("fresh")
+                        && ledger.get(0).getBalanceAfter() == 11_000L));
+    }
+
+    /**
+     * Тестирует пакет с операциями, принятыми через журнал: операция, повторяемая из журнала и уже
+     * зафиксированная до остановки, получает исход первого применения, а новая операция в журнале базы
+     * не ищется и записывается со своим идентификатором.
+     */
+    @Test
+    void applyBatch_ShouldSkipAppliedReplayedOperation_AndRecordOperationIds() {
+        UUID walletId = UUID.randomUUID();
+        UUID appliedId = TimeOrderedUuidGenerator.next();
+        UUID freshId = TimeOrderedUuidGenerator.next();
+        Transaction applied = new Transaction(walletId, "DEPOSIT", 1_000L, 11_000L, null);
+        applied.setOperationId(appliedId);
+        when(transactionRepository.findByWalletIdInAndCreateAtGreaterThanEqualAndOperationIdIn(
+                anyCollection(), any(), anyCollection())).thenReturn(List.of(applied));
+        Wallet wallet = new Wallet(walletId, 11_000L);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+
+        WalletOperation replayed = new WalletOperation(walletId, "DEPOSIT", 1_000L);
+        replayed.setOperationId(appliedId);
+        replayed.setReplayed(true);
+        WalletOperation fresh = new WalletOperation(walletId, "DEPOSIT", 500L);
+        fresh.setOperationId(freshId);
+
+        walletService.applyBatch(List.of(replayed, fresh));
+
+        assertEquals(11_000L, replayed.getResultingBalance());
+        assertEquals(11_500L, fresh.getResultingBalance());
+        assertEquals(11_500L, wallet.getBalance());
+        verify(transactionRepository, times(1)).findByWalletIdInAndCreateAtGreaterThanEqualAndOperationIdIn(
+                eq(Set.of(walletId)), any(), eq(Set.of(appliedId)));
+        verify(transactionRepository, never()).findByIdempotencyKeyIn(anyCollection());
+        verify(transactionRepository, times(1)).saveAll(argThat((List<Transaction> ledger) ->
+                ledger.size() == 1
+                        && ledger.get(0).getOperationId().equals(freshId)
+                        && ledger.get(0).getIdempotencyKey() == null));
+    }
+
+    /**
+     * Тестирует, что операция исполнителя, не повторяемая из журнала, применяется без поиска в журнале базы.
+     */
+    @Test
+    void performOperation_ShouldNotLookUpOperation_WhenNotReplayed() {
+        UUID walletId = UUID.randomUUID();
+        when(walletRepository.deposit(walletId, 500L)).thenReturn(1_500L);
+        WalletOperation operation = new WalletOperation(walletId, "DEPOSIT", 500L);
+        operation.setOperationId(TimeOrderedUuidGenerator.next());
+
+        assertEquals(1_500L, walletService.performOperation(operation));
+
+        verify(transactionRepository, never()).findByIdempotencyKey(any());
+        verify(transactionRepository, never()).findByWalletIdInAndCreateAtGreaterThanEqualAndOperationIdIn(
+                anyCollection(), any(), anyCollection());
+        verify(transactionRepository).save(argThat(entry -> operation.getOperationId().equals(entry.getOperationId())));
+    }
+
+    /**
+     * Тестирует пополнение, после которого баланс не поместился бы в столбец numeric(15, 2).
+     * Ожидается отказ только для этой операции.
+     */
+    @Test
+    void applyBatch_ShouldRejectDeposit_WhenBalanceWouldOverflow() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, Money.MAX_CENTS - 100);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+
+        WalletOperation fits = new WalletOperation(walletId, "DEPOSIT", 100L);
+        WalletOperation overflow = new WalletOperation(walletId, "DEPOSIT", 1L);
+
+        walletService.applyBatch(List.of(fits, overflow));
+
+        assertEquals(Money.MAX_CENTS, wallet.getBalance());
+        assertNull(fits.getFailure());
+        assertEquals("Balance overflow", overflow.getFailure().getMessage());
+    }
+
+    /**
+     * Тестирует пополнение горячего кошелька: баланс изменяется в ячейке, строка кошелька не затрагивается,
+     * а баланс в кэше сбрасывается вместо обновления.
+     */
+    @Test
+    void performOperation_ShouldDepositToSlot_WhenWalletIsHot() {
+        UUID walletId = UUID.randomUUID();
+        markHot(walletId, 4);
+        when(walletRepository.depositToSlot(eq(walletId), anyInt(), eq(5_000L))).thenReturn(25_000L);
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.of(26_000L));
+
+        long balance = walletService.performOperation(walletId, "DEPOSIT", 5_000L);
+
+        assertEquals(25_000L, balance);
+        verify(walletRepository, never()).deposit(any(), anyLong());
+        verify(transactionRepository).save(argThat(entry -> entry.getBalanceAfter() == null));
+        assertEquals(26_000L, walletService.getBalance(walletId));
+    }
+
+    /**
+     * Тестирует повтор операции горячего кошелька, для которой баланс после операции не записан:
+     * кошелек не изменяется, а повтор получает текущий баланс кошелька.
+     */
+    @Test
+    void performOperation_ShouldReturnCurrentBalance_WhenReplayedEntryHasNoBalance() {
+        UUID walletId = UUID.randomUUID();
+        Transaction recorded = new Transaction(walletId, "DEPOSIT", 5_000L, 0L, "key-1");
+        recorded.setBalanceAfter(null);
+        when(transactionRepository.findByIdempotencyKey("key-1")).thenReturn(Optional.of(recorded));
+        when(walletRepository.findTotalBalance(walletId)).thenReturn(Optional.of(31_000L));
+
+        long balance = walletService.performOperation(walletId, "DEPOSIT", 5_000L, "key-1");
+
+        assertEquals(31_000L, balance);
+        verify(walletRepository, never()).depositToSlot(any(), anyInt(), anyLong());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    /**
+     * Тестирует снятие с горячего кошелька, которое не покрывается ни строкой кошелька, ни ячейкой:
+     * строка блокируется до обращения к ячейкам, затем балансы ячеек переносятся на строку
+     * и снятие повторяется.
+     */
+    @Test
+    void performOperation_ShouldConsolidateSlots_WhenSlotAndRowAreShort() {
+        UUID walletId = UUID.randomUUID();
+        markHot(walletId, 4);
+        when(walletRepository.withdrawFromSlot(eq(walletId), anyInt(), eq(30_000L))).thenReturn(WalletBalanceUpdates.NOT_UPDATED);
+        when(walletRepository.withdraw(walletId, 30_000L)).thenReturn(WalletBalanceUpdates.NOT_UPDATED, 10_000L);
+        when(walletRepository.findSlotsForUpdate(walletId)).thenReturn(Optional.of(4));
+        when(walletRepository.drainSlots(walletId, 0)).thenReturn(25_000L);
+        when(walletRepository.deposit(walletId, 25_000L)).thenReturn(40_000L);
+
+        long balance = walletService.performOperation(walletId, "WITHDRAW", 30_000L);
+
+        assertEquals(10_000L, balance);
+        InOrder order = inOrder(walletRepository);
+        order.verify(walletRepository).withdraw(walletId, 30_000L);
+        order.verify(walletRepository).findSlotsForUpdate(walletId);
+        order.verify(walletRepository).withdrawFromSlot(eq(walletId), anyInt(), eq(30_000L));
+        order.verify(walletRepository).drainSlots(walletId, 0);
+        order.verify(walletRepository).deposit(walletId, 25_000L);
+        order.verify(walletRepository).withdraw(walletId, 30_000L);
+    }
+
+    /**
+     * Тестирует пакетное снятие с горячего кошелька: если строки не хватает, ячейки переносятся
+     * на строку один раз за пакет, а в результат операции попадает полный баланс кошелька.
+     */
+    @Test
+    void applyBatch_ShouldDrainSlotsOnce_WhenHotWalletRowIsShort() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, 1_000L);
+        wallet.setSlots(4);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+        when(walletRepository.lockSlotBalances(List.of(walletId))).thenReturn(Map.of(walletId, 9_000L));
+        when(walletRepository.drainSlots(walletId, 0)).thenReturn(9_000L);
+
+        WalletOperation deposit = new WalletOperation(walletId, "DEPOSIT", 500L);
+        WalletOperation withdraw = new WalletOperation(walletId, "WITHDRAW", 6_000L);
+        WalletOperation tooLarge = new WalletOperation(walletId, "WITHDRAW", 6_000L);
+
+        walletService.applyBatch(List.of(deposit, withdraw, tooLarge));
+
+        assertEquals(10_500L, deposit.getResultingBalance());
+        assertEquals(4_500L, withdraw.getResultingBalance());
+        assertEquals("Not enough balance", tooLarge.getFailure().getMessage());
+        assertEquals(4_500L, wallet.getBalance());
+        verify(walletRepository, times(1)).drainSlots(walletId, 0);
+        verify(walletRepository, never()).depositToSlot(any(), anyInt(), anyLong());
+    }
+
+    /**
+     * Тестирует пакетное пополнение горячего кошелька: ячейки блокируются одним запросом, пополнения
+     * зачисляются в одну ячейку одним изменением, строка кошелька не изменяется, а в журнал
+     * записываются точные балансы с учетом ячеек.
+     */
+    @Test
+    void applyBatch_ShouldCreditOneSlot_WhenHotWalletDeposits() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, 1_000L);
+        wallet.setSlots(4);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+        when(walletRepository.lockSlotBalances(List.of(walletId))).thenReturn(Map.of(walletId, 9_000L));
+        when(walletRepository.depositToSlot(eq(walletId), anyInt(), eq(800L))).thenReturn(10_800L);
+
+        WalletOperation first = new WalletOperation(walletId, "DEPOSIT", 500L);
+        WalletOperation second = new WalletOperation(walletId, "DEPOSIT", 300L);
+
+        walletService.applyBatch(List.of(first, second));
+
+        assertEquals(10_500L, first.getResultingBalance());
+        assertEquals(10_800L, second.getResultingBalance());
+        assertEquals(1_000L, wallet.getBalance());
+        verify(walletRepository, times(1)).depositToSlot(eq(walletId), anyInt(), eq(800L));
+        verify(walletRepository, never()).drainSlots(any(), anyInt());
+        verify(transactionRepository, times(1)).saveAll(argThat((List<Transaction> ledger) ->
+                ledger.get(0).getBalanceAfter() == 10_500L && ledger.get(1).getBalanceAfter() == 10_800L));
+    }
+
+    /**
+     * Тестирует пакетное пополнение горячего кошелька, когда ячейка переполнилась бы:
+     * сумма пополнений зачисляется на строку кошелька.
+     */
+    @Test
+    void applyBatch_ShouldCreditRow_WhenSlotWouldOverflow() {
+        UUID walletId = UUID.randomUUID();
+        Wallet wallet = new Wallet(walletId, 1_000L);
+        wallet.setSlots(4);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(wallet));
+        when(walletRepository.depositToSlot(eq(walletId), anyInt(), eq(500L)))
+                .thenReturn(WalletBalanceUpdates.NOT_UPDATED);
+
+        WalletOperation deposit = new WalletOperation(walletId, "DEPOSIT", 500L);
+
+        walletService.applyBatch(List.of(deposit));
+
+        assertEquals(1_500L, deposit.getResultingBalance());
+        assertEquals(1_500L, wallet.getBalance());
+    }
+
+    /**
+     * Тестирует пакет переводов: все кошельки пакета блокируются одним запросом,
+     * перевод без достаточных средств отклоняется без влияния на остальные,
+     * а каждый примененный перевод записывается в журнал списанием и зачислением.
+     */
+    @Test
+    void applyTransfers_ShouldLockWalletsOnceAndRejectOnlyInsufficientTransfer() {
+        UUID merchantId = UUID.randomUUID();
+        UUID firstId = UUID.randomUUID();
+        UUID secondId = UUID.randomUUID();
+        Wallet merchant = new Wallet(merchantId, 10_000L);
+        Wallet first = new Wallet(firstId, 0L);
+        Wallet second = new Wallet(secondId, 500L);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(merchant, first, second));
+
+        WalletTransfer payout = new WalletTransfer(merchantId, firstId, 6_000L, "payout-1");
+        WalletTransfer tooLarge = new WalletTransfer(merchantId, secondId, 6_000L, null);
+        WalletTransfer back = new WalletTransfer(secondId, merchantId, 500L, null);
+
+        walletService.applyTransfers(List.of(payout, tooLarge, back));
+
+        assertEquals(4_000L, payout.getResultingBalance());
+        assertEquals("Not enough balance", tooLarge.getFailure().getMessage());
+        assertEquals(0L, back.getResultingBalance());
+        assertEquals(4_500L, merchant.getBalance());
+        assertEquals(6_000L, first.getBalance());
+        assertEquals(0L, second.getBalance());
+        verify(walletRepository, times(1)).findAllByIdForUpdate(Set.of(merchantId, firstId, secondId));
+        verify(transactionRepository, times(1)).saveAll(argThat((List<Transaction> ledger) ->
+                ledger.size() == 4
+                        && ledger.get(0).getType().equals("TRANSFER_OUT")
+                        && ledger.get(0).getWalletId().equals(merchantId)
+                        && ledger.get(0).getCounterpartyId().equals(firstId)
+                        && ledger.get(0).getIdempotencyKey().equals("payout-1")
+                        && ledger.get(1).getType().equals("TRANSFER_IN")
+                        && ledger.get(1).getWalletId().equals(firstId)
+                        && ledger.get(1).getBalanceAfter() == 6_000L
+                        && ledger.get(1).getIdempotencyKey() == null
+                        && ledger.get(3).getCounterpartyId().equals(secondId)));
+    }
+
+    /**
+     * Тестирует перевод, который переполнил бы баланс получателя.
+     * Ожидается отказ без списания у отправителя.
+     */
+    @Test
+    void applyTransfers_ShouldRejectTransfer_WhenRecipientBalanceWouldOverflow() {
+        UUID fromId = UUID.randomUUID();
+        UUID toId = UUID.randomUUID();
+        Wallet from = new Wallet(fromId, 10_000L);
+        Wallet to = new Wallet(toId, Money.MAX_CENTS);
+        when(walletRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(from, to));
+
+        WalletTransfer transfer = new WalletTransfer(fromId, toId, 1L, null);
+
+        walletService.applyTransfers(List.of(transfer));
+
+        assertEquals("Balance overflow", transfer.getFailure().getMessage());
+        assertEquals(10_000L, from.getBalance());
+        assertEquals(Money.MAX_CENTS, to.getBalance());
+    }
+
+    /**
+     * Тестирует, что обновление кэша после фиксации более раннего перевода, выполненное последним,
+     * не заменяет в кэше балансы после более позднего перевода.
+     */
+    @Test
+    void applyTransfers_ShouldKeepNewerCachedBalances_WhenOlderCommitCallbackRunsLast() {
+        UUID fromId = UUID.randomUUID();
+        UUID toId = UUID.randomUUID();
+        when(walletRepository.findAllByIdForUpdate(anyCollection()))
+                .thenReturn(List.of(new Wallet(fromId, 10_000L), new Wallet(toId, 0L)))
+                .thenReturn(List.of(new Wallet(fromId, 9_000L), new Wallet(toId, 1_000L)));
+
+        List<TransactionSynchronization> older = transferInTransaction(fromId, toId, 1_000L);
+        List<TransactionSynchronization> newer = transferInTransaction(fromId, toId, 2_000L);
+        newer.forEach(TransactionSynchronization::afterCommit);
+        older.forEach(TransactionSynchronization::afterCommit);
+
+        assertEquals(7_000L, balanceCache.getIfPresent(fromId));
+        assertEquals(3_000L, balanceCache.getIfPresent(toId));
+    }
+
+    /**
+     * Выполняет перевод в отдельной транзакции и возвращает её обработчики фиксации.
+     */
+    private List<TransactionSynchronization> transferInTransaction(UUID fromId, UUID toId, long amount) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            walletService.applyTransfers(List.of(new WalletTransfer(fromId, toId, amount, null)));
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Тестирует повтор перевода с записанным ключом идемпотентности: перевод с теми же параметрами
+     * получает баланс отправителя после первого применения без блокировки кошельков,
+     * а перевод другому получателю с тем же ключом отклоняется.
+     */
+    @Test
+    void transfer_ShouldReplayRecordedTransfer_WhenIdempotencyKeyIsRecorded() {
+        UUID fromId = UUID.randomUUID();
+        UUID toId = UUID.randomUUID();
+        when(transactionRepository.findByIdempotencyKeyIn(anyCollection())).thenReturn(
+                List.of(new Transaction(fromId, "TRANSFER_OUT", 2_000L, 8_000L, "payout-1", toId)));
+
+        assertEquals(8_000L, walletService.transfer(fromId, toId, 2_000L, "payout-1"));
+        Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> walletService.transfer(fromId, UUID.randomUUID(), 2_000L, "payout-1"));
+
+        assertEquals("Idempotency key reused with different parameters", exception.getMessage());
+        verify(walletRepository, never()).findAllByIdForUpdate(anyCollection());
+    }
+
+    private void markHot(UUID walletId, int slots) {
+        WalletSlotsView view = mock(WalletSlotsView.class);
+        when(view.getId()).thenReturn(walletId);
+        when(view.getSlots()).thenReturn(slots);
+        when(walletRepository.findHotWallets()).thenReturn(List.of(view));
+        hotWalletService.refresh();
     }
 }